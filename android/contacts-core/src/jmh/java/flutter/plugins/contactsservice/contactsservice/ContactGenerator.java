@@ -0,0 +1,73 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/***
+ * Synthetic contacts for the benchmarks, with as many phones, emails and
+ * addresses as real address books tend to have: mostly one or two, sometimes none or many
+ ***/
+class ContactGenerator {
+
+    static final String[] GIVEN_NAMES = {"Jane", "John", "Ana", "Li", "Mohammed", "Olga", "Kenji", "Zo\u00eb", "Pierre", "Amara"};
+    static final String[] FAMILY_NAMES = {"Doe", "Smith", "Garc\u00eda", "Wang", "Khan", "Ivanova", "Sato", "M\u00fcller", "Dubois", "Okafor"};
+    static final String[] PHONE_LABELS = {"mobile", "home", "work", "main", "fax work", "other", "Satellite"};
+    static final String[] EMAIL_LABELS = {"home", "work", "other", "Private"};
+    static final String[] ACCOUNT_TYPES = {"com.google", "com.google", "vnd.sec.contact.phone", "", "com.whatsapp",
+            "org.telegram.messenger", "com.linkedin.android", "com.skype.contacts.sync"};
+    // skewed towards one or two values per contact
+    private static final int[] COUNTS = {0, 1, 1, 1, 2, 2, 3, 5};
+
+    private final Random random;
+
+    ContactGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    List<Contact> generate(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        long rowId = 1;
+        for (int i = 0; i < count; i++) {
+            Contact contact = new Contact(String.valueOf(1000 + i) + "i" + Integer.toHexString(random.nextInt()));
+            contact.givenName = pick(GIVEN_NAMES);
+            contact.familyName = pick(FAMILY_NAMES);
+            contact.displayName = contact.givenName + " " + contact.familyName;
+            contact.androidAccountType = pick(ACCOUNT_TYPES);
+            contact.androidAccountName = "user" + random.nextInt(3) + "@example.com";
+            if (random.nextInt(4) == 0) {
+                contact.company = "Company " + random.nextInt(500);
+                contact.jobTitle = "Engineer";
+            }
+            int phones = COUNTS[random.nextInt(COUNTS.length)];
+            for (int p = 0; p < phones; p++) {
+                contact.phones.add(new Item(String.valueOf(rowId++), pick(PHONE_LABELS), phoneNumber(),
+                        contact.androidAccountType));
+            }
+            int emails = COUNTS[random.nextInt(COUNTS.length)];
+            for (int e = 0; e < emails; e++) {
+                contact.emails.add(new Item(String.valueOf(rowId++), pick(EMAIL_LABELS),
+                        contact.givenName.toLowerCase() + e + "@example.com"));
+            }
+            if (random.nextInt(3) == 0) {
+                contact.postalAddresses.add(new PostalAddress(String.valueOf(rowId++), "home", random.nextInt(200) + " Main St",
+                        null, "Springfield", String.valueOf(10000 + random.nextInt(90000)), "IL", "USA", null));
+            }
+            contact.androidRawContactVersions.put(String.valueOf(i + 1), (long) random.nextInt(10));
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    String phoneNumber() {
+        return "+1 555 " + (100 + random.nextInt(900)) + " " + (1000 + random.nextInt(9000));
+    }
+
+    String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    Random random() {
+        return random;
+    }
+}
@@ -0,0 +1,69 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Serialization of whole address books to and from the maps sent over the method channel
+ ***/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContactMapBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int contacts;
+
+    private List<Contact> contactList;
+    private List<HashMap<String, Object>> maps;
+
+    @Setup
+    public void setUp() {
+        contactList = new ContactGenerator(42).generate(contacts);
+        maps = new ArrayList<>(contacts);
+        for (Contact contact : contactList) {
+            maps.add(contact.toMap());
+        }
+    }
+
+    @Benchmark
+    public void toMap(Blackhole blackhole) {
+        for (Contact contact : contactList) {
+            blackhole.consume(contact.toMap());
+        }
+    }
+
+    @Benchmark
+    public void toSummaryMap(Blackhole blackhole) {
+        for (Contact contact : contactList) {
+            blackhole.consume(contact.toSummaryMap());
+        }
+    }
+
+    @Benchmark
+    public void fromMap(Blackhole blackhole) {
+        for (HashMap<String, Object> map : maps) {
+            blackhole.consume(Contact.fromMap(map));
+        }
+    }
+
+    @Benchmark
+    public List<Contact> sortByGivenName() {
+        List<Contact> sorted = new ArrayList<>(contactList);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,109 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * The diff updateContacts runs between the stored and the edited phones and emails
+ * of every contact, with about a third of the values edited, removed or added
+ ***/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FieldDiffBenchmark {
+
+    // the semantics of the plugin's phone writer, rows of messaging apps are never deleted
+    private static final FieldDiff.Adapter<Item> PHONES = new FieldDiff.Adapter<Item>() {
+        @Override
+        public String getIdentifier(Item item) {
+            return item.identifier;
+        }
+
+        @Override
+        public boolean equalValues(Item item, Item existing) {
+            return item.equalValues(existing);
+        }
+
+        @Override
+        public boolean isDeletable(Item existing) {
+            return AccountPolicy.DEFAULT.allowsType(existing.accountType);
+        }
+    };
+
+    private static final FieldDiff.Adapter<Item> EMAILS = new FieldDiff.Adapter<Item>() {
+        @Override
+        public String getIdentifier(Item item) {
+            return item.identifier;
+        }
+
+        @Override
+        public boolean equalValues(Item item, Item existing) {
+            return item.equalValues(existing);
+        }
+
+        @Override
+        public boolean isDeletable(Item existing) {
+            return true;
+        }
+    };
+
+    @Param({"1000", "10000", "100000"})
+    int contacts;
+
+    private List<Contact> stored;
+    private List<Contact> edited;
+
+    @Setup
+    public void setUp() {
+        ContactGenerator generator = new ContactGenerator(42);
+        stored = generator.generate(contacts);
+        edited = new ArrayList<>(contacts);
+        Random random = generator.random();
+        for (Contact contact : stored) {
+            Contact copy = new Contact(contact.identifier);
+            copy.phones = edit(contact.phones, random, generator);
+            copy.emails = edit(contact.emails, random, generator);
+            edited.add(copy);
+        }
+    }
+
+    private static ArrayList<Item> edit(List<Item> items, Random random, ContactGenerator generator) {
+        ArrayList<Item> edited = new ArrayList<>(items.size() + 1);
+        for (Item item : items) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    // removed
+                    break;
+                case 1:
+                    edited.add(new Item(item.identifier, item.label, generator.phoneNumber(), item.accountType));
+                    break;
+                default:
+                    edited.add(new Item(item.identifier, item.label, item.value, item.accountType));
+            }
+        }
+        if (random.nextInt(6) == 0) {
+            edited.add(new Item(null, "mobile", generator.phoneNumber()));
+        }
+        return edited;
+    }
+
+    @Benchmark
+    public void compute(Blackhole blackhole) {
+        for (int i = 0; i < contacts; i++) {
+            blackhole.consume(FieldDiff.compute(stored.get(i).phones, edited.get(i).phones, PHONES));
+            blackhole.consume(FieldDiff.compute(stored.get(i).emails, edited.get(i).emails, EMAILS));
+        }
+    }
+}
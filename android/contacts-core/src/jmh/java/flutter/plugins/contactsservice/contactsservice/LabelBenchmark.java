@@ -0,0 +1,115 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * The label and account type checks run for every data row read or written
+ ***/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LabelBenchmark {
+
+    private static final String[] RELATION_LABELS = {"brother", "manager", "spouse", "referred by", "Mentor"};
+    private static final String[] IM_LABELS = {"Skype", "jabber", "QQ", "Hangouts", "Signal"};
+    private static final String[] WEBSITE_LABELS = {"homepage", "blog", "work", "Portfolio"};
+
+    @Param({"1000", "10000", "100000"})
+    int rows;
+
+    private String[] phoneLabels;
+    private String[] emailLabels;
+    private String[] relationLabels;
+    private String[] imLabels;
+    private String[] websiteLabels;
+    private String[] accountTypes;
+    // a distinct account type per row, none of them seen by a policy before
+    private String[] distinctAccountTypes;
+    private int[] phoneTypes;
+    private DataRow customLabelRow;
+
+    @Setup
+    public void setUp() {
+        ContactGenerator generator = new ContactGenerator(42);
+        phoneLabels = new String[rows];
+        emailLabels = new String[rows];
+        relationLabels = new String[rows];
+        imLabels = new String[rows];
+        websiteLabels = new String[rows];
+        accountTypes = new String[rows];
+        distinctAccountTypes = new String[rows];
+        phoneTypes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            phoneLabels[i] = generator.pick(ContactGenerator.PHONE_LABELS);
+            emailLabels[i] = generator.pick(ContactGenerator.EMAIL_LABELS);
+            relationLabels[i] = generator.pick(RELATION_LABELS);
+            imLabels[i] = generator.pick(IM_LABELS);
+            websiteLabels[i] = generator.pick(WEBSITE_LABELS);
+            accountTypes[i] = generator.pick(ContactGenerator.ACCOUNT_TYPES);
+            distinctAccountTypes[i] = accountTypes[i] + "." + i;
+            phoneTypes[i] = Item.stringToPhoneType(phoneLabels[i]);
+        }
+        customLabelRow = new DataRow() {
+            @Override
+            public String getString(String column) {
+                return "Satellite";
+            }
+
+            @Override
+            public int getInt(String column) {
+                return 0;
+            }
+        };
+    }
+
+    @Benchmark
+    public void stringToPhoneType(Blackhole blackhole) {
+        for (String label : phoneLabels) {
+            blackhole.consume(Item.stringToPhoneType(label));
+        }
+    }
+
+    @Benchmark
+    public void stringToOtherTypes(Blackhole blackhole) {
+        for (int i = 0; i < rows; i++) {
+            blackhole.consume(Item.stringToEmailType(emailLabels[i]));
+            blackhole.consume(Item.stringToRelationType(relationLabels[i]));
+            blackhole.consume(Item.stringToInstantMessageAddressProtocol(imLabels[i]));
+            blackhole.consume(Item.stringToWebsiteType(websiteLabels[i]));
+        }
+    }
+
+    @Benchmark
+    public void getPhoneLabel(Blackhole blackhole) {
+        for (int type : phoneTypes) {
+            blackhole.consume(Item.getPhoneLabel(type, customLabelRow));
+        }
+    }
+
+    // the verdict of each account type is remembered after the first row of that type
+    @Benchmark
+    public void allowsType(Blackhole blackhole) {
+        for (String accountType : accountTypes) {
+            blackhole.consume(AccountPolicy.DEFAULT.allowsType(accountType));
+        }
+    }
+
+    // every row is the first of its type, the cost of computing and remembering a verdict
+    @Benchmark
+    public void allowsTypeFirstCall(Blackhole blackhole) {
+        AccountPolicy policy = new AccountPolicy(null, AccountPolicy.MESSAGING_ACCOUNT_TYPES, null, null, false);
+        for (String accountType : distinctAccountTypes) {
+            blackhole.consume(policy.allowsType(accountType));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Which accounts the raw contacts read and updated may belong to. Allowed account types and names
+ * match exactly, denied account types match any type containing them, ignoring case. Raw contacts
+ * without an account type pass unless account types are allowed explicitly.
+ * The policy is compiled once into a RawContacts.ACCOUNT_TYPE / ACCOUNT_NAME selection for the
+ * provider, and the in memory checks remember the verdict of each account type
+ ***/
+public class AccountPolicy {
+
+    // the messaging and social apps syncing their own raw contacts
+    static final List<String> MESSAGING_ACCOUNT_TYPES = Collections.unmodifiableList(
+            Arrays.asList("whatsapp", "facebook", "linkedin", "telegram", "twitter", "skype", "signal"));
+
+    /**
+     * Keeps updates away from the raw contacts synced by messaging and social apps, reads see every account
+     */
+    public static final AccountPolicy DEFAULT = new AccountPolicy(null, MESSAGING_ACCOUNT_TYPES, null, null, false);
+
+    private final Set<String> allowedTypes;
+    private final List<String> deniedTypes;
+    private final Set<String> allowedNames;
+    private final Set<String> deniedNames;
+    // whether reads are restricted too, updates always are
+    final boolean filterReads;
+
+    // null when every account passes
+    final String selection;
+    final String[] selectionArgs;
+
+    private final ConcurrentHashMap<String, Boolean> verdictByType = new ConcurrentHashMap<>();
+
+    /**
+     * @param allowedTypes the only account types allowed, null or empty for any
+     * @param deniedTypes parts of the account types denied
+     * @param allowedNames the only account names allowed, null or empty for any
+     * @param deniedNames the account names denied
+     */
+    public AccountPolicy(List<String> allowedTypes, List<String> deniedTypes, List<String> allowedNames,
+                         List<String> deniedNames, boolean filterReads) {
+        this.allowedTypes = toSet(allowedTypes);
+        this.deniedTypes = new ArrayList<>();
+        if (deniedTypes != null) {
+            for (String type : deniedTypes) {
+                if (!StringUtils.isNullOrEmpty(type)) {
+                    this.deniedTypes.add(type.toLowerCase(Locale.ROOT).trim());
+                }
+            }
+        }
+        this.allowedNames = toSet(allowedNames);
+        this.deniedNames = toSet(deniedNames);
+        this.filterReads = filterReads;
+
+        StringBuilder builder = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        if (!this.allowedTypes.isEmpty()) {
+            and(builder).append("account_type IN (").append(placeholders(this.allowedTypes.size())).append(")");
+            args.addAll(this.allowedTypes);
+        }
+        if (!this.deniedTypes.isEmpty()) {
+            // LIKE ignores the case of ASCII letters, as the in memory check does
+            and(builder).append("(account_type IS NULL OR (");
+            for (int i = 0; i < this.deniedTypes.size(); i++) {
+                builder.append(i == 0 ? "" : " AND ").append("account_type NOT LIKE ? ESCAPE '\\'");
+                args.add("%" + escapeLike(this.deniedTypes.get(i)) + "%");
+            }
+            builder.append("))");
+        }
+        if (!this.allowedNames.isEmpty()) {
+            and(builder).append("account_name IN (").append(placeholders(this.allowedNames.size())).append(")");
+            args.addAll(this.allowedNames);
+        }
+        if (!this.deniedNames.isEmpty()) {
+            and(builder).append("(account_name IS NULL OR account_name NOT IN (")
+                    .append(placeholders(this.deniedNames.size())).append("))");
+            args.addAll(this.deniedNames);
+        }
+        this.selection = builder.length() > 0 ? builder.toString() : null;
+        this.selectionArgs = args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Reads the policy sent over the channel, keys allowedAccountTypes, deniedAccountTypes,
+     * allowedAccountNames, deniedAccountNames and filterReads
+     */
+    @SuppressWarnings("unchecked")
+    public static AccountPolicy fromMap(Map<?, ?> map) {
+        return new AccountPolicy((List<String>) map.get("allowedAccountTypes"), (List<String>) map.get("deniedAccountTypes"),
+                (List<String>) map.get("allowedAccountNames"), (List<String>) map.get("deniedAccountNames"),
+                !Boolean.FALSE.equals(map.get("filterReads")));
+    }
+
+    public boolean allowsType(String accountType) {
+        String key = accountType == null ? "" : accountType;
+        Boolean verdict = verdictByType.get(key);
+        if (verdict == null) {
+            verdict = computeAllowsType(key);
+            verdictByType.put(key, verdict);
+        }
+        return verdict;
+    }
+
+    public boolean allows(String accountType, String accountName) {
+        if (!allowsType(accountType)) {
+            return false;
+        }
+        if (!allowedNames.isEmpty() && !allowedNames.contains(accountName)) {
+            return false;
+        }
+        return accountName == null || !deniedNames.contains(accountName);
+    }
+
+    private boolean computeAllowsType(String accountType) {
+        if (!allowedTypes.isEmpty() && !allowedTypes.contains(accountType)) {
+            return false;
+        }
+        if (accountType.isEmpty()) {
+            return true;
+        }
+        String lowerCase = accountType.toLowerCase(Locale.ROOT).trim();
+        for (String denied : deniedTypes) {
+            if (lowerCase.contains(denied)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static StringBuilder and(StringBuilder builder) {
+        if (builder.length() > 0) {
+            builder.append(" AND ");
+        }
+        return builder;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static Set<String> toSet(List<String> values) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>();
+        for (String value : values) {
+            if (!StringUtils.isNullOrEmpty(value)) {
+                set.add(value);
+            }
+        }
+        return set;
+    }
+}
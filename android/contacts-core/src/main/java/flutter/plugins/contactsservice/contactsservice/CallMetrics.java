@@ -0,0 +1,65 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+/***
+ * What a single method channel call cost. Only touched by the thread running the call,
+ * then added to the {@link Metrics} once the call is done
+ ***/
+public class CallMetrics {
+
+    final String method;
+    final long enqueuedNanos = System.nanoTime();
+    long startedNanos;
+    long providerNanos;
+    long serializationNanos;
+    long rowsScanned;
+    long contactsDecoded;
+    long payloadBytes;
+    long providerRoundTrips;
+    // answered by an identical call that was already running, nothing ran for this one
+    boolean coalesced;
+
+    public CallMetrics(String method) {
+        this.method = method;
+    }
+
+    public void started() {
+        startedNanos = System.nanoTime();
+    }
+
+    public void coalesced() {
+        coalesced = true;
+    }
+
+    public void addProviderCall(long nanos) {
+        providerRoundTrips++;
+        providerNanos += nanos;
+    }
+
+    public void addProviderTime(long nanos) {
+        providerNanos += nanos;
+    }
+
+    public void addRowScanned() {
+        rowsScanned++;
+    }
+
+    public void addContactsDecoded(int contacts) {
+        contactsDecoded += contacts;
+    }
+
+    /**
+     * @param payload what the call sends back, measured as the standard message codec would encode it
+     */
+    public void addSerialization(long nanos, Object payload) {
+        serializationNanos += nanos;
+        payloadBytes += Metrics.payloadSize(payload);
+    }
+
+    /**
+     * @param bytes the size of what the call sends back, already encoded
+     */
+    public void addEncodedPayload(long nanos, long bytes) {
+        serializationNanos += nanos;
+        payloadBytes += bytes;
+    }
+}
@@ -2,6 +2,7 @@ package flutter.plugins.contactsservice.contactsservice;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 public class Contact implements Comparable<Contact> {
 
@@ -24,8 +25,12 @@ public class Contact implements Comparable<Contact> {
     ArrayList<Item> phones = new ArrayList<>();
     ArrayList<PostalAddress> postalAddresses = new ArrayList<>();
     ArrayList<String> labels = new ArrayList<>();
+    // raw contact id to the version it had when the contact was read
+    HashMap<String, Long> androidRawContactVersions = new HashMap<>();
 
     byte[] avatar = new byte[0];
+    // content uri of the thumbnail, only read for summaries
+    String photoThumbnailUri;
 
     HashMap<String, Object> toMap() {
         HashMap<String, Object> contactMap = new HashMap<>();
@@ -93,6 +98,7 @@ public class Contact implements Comparable<Contact> {
         }
         contactMap.put("relations", relationsMap);
         contactMap.put("labels", labels);
+        contactMap.put("androidRawContactVersions", androidRawContactVersions);
 
         return contactMap;
     }
@@ -167,15 +173,21 @@ public class Contact implements Comparable<Contact> {
         if (labels != null) {
             contact.labels.addAll(labels);
         }
+        HashMap<String, Number> versions = (HashMap<String, Number>) map.get("androidRawContactVersions");
+        if (versions != null) {
+            for (Map.Entry<String, Number> version : versions.entrySet()) {
+                contact.androidRawContactVersions.put(version.getKey(), version.getValue().longValue());
+            }
+        }
         return contact;
     }
 
     @Override
     public int compareTo(Contact contact) {
-        String givenName1 = this.givenName == null ? "" : this.givenName.toLowerCase();
-        String givenName2 = contact == null ? ""
-            : (contact.givenName == null ? "" : contact.givenName.toLowerCase());
-        return givenName1.compareTo(givenName2);
+        String givenName1 = this.givenName == null ? "" : this.givenName;
+        String givenName2 = contact == null || contact.givenName == null ? "" : contact.givenName;
+        // compares char by char without lower casing copies of both names
+        return String.CASE_INSENSITIVE_ORDER.compare(givenName1, givenName2);
     }
 
     HashMap<String, Object> toSummaryMap() {
@@ -187,6 +199,7 @@ public class Contact implements Comparable<Contact> {
         contactMap.put("familyName", familyName);
         contactMap.put("prefix", prefix);
         contactMap.put("suffix", suffix);
+        contactMap.put("photoThumbnailUri", photoThumbnailUri);
         return contactMap;
     }
 }
\ No newline at end of file
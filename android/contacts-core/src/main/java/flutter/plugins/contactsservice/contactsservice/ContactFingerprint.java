@@ -0,0 +1,52 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+/***
+ * 64 bit fingerprints of contacts, built from their data rows in any order
+ * so that a contact's fingerprint only changes when its content does
+ ***/
+public class ContactFingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ContactFingerprint() {
+    }
+
+    /**
+     * Hashes the values of one data row, null and empty values being distinct
+     */
+    public static long hashRow(String[] values) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String value : values) {
+            if (value == null) {
+                hash = (hash ^ 0xFF) * FNV_PRIME;
+                continue;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+            // separator, so ("ab", "c") and ("a", "bc") differ
+            hash = (hash ^ 0xFE) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Adds a row hash to a contact fingerprint. Addition keeps the result independent of the row order
+     * while, unlike xor, two identical rows do not cancel out
+     */
+    public static long combine(long fingerprint, long rowHash) {
+        return fingerprint + rowHash;
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads the FNV bits before the rows are summed
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
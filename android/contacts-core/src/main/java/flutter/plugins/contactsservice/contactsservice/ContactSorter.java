@@ -0,0 +1,155 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/***
+ * Sorts contacts by name the way the user's locale does, accents and scripts included.
+ * The collation key of each contact is computed once, on several threads, and the sort
+ * only compares keys. Contacts without a name to sort on come last
+ ***/
+public class ContactSorter {
+
+    public static final String GIVEN_NAME = "givenName";
+    public static final String FAMILY_NAME = "familyName";
+    public static final String DISPLAY_NAME = "displayName";
+    public static final String PHONETIC = "phonetic";
+
+    // below this many contacts the keys are computed on the calling thread
+    private static final int PARALLEL_THRESHOLD = 2000;
+
+    private static class Entry {
+        final Contact contact;
+        final CollationKey key;
+
+        Entry(Contact contact, CollationKey key) {
+            this.contact = contact;
+            this.key = key;
+        }
+    }
+
+    private static final Comparator<Entry> BY_KEY = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry first, Entry second) {
+            if (first.key == null || second.key == null) {
+                return first.key == null ? (second.key == null ? 0 : 1) : -1;
+            }
+            return first.key.compareTo(second.key);
+        }
+    };
+
+    private final String sortOrder;
+    private final Collator collator;
+
+    /**
+     * @param sortOrder one of {@link #GIVEN_NAME}, {@link #FAMILY_NAME}, {@link #DISPLAY_NAME} or {@link #PHONETIC}
+     */
+    public ContactSorter(String sortOrder, Locale locale) {
+        if (!GIVEN_NAME.equals(sortOrder) && !FAMILY_NAME.equals(sortOrder)
+                && !DISPLAY_NAME.equals(sortOrder) && !PHONETIC.equals(sortOrder)) {
+            throw new IllegalArgumentException("Unknown sort order " + sortOrder);
+        }
+        this.sortOrder = sortOrder;
+        this.collator = Collator.getInstance(locale);
+        // case is a tie breaker only, accents still count
+        this.collator.setStrength(Collator.SECONDARY);
+    }
+
+    /**
+     * Sorts the contacts in place. The sort is stable, contacts with equal names keep their order.
+     */
+    public void sort(List<Contact> contacts, ExecutorService executor, int parallelism)
+            throws InterruptedException, ExecutionException {
+        final Contact[] source = contacts.toArray(new Contact[contacts.size()]);
+        final Entry[] entries = new Entry[source.length];
+        if (source.length < PARALLEL_THRESHOLD || parallelism <= 1) {
+            computeKeys(collator, source, entries, 0, source.length);
+        } else {
+            int tasks = Math.min(parallelism, source.length);
+            final int chunk = (source.length + tasks - 1) / tasks;
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < tasks; t++) {
+                final int start = t * chunk;
+                final int end = Math.min(source.length, start + chunk);
+                // collators are not thread safe
+                final Collator taskCollator = (Collator) collator.clone();
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        computeKeys(taskCollator, source, entries, start, end);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        Arrays.sort(entries, BY_KEY);
+        for (int i = 0; i < entries.length; i++) {
+            contacts.set(i, entries[i].contact);
+        }
+    }
+
+    private void computeKeys(Collator collator, Contact[] contacts, Entry[] entries, int start, int end) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            builder.setLength(0);
+            String name = sortName(contacts[i], builder);
+            entries[i] = new Entry(contacts[i], name.isEmpty() ? null : collator.getCollationKey(name));
+        }
+    }
+
+    /**
+     * The name the contact sorts on, falling back to the display name when the fields of the
+     * sort order are empty
+     */
+    String sortName(Contact contact, StringBuilder builder) {
+        switch (sortOrder) {
+            case GIVEN_NAME:
+                append(builder, contact.givenName);
+                append(builder, contact.familyName);
+                break;
+            case FAMILY_NAME:
+                append(builder, contact.familyName);
+                append(builder, contact.givenName);
+                break;
+            case PHONETIC:
+                append(builder, contact.phoneticFamilyName);
+                append(builder, contact.phoneticGivenName);
+                if (builder.length() == 0) {
+                    append(builder, contact.phoneticName);
+                }
+                break;
+            default:
+                break;
+        }
+        if (builder.length() == 0) {
+            append(builder, contact.displayName);
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String value) {
+        if (value == null) {
+            return;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return;
+        }
+        if (builder.length() > 0) {
+            builder.append(' ');
+        }
+        builder.append(trimmed);
+    }
+}
@@ -0,0 +1,112 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+/***
+ * The columns and types of ContactsContract.CommonDataKinds the model reads,
+ * with the same values, so the model builds without the Android SDK
+ ***/
+public final class DataKinds {
+
+    public static final String ID = "_id";
+
+    private DataKinds() {
+    }
+
+    public static final class Phone {
+        public static final String TYPE = "data2";
+        public static final String LABEL = "data3";
+
+        public static final int TYPE_CUSTOM = 0;
+        public static final int TYPE_HOME = 1;
+        public static final int TYPE_MOBILE = 2;
+        public static final int TYPE_WORK = 3;
+        public static final int TYPE_FAX_WORK = 4;
+        public static final int TYPE_FAX_HOME = 5;
+        public static final int TYPE_PAGER = 6;
+        public static final int TYPE_OTHER = 7;
+        public static final int TYPE_COMPANY_MAIN = 10;
+        public static final int TYPE_MAIN = 12;
+    }
+
+    public static final class Email {
+        public static final String LABEL = "data3";
+
+        public static final int TYPE_CUSTOM = 0;
+        public static final int TYPE_HOME = 1;
+        public static final int TYPE_WORK = 2;
+        public static final int TYPE_OTHER = 3;
+        public static final int TYPE_MOBILE = 4;
+    }
+
+    public static final class Event {
+        public static final String LABEL = "data3";
+
+        public static final int TYPE_CUSTOM = 0;
+        public static final int TYPE_ANNIVERSARY = 1;
+        public static final int TYPE_OTHER = 2;
+        public static final int TYPE_BIRTHDAY = 3;
+    }
+
+    public static final class Relation {
+        public static final String LABEL = "data3";
+
+        public static final int TYPE_CUSTOM = 0;
+        public static final int TYPE_ASSISTANT = 1;
+        public static final int TYPE_BROTHER = 2;
+        public static final int TYPE_CHILD = 3;
+        public static final int TYPE_DOMESTIC_PARTNER = 4;
+        public static final int TYPE_FATHER = 5;
+        public static final int TYPE_FRIEND = 6;
+        public static final int TYPE_MANAGER = 7;
+        public static final int TYPE_MOTHER = 8;
+        public static final int TYPE_PARENT = 9;
+        public static final int TYPE_PARTNER = 10;
+        public static final int TYPE_REFERRED_BY = 11;
+        public static final int TYPE_SISTER = 13;
+        public static final int TYPE_SPOUSE = 14;
+    }
+
+    public static final class Im {
+        public static final String CUSTOM_PROTOCOL = "data6";
+
+        public static final int PROTOCOL_CUSTOM = -1;
+        public static final int PROTOCOL_AIM = 0;
+        public static final int PROTOCOL_MSN = 1;
+        public static final int PROTOCOL_YAHOO = 2;
+        public static final int PROTOCOL_SKYPE = 3;
+        public static final int PROTOCOL_QQ = 4;
+        public static final int PROTOCOL_GOOGLE_TALK = 5;
+        public static final int PROTOCOL_ICQ = 6;
+        public static final int PROTOCOL_JABBER = 7;
+        public static final int PROTOCOL_NETMEETING = 8;
+    }
+
+    public static final class Website {
+        public static final String LABEL = "data3";
+
+        public static final int TYPE_CUSTOM = 0;
+        public static final int TYPE_HOMEPAGE = 1;
+        public static final int TYPE_BLOG = 2;
+        public static final int TYPE_PROFILE = 3;
+        public static final int TYPE_HOME = 4;
+        public static final int TYPE_WORK = 5;
+        public static final int TYPE_FTP = 6;
+        public static final int TYPE_OTHER = 7;
+    }
+
+    public static final class StructuredPostal {
+        public static final String FORMATTED_ADDRESS = "data1";
+        public static final String TYPE = "data2";
+        public static final String LABEL = "data3";
+        public static final String STREET = "data4";
+        public static final String NEIGHBORHOOD = "data6";
+        public static final String CITY = "data7";
+        public static final String REGION = "data8";
+        public static final String POSTCODE = "data9";
+        public static final String COUNTRY = "data10";
+
+        public static final int TYPE_CUSTOM = 0;
+        public static final int TYPE_HOME = 1;
+        public static final int TYPE_WORK = 2;
+        public static final int TYPE_OTHER = 3;
+    }
+}
@@ -0,0 +1,12 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+/***
+ * A row of the contacts data table, read by column name.
+ * Keeps the label mapping independent of android.database.Cursor
+ ***/
+public interface DataRow {
+
+    String getString(String column);
+
+    int getInt(String column);
+}
@@ -0,0 +1,286 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/***
+ * Finds contacts which are likely the same person. Contacts are bucketed by
+ * their normalized phones, emails and names so only contacts sharing a key are
+ * ever compared, and the buckets are scored in parallel
+ ***/
+public class DuplicateFinder {
+
+    public static final String REASON_PHONE = "phone";
+    public static final String REASON_EMAIL = "email";
+    public static final String REASON_NAME = "name";
+    public static final String REASON_PHONETIC_NAME = "phoneticName";
+
+    private static final String[] REASONS = {REASON_PHONE, REASON_EMAIL, REASON_NAME, REASON_PHONETIC_NAME};
+    // A phone or an email in common is enough, a phonetic name alone is not
+    private static final double[] WEIGHTS = {1.0, 1.0, 0.6, 0.4};
+    private static final double THRESHOLD = 0.6;
+
+    // Keys shared by that many contacts (a switchboard number, a common name) do not tell duplicates apart
+    private static final int MAX_BUCKET_SIZE = 200;
+    // Trailing digits compared, so national and international forms of a number match
+    private static final int PHONE_DIGITS = 9;
+    private static final int MIN_PHONE_DIGITS = 6;
+
+    /**
+     * The normalized keys of one contact
+     */
+    public static class Candidate {
+        final String identifier;
+        // sorted, each prefixed by the index of its reason
+        final String[] keys;
+
+        Candidate(String identifier, String[] keys) {
+            this.identifier = identifier;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Contacts found to be duplicates of each other, and why
+     */
+    public static class Cluster {
+        public final List<String> identifiers = new ArrayList<>();
+        public final List<String> reasons = new ArrayList<>();
+    }
+
+    private static class Match {
+        final int first;
+        final int second;
+        final int reasons;
+
+        Match(int first, int second, int reasons) {
+            this.first = first;
+            this.second = second;
+            this.reasons = reasons;
+        }
+    }
+
+    public static Candidate candidate(String identifier, String givenName, String middleName, String familyName,
+                                      String phoneticName, Collection<String> phones, Collection<String> emails) {
+        TreeSet<String> keys = new TreeSet<>();
+        for (String phone : phones) {
+            String digits = normalizePhone(phone);
+            if (digits != null) {
+                keys.add("0" + digits);
+            }
+        }
+        for (String email : emails) {
+            if (email != null && !email.trim().isEmpty()) {
+                keys.add("1" + email.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        String name = normalizeName(givenName, middleName, familyName);
+        if (name != null) {
+            keys.add("2" + name);
+        }
+        String phonetic = normalizeName(phoneticName);
+        if (phonetic != null) {
+            keys.add("3" + phonetic);
+        }
+        return new Candidate(identifier, keys.toArray(new String[keys.size()]));
+    }
+
+    /**
+     * @param executor    runs the scoring of the buckets, it must not be busy running the caller
+     * @param parallelism the number of tasks the buckets are split into
+     * @return the clusters of at least two contacts, in the order of their first contact
+     */
+    public static List<Cluster> find(final List<Candidate> candidates, ExecutorService executor, int parallelism)
+            throws InterruptedException, ExecutionException {
+        final Map<String, int[]> buckets = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            for (String key : candidate.keys) {
+                Integer size = sizes.get(key);
+                sizes.put(key, size == null ? 1 : size + 1);
+            }
+        }
+        Map<String, Integer> filled = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            for (String key : candidates.get(i).keys) {
+                int size = sizes.get(key);
+                if (size < 2 || size > MAX_BUCKET_SIZE) {
+                    continue;
+                }
+                int[] bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new int[size];
+                    buckets.put(key, bucket);
+                }
+                Integer position = filled.get(key);
+                int index = position == null ? 0 : position;
+                bucket[index] = i;
+                filled.put(key, index + 1);
+            }
+        }
+
+        final List<Map.Entry<String, int[]>> bucketList = new ArrayList<>(buckets.entrySet());
+        int tasks = Math.max(1, Math.min(parallelism, bucketList.size()));
+        List<Future<List<Match>>> futures = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            final int offset = t;
+            final int stride = tasks;
+            futures.add(executor.submit(new Callable<List<Match>>() {
+                @Override
+                public List<Match> call() {
+                    List<Match> matches = new ArrayList<>();
+                    for (int b = offset; b < bucketList.size(); b += stride) {
+                        scoreBucket(bucketList.get(b).getKey(), bucketList.get(b).getValue(), buckets, candidates, matches);
+                    }
+                    return matches;
+                }
+            }));
+        }
+
+        int[] parents = new int[candidates.size()];
+        // reasons of each cluster, held by its root
+        int[] reasons = new int[candidates.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (Future<List<Match>> future : futures) {
+            for (Match match : future.get()) {
+                int first = root(parents, match.first);
+                int second = root(parents, match.second);
+                int root = Math.min(first, second);
+                int other = Math.max(first, second);
+                parents[other] = root;
+                reasons[root] |= reasons[other] | match.reasons;
+            }
+        }
+
+        Map<Integer, Cluster> clusters = new LinkedHashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            int root = root(parents, i);
+            if (reasons[root] == 0) {
+                continue;
+            }
+            Cluster cluster = clusters.get(root);
+            if (cluster == null) {
+                cluster = new Cluster();
+                for (int r = 0; r < REASONS.length; r++) {
+                    if ((reasons[root] & (1 << r)) != 0) {
+                        cluster.reasons.add(REASONS[r]);
+                    }
+                }
+                clusters.put(root, cluster);
+            }
+            cluster.identifiers.add(candidates.get(i).identifier);
+        }
+        return new ArrayList<>(clusters.values());
+    }
+
+    /**
+     * Scores the pairs of a bucket. A pair is only scored in the bucket of the first key the two contacts
+     * share among the buckets kept, so it is scored once however many keys they share
+     */
+    private static void scoreBucket(String key, int[] bucket, Map<String, int[]> buckets, List<Candidate> candidates,
+                                    List<Match> matches) {
+        for (int i = 0; i < bucket.length; i++) {
+            String[] firstKeys = candidates.get(bucket[i]).keys;
+            for (int j = i + 1; j < bucket.length; j++) {
+                String[] secondKeys = candidates.get(bucket[j]).keys;
+                int shared = 0;
+                String owner = null;
+                int a = 0;
+                int b = 0;
+                while (a < firstKeys.length && b < secondKeys.length) {
+                    int comparison = firstKeys[a].compareTo(secondKeys[b]);
+                    if (comparison == 0) {
+                        if (owner == null && buckets.containsKey(firstKeys[a])) {
+                            owner = firstKeys[a];
+                        }
+                        shared |= 1 << (firstKeys[a].charAt(0) - '0');
+                        a++;
+                        b++;
+                    } else if (comparison < 0) {
+                        a++;
+                    } else {
+                        b++;
+                    }
+                }
+                if (key.equals(owner) && score(shared) >= THRESHOLD) {
+                    matches.add(new Match(bucket[i], bucket[j], shared));
+                }
+            }
+        }
+    }
+
+    private static double score(int reasons) {
+        double score = 0;
+        for (int r = 0; r < WEIGHTS.length; r++) {
+            if ((reasons & (1 << r)) != 0) {
+                score += WEIGHTS[r];
+            }
+        }
+        return score;
+    }
+
+    private static int root(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        if (digits.length() < MIN_PHONE_DIGITS) {
+            return null;
+        }
+        return digits.length() > PHONE_DIGITS ? digits.substring(digits.length() - PHONE_DIGITS) : digits.toString();
+    }
+
+    /**
+     * Lower cases the name parts and sorts their words, so "Doe John" and "john doe" match
+     */
+    static String normalizeName(String... parts) {
+        List<String> words = new ArrayList<>();
+        for (String part : parts) {
+            if (part == null) {
+                continue;
+            }
+            for (String word : part.toLowerCase(Locale.ROOT).split("[\\s.,]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        String[] sorted = words.toArray(new String[words.size()]);
+        Arrays.sort(sorted);
+        StringBuilder name = new StringBuilder();
+        for (String word : sorted) {
+            name.append(word).append(' ');
+        }
+        return name.toString().trim();
+    }
+}
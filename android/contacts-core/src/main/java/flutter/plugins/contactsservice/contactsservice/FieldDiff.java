@@ -0,0 +1,90 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/***
+ * Minimal set of row changes turning the stored values of a multi valued
+ * contact field (emails, phones, addresses...) into the new ones
+ ***/
+public class FieldDiff<T> {
+
+    /**
+     * Tells the diff how the items of one field kind are identified and compared
+     */
+    public interface Adapter<T> {
+
+        /**
+         * @return the data row id of the item, null or empty when the item is not stored yet
+         */
+        String getIdentifier(T item);
+
+        /**
+         * @return true when the stored item already holds the values of the new one
+         */
+        boolean equalValues(T item, T existing);
+
+        /**
+         * @return true when the stored item may be deleted if it is missing from the new values
+         */
+        boolean isDeletable(T existing);
+    }
+
+    public final List<T> inserts = new ArrayList<>();
+    public final List<T> updates = new ArrayList<>();
+    public final List<T> deletes = new ArrayList<>();
+
+    private FieldDiff() {
+    }
+
+    /**
+     * Matches new items to stored ones by identifier, in linear time
+     *
+     * @param existingItems the items currently stored
+     * @param newItems      the wanted items, those without identifier are inserted
+     * @return the items to insert, the items to update and the stored items to delete
+     */
+    public static <T> FieldDiff<T> compute(List<T> existingItems, List<T> newItems, Adapter<T> adapter) {
+        FieldDiff<T> diff = new FieldDiff<>();
+
+        Map<String, T> unmatched = new LinkedHashMap<>();
+        for (T existing : existingItems) {
+            unmatched.put(adapter.getIdentifier(existing), existing);
+        }
+
+        Set<String> matched = new HashSet<>();
+        for (T item : newItems) {
+            String identifier = adapter.getIdentifier(item);
+            if (StringUtils.isNullOrEmpty(identifier)) {
+                diff.inserts.add(item);
+                continue;
+            }
+            if (!matched.add(identifier)) {
+                // the same stored row listed twice, the first occurrence wins
+                continue;
+            }
+            T existing = unmatched.remove(identifier);
+            if (existing == null) {
+                // not a row of this contact (anymore), keep the value anyway
+                diff.inserts.add(item);
+            } else if (!adapter.equalValues(item, existing)) {
+                diff.updates.add(item);
+            }
+        }
+
+        for (T existing : unmatched.values()) {
+            if (adapter.isDeletable(existing)) {
+                diff.deletes.add(existing);
+            }
+        }
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return inserts.isEmpty() && updates.isEmpty() && deletes.isEmpty();
+    }
+}
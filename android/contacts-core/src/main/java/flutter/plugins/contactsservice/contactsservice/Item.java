@@ -0,0 +1,421 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.HashMap;
+
+import static flutter.plugins.contactsservice.contactsservice.StringUtils.equalsStrings;
+
+/***
+ * Represents an object which has a label and a value
+ * such as an email or a phone
+ ***/
+public class Item {
+
+    public String identifier, label, value;
+    public String accountType = "";
+
+    public Item(String identifier, String label, String value) {
+        this.identifier = identifier;
+        this.label = label;
+        this.value = value;
+    }
+
+    public Item(String identifier, String label, String value, String accountType) {
+        this.identifier = identifier;
+        this.label = label;
+        this.value = value;
+        this.accountType = accountType;
+    }
+
+    HashMap<String, String> toMap() {
+        HashMap<String, String> result = new HashMap<>();
+        result.put("identifier", identifier);
+        result.put("label", label);
+        result.put("value", value);
+        result.put("accountType", accountType);
+        return result;
+    }
+
+    public static Item fromMap(HashMap<String, String> map) {
+        return new Item(map.get("identifier"), map.get("label"), map.get("value"), map.get("accountType"));
+    }
+
+    public static String getPhoneLabel(int type, DataRow row) {
+        switch (type) {
+            case DataKinds.Phone.TYPE_HOME:
+                return "home";
+            case DataKinds.Phone.TYPE_WORK:
+                return "work";
+            case DataKinds.Phone.TYPE_MOBILE:
+                return "mobile";
+            case DataKinds.Phone.TYPE_FAX_WORK:
+                return "fax work";
+            case DataKinds.Phone.TYPE_FAX_HOME:
+                return "fax home";
+            case DataKinds.Phone.TYPE_MAIN:
+                return "main";
+            case DataKinds.Phone.TYPE_COMPANY_MAIN:
+                return "company";
+            case DataKinds.Phone.TYPE_PAGER:
+                return "pager";
+            case DataKinds.Phone.TYPE_CUSTOM:
+                if (row.getString(DataKinds.Phone.LABEL) != null) {
+                    return row.getString(DataKinds.Phone.LABEL).toLowerCase();
+                } else {
+                    return "";
+                }
+            default:
+                return "other";
+        }
+    }
+
+    public static String getEmailLabel(int type, DataRow row) {
+        switch (type) {
+            case DataKinds.Email.TYPE_HOME:
+                return "home";
+            case DataKinds.Email.TYPE_WORK:
+                return "work";
+            case DataKinds.Email.TYPE_MOBILE:
+                return "mobile";
+            case DataKinds.Email.TYPE_CUSTOM:
+                if (row.getString(DataKinds.Email.LABEL) != null) {
+                    return row.getString(DataKinds.Email.LABEL).toLowerCase();
+                } else {
+                    return "";
+                }
+            default:
+                return "other";
+        }
+    }
+
+    public static String getDatesLabel(int type, DataRow row) {
+        switch (type) {
+            case DataKinds.Event.TYPE_ANNIVERSARY:
+                return "anniversary";
+            case DataKinds.Event.TYPE_BIRTHDAY:
+                return "birthday";
+            case DataKinds.Event.TYPE_CUSTOM:
+                if (row.getString(DataKinds.Event.LABEL) != null) {
+                    return row.getString(DataKinds.Event.LABEL).toLowerCase();
+                } else {
+                    return "";
+                }
+            default:
+                return "other";
+        }
+    }
+
+    public static String getRelationLabel(int type, DataRow row) {
+        switch (type) {
+            case DataKinds.Relation.TYPE_ASSISTANT:
+                return "assistant";
+            case DataKinds.Relation.TYPE_BROTHER:
+                return "brother";
+            case DataKinds.Relation.TYPE_CHILD:
+                return "child";
+            case DataKinds.Relation.TYPE_DOMESTIC_PARTNER:
+                return "domestic partner";
+            case DataKinds.Relation.TYPE_FATHER:
+                return "father";
+            case DataKinds.Relation.TYPE_FRIEND:
+                return "friend";
+            case DataKinds.Relation.TYPE_MANAGER:
+                return "manager";
+            case DataKinds.Relation.TYPE_MOTHER:
+                return "mother";
+            case DataKinds.Relation.TYPE_PARENT:
+                return "parent";
+            case DataKinds.Relation.TYPE_PARTNER:
+                return "partner";
+            case DataKinds.Relation.TYPE_REFERRED_BY:
+                return "referred by";
+            case DataKinds.Relation.TYPE_SISTER:
+                return "sister";
+            case DataKinds.Relation.TYPE_SPOUSE:
+                return "spouse";
+            case DataKinds.Relation.TYPE_CUSTOM:
+                if (row.getString(DataKinds.Relation.LABEL) != null) {
+                    return row.getString(DataKinds.Relation.LABEL).toLowerCase();
+                } else {
+                    return "";
+                }
+            default:
+                return "other";
+        }
+    }
+
+    public static String getInstantMessageAddressLabel(int protocol, DataRow row) {
+        switch (protocol) {
+            case DataKinds.Im.PROTOCOL_AIM:
+                return "AIM";
+            case DataKinds.Im.PROTOCOL_MSN:
+                return "Windows Live";
+            case DataKinds.Im.PROTOCOL_YAHOO:
+                return "Yahoo";
+            case DataKinds.Im.PROTOCOL_SKYPE:
+                return "Skype";
+            case DataKinds.Im.PROTOCOL_QQ:
+                return "QQ";
+            case DataKinds.Im.PROTOCOL_GOOGLE_TALK:
+                return "Hangouts";
+            case DataKinds.Im.PROTOCOL_ICQ:
+                return "ICQ";
+            case DataKinds.Im.PROTOCOL_JABBER:
+                return "Jabber";
+            case DataKinds.Im.PROTOCOL_NETMEETING:
+                return "Net Meeting";
+            case DataKinds.Im.PROTOCOL_CUSTOM:
+                if (row.getString(DataKinds.Im.CUSTOM_PROTOCOL) != null) {
+                    return row.getString(DataKinds.Im.CUSTOM_PROTOCOL);
+                } else {
+                    return "";
+                }
+            default:
+                return "other";
+        }
+    }
+
+    public static String getWebsiteLabel(int type, DataRow row) {
+        switch (type) {
+            case DataKinds.Website.TYPE_HOMEPAGE:
+                return "homepage";
+            case DataKinds.Website.TYPE_BLOG:
+                return "blog";
+            case DataKinds.Website.TYPE_PROFILE:
+                return "profile";
+            case DataKinds.Website.TYPE_HOME:
+                return "home";
+            case DataKinds.Website.TYPE_WORK:
+                return "work";
+            case DataKinds.Website.TYPE_FTP:
+                return "ftp";
+            case DataKinds.Website.TYPE_CUSTOM:
+                if (row.getString(DataKinds.Website.LABEL) != null) {
+                    return row.getString(DataKinds.Website.LABEL);
+                } else {
+                    return "";
+                }
+            default:
+                return "website";
+        }
+    }
+
+    public static int stringToPhoneType(String label) {
+        if (label != null) {
+            switch (label.toLowerCase()) {
+                case "home":
+                    return DataKinds.Phone.TYPE_HOME;
+                case "work":
+                    return DataKinds.Phone.TYPE_WORK;
+                case "mobile":
+                    return DataKinds.Phone.TYPE_MOBILE;
+                case "fax work":
+                    return DataKinds.Phone.TYPE_FAX_WORK;
+                case "fax home":
+                    return DataKinds.Phone.TYPE_FAX_HOME;
+                case "main":
+                    return DataKinds.Phone.TYPE_MAIN;
+                case "company":
+                    return DataKinds.Phone.TYPE_COMPANY_MAIN;
+                case "pager":
+                    return DataKinds.Phone.TYPE_PAGER;
+                case "other":
+                    return DataKinds.Phone.TYPE_OTHER;
+                default:
+                    return DataKinds.Phone.TYPE_CUSTOM;
+            }
+        }
+        return DataKinds.Phone.TYPE_OTHER;
+    }
+
+    public static int stringToEmailType(String label) {
+        if (label != null) {
+            switch (label.toLowerCase()) {
+                case "home":
+                    return DataKinds.Email.TYPE_HOME;
+                case "work":
+                    return DataKinds.Email.TYPE_WORK;
+                case "mobile":
+                    return DataKinds.Email.TYPE_MOBILE;
+                case "other":
+                    return DataKinds.Email.TYPE_OTHER;
+                default:
+                    return DataKinds.Email.TYPE_CUSTOM;
+            }
+        }
+        return DataKinds.Email.TYPE_OTHER;
+    }
+
+    public static int stringToDatesType(String label) {
+        if (label != null) {
+            switch (label.toLowerCase()) {
+                case "anniversary":
+                    return DataKinds.Event.TYPE_ANNIVERSARY;
+                case "birthday":
+                    return DataKinds.Event.TYPE_BIRTHDAY;
+                case "other":
+                    return DataKinds.Event.TYPE_OTHER;
+                default:
+                    return DataKinds.Event.TYPE_CUSTOM;
+            }
+        }
+        return DataKinds.Email.TYPE_OTHER;
+    }
+
+    public static int stringToRelationType(String label) {
+        if (label != null) {
+            switch (label.toLowerCase()) {
+                case "assistant":
+                    return DataKinds.Relation.TYPE_ASSISTANT;
+                case "brother":
+                    return DataKinds.Relation.TYPE_BROTHER;
+                case "child":
+                    return DataKinds.Relation.TYPE_CHILD;
+                case "domestic partner":
+                    return DataKinds.Relation.TYPE_DOMESTIC_PARTNER;
+                case "father":
+                    return DataKinds.Relation.TYPE_FATHER;
+                case "friend":
+                    return DataKinds.Relation.TYPE_FRIEND;
+                case "manager":
+                    return DataKinds.Relation.TYPE_MANAGER;
+                case "mother":
+                    return DataKinds.Relation.TYPE_MOTHER;
+                case "parent":
+                    return DataKinds.Relation.TYPE_PARENT;
+                case "partner":
+                    return DataKinds.Relation.TYPE_PARTNER;
+                case "referred by":
+                    return DataKinds.Relation.TYPE_REFERRED_BY;
+                case "sister":
+                    return DataKinds.Relation.TYPE_SISTER;
+                case "spouse":
+                    return DataKinds.Relation.TYPE_SPOUSE;
+                default:
+                    return DataKinds.Event.TYPE_CUSTOM;
+            }
+        }
+        return DataKinds.Email.TYPE_OTHER;
+    }
+
+    public static int stringToInstantMessageAddressProtocol(String label) {
+        if (label != null) {
+            switch (label.toLowerCase()) {
+                case "aim":
+                    return DataKinds.Im.PROTOCOL_AIM;
+                case "windows live":
+                    return DataKinds.Im.PROTOCOL_MSN;
+                case "yahoo":
+                    return DataKinds.Im.PROTOCOL_YAHOO;
+                case "skype":
+                    return DataKinds.Im.PROTOCOL_SKYPE;
+                case "qq":
+                    return DataKinds.Im.PROTOCOL_QQ;
+                case "hangouts":
+                    return DataKinds.Im.PROTOCOL_GOOGLE_TALK;
+                case "icq":
+                    return DataKinds.Im.PROTOCOL_ICQ;
+                case "jabber":
+                    return DataKinds.Im.PROTOCOL_JABBER;
+                case "net meeting":
+                    return DataKinds.Im.PROTOCOL_NETMEETING;
+                default:
+                    return DataKinds.Im.PROTOCOL_CUSTOM;
+            }
+        }
+        return DataKinds.Im.PROTOCOL_CUSTOM;
+    }
+
+    public static int stringToWebsiteType(String label) {
+        if (label != null) {
+            switch (label.toLowerCase()) {
+                case "homepage":
+                case "home page":
+                    return DataKinds.Website.TYPE_HOMEPAGE;
+                case "blog":
+                    return DataKinds.Website.TYPE_BLOG;
+                case "profile":
+                    return DataKinds.Website.TYPE_PROFILE;
+                case "home":
+                    return DataKinds.Website.TYPE_HOME;
+                case "work":
+                    return DataKinds.Website.TYPE_WORK;
+                case "ftp":
+                    return DataKinds.Website.TYPE_FTP;
+                case "other":
+                    return DataKinds.Website.TYPE_OTHER;
+                default:
+                    return DataKinds.Website.TYPE_CUSTOM;
+            }
+        }
+        return DataKinds.Website.TYPE_OTHER;
+    }
+
+    public boolean equalValues(Item item) {
+
+        if (item == null) {
+            return false;
+        }
+        if (!equalsStrings(lowerCase(label), lowerCase(item.label))) {
+            return false;
+        }
+        if (!equalsStrings(value, item.value)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Item)) {
+            return false;
+        }
+        Item item = (Item) o;
+        return equalValues(item) && equalsStrings(identifier, item.identifier);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = identifier != null ? identifier.hashCode() : 0;
+        result = 31 * result + (label != null ? lowerCase(label).hashCode() : 0);
+        result = 31 * result + (value != null ? value.hashCode() : 0);
+        return result;
+    }
+
+    private static String lowerCase(String label) {
+        return label != null ? label.toLowerCase() : null;
+    }
+
+    public String toString() {
+        String finalString = "";
+        if (this.identifier != null) {
+            finalString = this.identifier;
+        }
+        if (this.label != null) {
+            if (!finalString.isEmpty()) {
+                finalString += ", " + this.label;
+            } else {
+                finalString += this.label;
+            }
+        }
+        if (this.value != null) {
+            if (!finalString.isEmpty()) {
+                finalString += ", " + this.value;
+            } else {
+                finalString += this.value;
+            }
+        }
+        if (this.accountType != null) {
+            if (!finalString.isEmpty()) {
+                finalString += ", " + this.accountType;
+            } else {
+                finalString += this.accountType;
+            }
+        }
+        return finalString;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,155 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/***
+ * Open addressing map from long keys to strings, for the contact id to lookup key table. No boxed
+ * keys and no entry objects, two arrays the size of the table whatever the number of contacts
+ ***/
+public class LongStringMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    // null marks a free slot
+    private String[] values;
+    private int size;
+
+    public LongStringMap() {
+        this(16);
+    }
+
+    public LongStringMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new String[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the previous value of the key, null when it had none
+     */
+    public String put(long key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null value for key " + key);
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                String previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the value the key had, null when it had none
+     */
+    public String remove(long key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                break;
+            }
+        }
+        String previous = values[slot];
+        if (previous == null) {
+            return null;
+        }
+        // shift the following entries of the run back so that lookups never stop early
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return the keys in ascending order
+     */
+    public long[] sortedKeys() {
+        long[] sorted = new long[size];
+        int i = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != null) {
+                sorted[i++] = keys[slot];
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The packed form sent over the channel: the keys in ascending order, a long[] that reaches
+     * Dart as an Int64List, and the value of each key at the same index
+     */
+    HashMap<String, Object> toMap() {
+        long[] sorted = sortedKeys();
+        ArrayList<String> sortedValues = new ArrayList<>(sorted.length);
+        for (long key : sorted) {
+            sortedValues.add(get(key));
+        }
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("ids", sorted);
+        map.put("lookupKeys", sortedValues);
+        return map;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        String[] oldValues = values;
+        keys = new long[capacity];
+        values = new String[capacity];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != null) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        // spread the bits, contact ids are small and sequential
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
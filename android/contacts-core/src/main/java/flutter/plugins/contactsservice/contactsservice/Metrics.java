@@ -0,0 +1,145 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Per method counters and latency histograms of the method channel calls.
+ * Recording never locks, a reset racing with a recording may lose part of it
+ ***/
+public class Metrics {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class MethodMetrics {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong rowsScanned = new AtomicLong();
+        final AtomicLong contactsDecoded = new AtomicLong();
+        final AtomicLong payloadBytes = new AtomicLong();
+        final AtomicLong providerRoundTrips = new AtomicLong();
+        // the worst call, N+1 query patterns stand out here
+        final AtomicLong maxProviderRoundTrips = new AtomicLong();
+        final Histogram queueWait = new Histogram();
+        final Histogram providerTime = new Histogram();
+        final Histogram serializationTime = new Histogram();
+        final Histogram totalTime = new Histogram();
+        // the calls answered by an identical running call, kept out of the counters above
+        final AtomicLong coalesced = new AtomicLong();
+        final Histogram coalescedWait = new Histogram();
+    }
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public void record(CallMetrics call) {
+        long now = System.nanoTime();
+        MethodMetrics metrics = methods.get(call.method);
+        if (metrics == null) {
+            MethodMetrics created = new MethodMetrics();
+            metrics = methods.putIfAbsent(call.method, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        if (call.coalesced) {
+            metrics.coalesced.incrementAndGet();
+            metrics.coalescedWait.record((now - call.enqueuedNanos) / 1000);
+            return;
+        }
+        metrics.calls.incrementAndGet();
+        metrics.rowsScanned.addAndGet(call.rowsScanned);
+        metrics.contactsDecoded.addAndGet(call.contactsDecoded);
+        metrics.payloadBytes.addAndGet(call.payloadBytes);
+        metrics.providerRoundTrips.addAndGet(call.providerRoundTrips);
+        long max = metrics.maxProviderRoundTrips.get();
+        while (call.providerRoundTrips > max && !metrics.maxProviderRoundTrips.compareAndSet(max, call.providerRoundTrips)) {
+            max = metrics.maxProviderRoundTrips.get();
+        }
+        long started = call.startedNanos != 0 ? call.startedNanos : call.enqueuedNanos;
+        metrics.queueWait.record((started - call.enqueuedNanos) / 1000);
+        metrics.providerTime.record(call.providerNanos / 1000);
+        metrics.serializationTime.record(call.serializationNanos / 1000);
+        metrics.totalTime.record((now - call.enqueuedNanos) / 1000);
+    }
+
+    /**
+     * @return method name to its counters and histograms
+     */
+    public HashMap<String, Object> toMap() {
+        HashMap<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, MethodMetrics> entry : methods.entrySet()) {
+            MethodMetrics metrics = entry.getValue();
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("calls", metrics.calls.get());
+            map.put("rowsScanned", metrics.rowsScanned.get());
+            map.put("contactsDecoded", metrics.contactsDecoded.get());
+            map.put("payloadBytes", metrics.payloadBytes.get());
+            map.put("providerRoundTrips", metrics.providerRoundTrips.get());
+            map.put("maxProviderRoundTrips", metrics.maxProviderRoundTrips.get());
+            map.put("queueWait", metrics.queueWait.toMap());
+            map.put("providerTime", metrics.providerTime.toMap());
+            map.put("serializationTime", metrics.serializationTime.toMap());
+            map.put("totalTime", metrics.totalTime.toMap());
+            map.put("coalesced", metrics.coalesced.get());
+            map.put("coalescedWait", metrics.coalescedWait.toMap());
+            result.put(entry.getKey(), map);
+        }
+        return result;
+    }
+
+    public void reset() {
+        methods.clear();
+    }
+
+    /**
+     * The size of the value once encoded by the standard message codec, without the alignment padding
+     */
+    static long payloadSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof Integer) {
+            return 5;
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 9;
+        }
+        if (value instanceof String) {
+            int length = ((String) value).getBytes(UTF_8).length;
+            return 1 + sizeLength(length) + length;
+        }
+        if (value instanceof byte[]) {
+            int length = ((byte[]) value).length;
+            return 1 + sizeLength(length) + length;
+        }
+        if (value instanceof long[]) {
+            int length = ((long[]) value).length;
+            return 1 + sizeLength(length) + 8L * length;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            long size = 1 + sizeLength(list.size());
+            for (Object item : list) {
+                size += payloadSize(item);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long size = 1 + sizeLength(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += payloadSize(entry.getKey()) + payloadSize(entry.getValue());
+            }
+            return size;
+        }
+        return 1 + payloadSize(value.toString());
+    }
+
+    private static int sizeLength(int size) {
+        return size < 254 ? 1 : size <= 0xffff ? 3 : 5;
+    }
+}
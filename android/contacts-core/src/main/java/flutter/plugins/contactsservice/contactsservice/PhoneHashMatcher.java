@@ -0,0 +1,152 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/***
+ * Matches phone numbers against a set of salted SHA-256 hashes. The hashes stay
+ * in the packed array they were received in, indexed by an open addressing table
+ * of ints, so no object is allocated per hash
+ ***/
+public class PhoneHashMatcher {
+
+    public static final int HASH_LENGTH = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] hashes;
+    private final byte[] salt;
+    // index + 1 of a hash in hashes, 0 for an empty slot
+    private final int[] table;
+    private final int mask;
+
+    /**
+     * @param packedHashes the hashes one after the other, {@link #HASH_LENGTH} bytes each
+     * @param salt         prepended to the normalized number before hashing, may be null
+     */
+    public PhoneHashMatcher(byte[] packedHashes, String salt) {
+        if (packedHashes.length % HASH_LENGTH != 0) {
+            throw new IllegalArgumentException("The hashes must be " + HASH_LENGTH + " bytes each");
+        }
+        this.hashes = packedHashes;
+        this.salt = salt == null ? new byte[0] : salt.getBytes(UTF_8);
+        int count = packedHashes.length / HASH_LENGTH;
+        // at most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = slot(packedHashes, i * HASH_LENGTH);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Hashes the numbers in parallel and tells which of them are in the set
+     *
+     * @param numbers     the phone numbers, normalized or not, null ones never match
+     * @param executor    runs the hashing, it must not be busy running the caller
+     * @param parallelism the number of tasks the numbers are split into
+     */
+    public boolean[] match(final String[] numbers, ExecutorService executor, int parallelism)
+            throws InterruptedException, ExecutionException {
+        final boolean[] matches = new boolean[numbers.length];
+        int tasks = Math.max(1, Math.min(parallelism, numbers.length));
+        final int chunk = (numbers.length + tasks - 1) / tasks;
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            final int start = t * chunk;
+            final int end = Math.min(numbers.length, start + chunk);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    MessageDigest digest = sha256();
+                    for (int i = start; i < end; i++) {
+                        matches[i] = contains(digest, numbers[i]);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        return matches;
+    }
+
+    boolean contains(MessageDigest digest, String number) {
+        String normalized = normalize(number);
+        if (normalized == null) {
+            return false;
+        }
+        digest.reset();
+        digest.update(salt);
+        byte[] hash = digest.digest(normalized.getBytes(UTF_8));
+        int slot = slot(hash, 0);
+        while (table[slot] != 0) {
+            if (equalsAt(hash, (table[slot] - 1) * HASH_LENGTH)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the digits of the number and its leading '+', the form of E.164 numbers
+     */
+    static String normalize(String number) {
+        if (number == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalized.append(c);
+            } else if (c == '+' && normalized.length() == 0) {
+                normalized.append(c);
+            }
+        }
+        if (normalized.length() == 0 || (normalized.length() == 1 && normalized.charAt(0) == '+')) {
+            return null;
+        }
+        return normalized.toString();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * SHA-256 output is uniform, so its first bytes make the slot
+     */
+    private int slot(byte[] hash, int offset) {
+        int bits = ((hash[offset] & 0xFF) << 24) | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8) | (hash[offset + 3] & 0xFF);
+        return bits & mask;
+    }
+
+    private boolean equalsAt(byte[] hash, int offset) {
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            if (hash[i] != hashes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,16 +1,10 @@
 package flutter.plugins.contactsservice.contactsservice;
 
-import android.annotation.TargetApi;
-import android.database.Cursor;
-import android.os.Build;
-
 import java.util.HashMap;
 
-import static android.provider.ContactsContract.CommonDataKinds;
-import static android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import static flutter.plugins.contactsservice.contactsservice.DataKinds.StructuredPostal;
 import static flutter.plugins.contactsservice.contactsservice.StringUtils.equalsStrings;
 
-@TargetApi(Build.VERSION_CODES.ECLAIR)
 public class PostalAddress {
 
     public String identifier, label, street, locality, city, postcode, region, country, formattedAddress;
@@ -28,16 +22,16 @@ public class PostalAddress {
         this.formattedAddress = formattedAddress;
     }
 
-    PostalAddress(Cursor cursor) {
-        this.identifier = cursor.getString(cursor.getColumnIndex(StructuredPostal._ID));
-        this.label = getLabel(cursor);
-        this.street = cursor.getString(cursor.getColumnIndex(StructuredPostal.STREET));
-        this.locality = cursor.getString(cursor.getColumnIndex(StructuredPostal.NEIGHBORHOOD));
-        this.city = cursor.getString(cursor.getColumnIndex(StructuredPostal.CITY));
-        this.postcode = cursor.getString(cursor.getColumnIndex(StructuredPostal.POSTCODE));
-        this.region = cursor.getString(cursor.getColumnIndex(StructuredPostal.REGION));
-        this.country = cursor.getString(cursor.getColumnIndex(StructuredPostal.COUNTRY));
-        this.formattedAddress = cursor.getString(cursor.getColumnIndex(StructuredPostal.FORMATTED_ADDRESS));
+    PostalAddress(DataRow row) {
+        this.identifier = row.getString(DataKinds.ID);
+        this.label = getLabel(row);
+        this.street = row.getString(StructuredPostal.STREET);
+        this.locality = row.getString(StructuredPostal.NEIGHBORHOOD);
+        this.city = row.getString(StructuredPostal.CITY);
+        this.postcode = row.getString(StructuredPostal.POSTCODE);
+        this.region = row.getString(StructuredPostal.REGION);
+        this.country = row.getString(StructuredPostal.COUNTRY);
+        this.formattedAddress = row.getString(StructuredPostal.FORMATTED_ADDRESS);
     }
 
     HashMap<String, String> toMap() {
@@ -60,8 +54,8 @@ public class PostalAddress {
                 "postcode"), map.get("region"), map.get("country"), map.get("formattedAddress"));
     }
 
-    private String getLabel(Cursor cursor) {
-        switch (cursor.getInt(cursor.getColumnIndex(StructuredPostal.TYPE))) {
+    private String getLabel(DataRow row) {
+        switch (row.getInt(StructuredPostal.TYPE)) {
             case StructuredPostal.TYPE_HOME:
                 return "home";
             case StructuredPostal.TYPE_WORK:
@@ -69,7 +63,7 @@ public class PostalAddress {
             case StructuredPostal.TYPE_OTHER:
                 return "other";
             case StructuredPostal.TYPE_CUSTOM:
-                final String label = cursor.getString(cursor.getColumnIndex(StructuredPostal.LABEL));
+                final String label = row.getString(StructuredPostal.LABEL);
                 return label != null ? label : "";
         }
         return "other";
@@ -79,9 +73,9 @@ public class PostalAddress {
         if (label != null) {
             switch (label) {
                 case "home":
-                    return CommonDataKinds.StructuredPostal.TYPE_HOME;
+                    return StructuredPostal.TYPE_HOME;
                 case "work":
-                    return CommonDataKinds.StructuredPostal.TYPE_WORK;
+                    return StructuredPostal.TYPE_WORK;
                 case "other":
                     return StructuredPostal.TYPE_OTHER;
                 default:
@@ -96,7 +90,7 @@ public class PostalAddress {
         if (item == null) {
             return false;
         }
-        if (!equalsStrings(label.toLowerCase(), item.label.toLowerCase())) {
+        if (!equalsStrings(lowerCase(label), lowerCase(item.label))) {
             return false;
         }
         if (!equalsStrings(street, item.street)) {
@@ -124,16 +118,35 @@ public class PostalAddress {
         return true;
     }
 
-    public boolean equals(PostalAddress item) {
-        if (!equalValues(item)) {
-            return false;
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
         }
-        if (!equalsStrings(identifier, item.identifier)) {
+        if (!(o instanceof PostalAddress)) {
             return false;
         }
-        return true;
+        PostalAddress item = (PostalAddress) o;
+        return equalValues(item) && equalsStrings(identifier, item.identifier);
     }
 
+    @Override
+    public int hashCode() {
+        int result = identifier != null ? identifier.hashCode() : 0;
+        result = 31 * result + (label != null ? lowerCase(label).hashCode() : 0);
+        result = 31 * result + (street != null ? street.hashCode() : 0);
+        result = 31 * result + (locality != null ? locality.hashCode() : 0);
+        result = 31 * result + (city != null ? city.hashCode() : 0);
+        result = 31 * result + (postcode != null ? postcode.hashCode() : 0);
+        result = 31 * result + (region != null ? region.hashCode() : 0);
+        result = 31 * result + (country != null ? country.hashCode() : 0);
+        result = 31 * result + (formattedAddress != null ? formattedAddress.hashCode() : 0);
+        return result;
+    }
+
+    private static String lowerCase(String label) {
+        return label != null ? label.toLowerCase() : null;
+    }
 
     public String toString() {
         String finalString = "";
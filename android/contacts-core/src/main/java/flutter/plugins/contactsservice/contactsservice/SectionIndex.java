@@ -0,0 +1,77 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/***
+ * The titles of the sections of a sorted contact list and the number of contacts in each,
+ * what a fast scroller needs without loading the contacts
+ ***/
+public class SectionIndex {
+
+    // contacts whose name does not start with a letter
+    static final String OTHER = "#";
+
+    final String[] titles;
+    final int[] counts;
+
+    public SectionIndex(String[] titles, int[] counts) {
+        if (titles.length != counts.length) {
+            throw new IllegalArgumentException("Got " + titles.length + " titles for " + counts.length + " counts");
+        }
+        this.titles = titles;
+        this.counts = counts;
+    }
+
+    /**
+     * Counts the contacts of each section in a single pass over their names, taken in the order
+     * of the list, display names COLLATE NOCASE. That order only folds the case of ASCII letters,
+     * so names starting with digits come first and accented letters get sections of their own
+     * after Z. A title comes back when the names it covers are apart, each section still counting
+     * the contacts listed at its place.
+     */
+    public static SectionIndex fromSortedNames(List<String> names, Locale locale) {
+        List<String> titles = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (String name : names) {
+            String title = title(name, locale);
+            int last = titles.size() - 1;
+            if (last >= 0 && titles.get(last).equals(title)) {
+                counts.set(last, counts.get(last) + 1);
+            } else {
+                titles.add(title);
+                counts.add(1);
+            }
+        }
+
+        int[] countArray = new int[counts.size()];
+        for (int i = 0; i < countArray.length; i++) {
+            countArray[i] = counts.get(i);
+        }
+        return new SectionIndex(titles.toArray(new String[titles.size()]), countArray);
+    }
+
+    /**
+     * The upper cased first letter of the name, accents included, or {@link #OTHER}
+     */
+    static String title(String name, Locale locale) {
+        if (name == null || name.isEmpty() || !Character.isLetter(name.codePointAt(0))) {
+            return OTHER;
+        }
+        return new String(Character.toChars(name.codePointAt(0))).toUpperCase(locale);
+    }
+
+    HashMap<String, Object> toMap() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("titles", Arrays.asList(titles));
+        ArrayList<Integer> countList = new ArrayList<>(counts.length);
+        for (int count : counts) {
+            countList.add(count);
+        }
+        map.put("counts", countList);
+        return map;
+    }
+}
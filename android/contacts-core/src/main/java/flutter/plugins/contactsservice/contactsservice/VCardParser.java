@@ -0,0 +1,479 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/***
+ * Streaming vCard 2.1, 3.0 and 4.0 reader, returning one contact at a time
+ * so a file of any size is imported with the memory of a single card
+ ***/
+public class VCardParser implements Closeable {
+
+    private final BufferedReader reader;
+    private String pendingLine;
+
+    public VCardParser(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Reads the next card
+     *
+     * @return the contact of the next card, null once the input is exhausted
+     */
+    public Contact next() throws IOException {
+        Contact contact = null;
+        String line;
+        while ((line = readProperty()) != null) {
+            Property property = Property.parse(line);
+            if (property == null) {
+                continue;
+            }
+            if (property.name.equals("BEGIN") && property.value.equalsIgnoreCase("VCARD")) {
+                contact = new Contact(null);
+            } else if (property.name.equals("END") && property.value.equalsIgnoreCase("VCARD")) {
+                if (contact != null) {
+                    return contact;
+                }
+            } else if (contact != null) {
+                apply(contact, property);
+            }
+        }
+        return contact;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads one logical line, joining folded lines and quoted-printable soft line breaks
+     */
+    private String readProperty() throws IOException {
+        String line = pendingLine != null ? pendingLine : reader.readLine();
+        pendingLine = null;
+        if (line == null) {
+            return null;
+        }
+        StringBuilder property = new StringBuilder(line);
+        boolean quotedPrintable = line.toUpperCase(Locale.US).contains("QUOTED-PRINTABLE");
+        String next;
+        while ((next = reader.readLine()) != null) {
+            if (quotedPrintable && property.length() > 0 && property.charAt(property.length() - 1) == '=') {
+                property.setLength(property.length() - 1);
+                property.append(next.trim());
+            } else if (!next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+                property.append(next, 1, next.length());
+            } else {
+                pendingLine = next;
+                break;
+            }
+        }
+        return property.toString();
+    }
+
+    private static void apply(Contact contact, Property property) {
+        switch (property.name) {
+            case "FN":
+                contact.displayName = property.text();
+                break;
+            case "N": {
+                List<String> parts = property.components();
+                contact.familyName = component(parts, 0);
+                contact.givenName = component(parts, 1);
+                contact.middleName = component(parts, 2);
+                contact.prefix = component(parts, 3);
+                contact.suffix = component(parts, 4);
+                break;
+            }
+            case "NICKNAME":
+                contact.nickname = property.text();
+                break;
+            case "ORG": {
+                List<String> parts = property.components();
+                contact.company = component(parts, 0);
+                contact.department = component(parts, 1);
+                break;
+            }
+            case "TITLE":
+                contact.jobTitle = property.text();
+                break;
+            case "NOTE":
+                contact.note = property.text();
+                break;
+            case "BDAY":
+                contact.birthday = toDate(property.text());
+                break;
+            case "ANNIVERSARY":
+            case "X-ANNIVERSARY":
+                contact.dates.add(new Item(null, "anniversary", toDate(property.text())));
+                break;
+            case "TEL":
+                contact.phones.add(new Item(null, phoneLabel(property.types), stripScheme(property.text(), "tel:")));
+                break;
+            case "EMAIL":
+                contact.emails.add(new Item(null, label(property.types, "other"), stripScheme(property.text(), "mailto:")));
+                break;
+            case "ADR": {
+                List<String> parts = property.components();
+                String street = component(parts, 2);
+                if (component(parts, 1) != null) {
+                    street = street == null ? component(parts, 1) : street + "\n" + component(parts, 1);
+                }
+                if (component(parts, 0) != null) {
+                    street = street == null ? component(parts, 0) : street + "\n" + component(parts, 0);
+                }
+                contact.postalAddresses.add(new PostalAddress(null, label(property.types, "other"), street, null,
+                        component(parts, 3), component(parts, 5), component(parts, 4), component(parts, 6), null));
+                break;
+            }
+            case "URL":
+                contact.websites.add(new Item(null, label(property.types, "homepage"), property.text()));
+                break;
+            case "IMPP":
+                addInstantMessageAddress(contact, property.text());
+                break;
+            case "X-AIM":
+                contact.instantMessageAddresses.add(new Item(null, "aim", property.text()));
+                break;
+            case "X-MSN":
+                contact.instantMessageAddresses.add(new Item(null, "windows live", property.text()));
+                break;
+            case "X-YAHOO":
+                contact.instantMessageAddresses.add(new Item(null, "yahoo", property.text()));
+                break;
+            case "X-SKYPE":
+            case "X-SKYPE-USERNAME":
+                contact.instantMessageAddresses.add(new Item(null, "skype", property.text()));
+                break;
+            case "X-QQ":
+                contact.instantMessageAddresses.add(new Item(null, "qq", property.text()));
+                break;
+            case "X-GOOGLE-TALK":
+                contact.instantMessageAddresses.add(new Item(null, "hangouts", property.text()));
+                break;
+            case "X-ICQ":
+                contact.instantMessageAddresses.add(new Item(null, "icq", property.text()));
+                break;
+            case "X-JABBER":
+                contact.instantMessageAddresses.add(new Item(null, "jabber", property.text()));
+                break;
+            case "X-SIP":
+                contact.sip = stripScheme(property.text(), "sip:");
+                break;
+            case "X-PHONETIC-FIRST-NAME":
+                contact.phoneticGivenName = property.text();
+                break;
+            case "X-PHONETIC-MIDDLE-NAME":
+                contact.phoneticMiddleName = property.text();
+                break;
+            case "X-PHONETIC-LAST-NAME":
+                contact.phoneticFamilyName = property.text();
+                break;
+            case "PHOTO":
+                byte[] photo = property.binary();
+                if (photo != null) {
+                    contact.avatar = photo;
+                }
+                break;
+        }
+    }
+
+    private static void addInstantMessageAddress(Contact contact, String uri) {
+        int colon = uri.indexOf(':');
+        String scheme = colon > 0 ? uri.substring(0, colon).toLowerCase(Locale.US) : "";
+        String address = colon > 0 ? uri.substring(colon + 1) : uri;
+        switch (scheme) {
+            case "sip":
+                contact.sip = address;
+                return;
+            case "aim":
+                contact.instantMessageAddresses.add(new Item(null, "aim", address));
+                return;
+            case "msnim":
+                contact.instantMessageAddresses.add(new Item(null, "windows live", address));
+                return;
+            case "ymsgr":
+                contact.instantMessageAddresses.add(new Item(null, "yahoo", address));
+                return;
+            case "skype":
+                contact.instantMessageAddresses.add(new Item(null, "skype", address));
+                return;
+            case "icq":
+                contact.instantMessageAddresses.add(new Item(null, "icq", address));
+                return;
+            case "xmpp":
+                contact.instantMessageAddresses.add(new Item(null, "jabber", address));
+                return;
+            case "qq":
+                contact.instantMessageAddresses.add(new Item(null, "qq", address));
+                return;
+            case "gtalk":
+                contact.instantMessageAddresses.add(new Item(null, "hangouts", address));
+                return;
+            default:
+                contact.instantMessageAddresses.add(new Item(null, scheme.isEmpty() ? "other" : scheme, address));
+        }
+    }
+
+    /**
+     * Maps the TYPE parameters of a TEL property to the labels of {@link Item#stringToPhoneType(String)}
+     */
+    private static String phoneLabel(List<String> types) {
+        boolean fax = types.contains("fax");
+        if (types.contains("cell")) {
+            return "mobile";
+        } else if (types.contains("pager")) {
+            return "pager";
+        } else if (types.contains("work")) {
+            return fax ? "fax work" : "work";
+        } else if (types.contains("home")) {
+            return fax ? "fax home" : "home";
+        } else if (fax) {
+            return "fax home";
+        } else if (types.contains("main")) {
+            return "main";
+        }
+        return label(types, "other");
+    }
+
+    private static String label(List<String> types, String defaultLabel) {
+        for (String type : types) {
+            if (type.equals("home") || type.equals("work") || type.equals("other")) {
+                return type;
+            }
+            if (type.startsWith("x-") && type.length() > 2) {
+                return type.substring(2);
+            }
+        }
+        return defaultLabel;
+    }
+
+    /**
+     * Normalizes the date forms of vCard 3.0 and 4.0 to the yyyy-MM-dd and --MM-dd forms the plugin uses
+     */
+    static String toDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        String date = value.trim();
+        int time = date.indexOf('T');
+        if (time >= 0) {
+            date = date.substring(0, time);
+        }
+        if (date.startsWith("--")) {
+            String monthDay = date.substring(2).replace("-", "");
+            return monthDay.length() == 4 ? "--" + monthDay.substring(0, 2) + "-" + monthDay.substring(2) : date;
+        }
+        if (date.length() == 8 && date.indexOf('-') < 0) {
+            return date.substring(0, 4) + "-" + date.substring(4, 6) + "-" + date.substring(6);
+        }
+        return date;
+    }
+
+    private static String stripScheme(String value, String scheme) {
+        if (value != null && value.regionMatches(true, 0, scheme, 0, scheme.length())) {
+            return value.substring(scheme.length());
+        }
+        return value;
+    }
+
+    private static String component(List<String> parts, int index) {
+        if (index >= parts.size()) {
+            return null;
+        }
+        String part = parts.get(index).trim();
+        return part.isEmpty() ? null : part;
+    }
+
+    /**
+     * One content line split into its name, parameters and raw value
+     */
+    private static class Property {
+        String name;
+        final List<String> types = new ArrayList<>();
+        String encoding;
+        String charset;
+        String value;
+
+        static Property parse(String line) {
+            int valueStart = -1;
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ':' && !quoted) {
+                    valueStart = i;
+                    break;
+                }
+            }
+            if (valueStart < 0) {
+                return null;
+            }
+
+            Property property = new Property();
+            property.value = line.substring(valueStart + 1);
+            String[] parameters = line.substring(0, valueStart).split(";");
+            String name = parameters[0].trim().toUpperCase(Locale.US);
+            // drop the group prefix, as in item1.TEL
+            property.name = name.substring(name.lastIndexOf('.') + 1);
+
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                int equals = parameter.indexOf('=');
+                String key = equals < 0 ? "TYPE" : parameter.substring(0, equals).trim().toUpperCase(Locale.US);
+                String parameterValue = (equals < 0 ? parameter : parameter.substring(equals + 1)).replace("\"", "");
+                if (equals < 0 && (parameterValue.equalsIgnoreCase("QUOTED-PRINTABLE") || parameterValue.equalsIgnoreCase("BASE64"))) {
+                    // vCard 2.1 allows bare encodings
+                    key = "ENCODING";
+                }
+                if (key.equals("TYPE")) {
+                    for (String type : parameterValue.split(",")) {
+                        property.types.add(type.trim().toLowerCase(Locale.US));
+                    }
+                } else if (key.equals("ENCODING")) {
+                    property.encoding = parameterValue.toUpperCase(Locale.US);
+                } else if (key.equals("CHARSET")) {
+                    property.charset = parameterValue;
+                }
+            }
+            return property;
+        }
+
+        /**
+         * @return the value with quoted-printable decoded and text escapes resolved
+         */
+        String text() {
+            return unescape(decoded());
+        }
+
+        /**
+         * @return the unescaped components of a structured value such as N or ADR
+         */
+        List<String> components() {
+            String decoded = decoded();
+            List<String> parts = new ArrayList<>();
+            StringBuilder part = new StringBuilder();
+            for (int i = 0; i < decoded.length(); i++) {
+                char c = decoded.charAt(i);
+                if (c == '\\' && i + 1 < decoded.length()) {
+                    part.append(c).append(decoded.charAt(++i));
+                } else if (c == ';') {
+                    parts.add(unescape(part.toString()));
+                    part.setLength(0);
+                } else {
+                    part.append(c);
+                }
+            }
+            parts.add(unescape(part.toString()));
+            return parts;
+        }
+
+        /**
+         * @return the inline binary value, null when the value is a reference to an external resource
+         */
+        byte[] binary() {
+            String data = value.trim();
+            if (data.regionMatches(true, 0, "data:", 0, 5)) {
+                int comma = data.indexOf(',');
+                if (comma < 0 || !data.substring(0, comma).toLowerCase(Locale.US).endsWith(";base64")) {
+                    return null;
+                }
+                data = data.substring(comma + 1);
+            } else if (encoding == null || !(encoding.equals("B") || encoding.equals("BASE64"))) {
+                return null;
+            }
+            return decodeBase64(data);
+        }
+
+        private String decoded() {
+            if (encoding == null || !encoding.equals("QUOTED-PRINTABLE")) {
+                return value;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '=' && i + 2 < value.length() && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                    bytes.write(Character.digit(value.charAt(i + 1), 16) * 16 + Character.digit(value.charAt(i + 2), 16));
+                    i += 2;
+                } else {
+                    bytes.write(c);
+                }
+            }
+            try {
+                return bytes.toString(charset != null ? charset : "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                try {
+                    return bytes.toString("UTF-8");
+                } catch (UnsupportedEncodingException impossible) {
+                    return value;
+                }
+            }
+        }
+
+        private static boolean isHex(char c) {
+            return Character.digit(c, 16) >= 0;
+        }
+
+        private static String unescape(String text) {
+            if (text.indexOf('\\') < 0) {
+                return text;
+            }
+            StringBuilder unescaped = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\\' && i + 1 < text.length()) {
+                    char escaped = text.charAt(++i);
+                    unescaped.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+                } else {
+                    unescaped.append(c);
+                }
+            }
+            return unescaped.toString();
+        }
+    }
+
+    /**
+     * Decodes base64, skipping whitespace and stopping at padding
+     */
+    private static byte[] decodeBase64(String data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length() * 3 / 4);
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            int digit;
+            if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A';
+            } else if (c >= 'a' && c <= 'z') {
+                digit = c - 'a' + 26;
+            } else if (c >= '0' && c <= '9') {
+                digit = c - '0' + 52;
+            } else if (c == '+' || c == '-') {
+                digit = 62;
+            } else if (c == '/' || c == '_') {
+                digit = 63;
+            } else if (c == '=') {
+                break;
+            } else {
+                continue;
+            }
+            buffer = (buffer << 6) | digit;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes.write((buffer >> bits) & 0xFF);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
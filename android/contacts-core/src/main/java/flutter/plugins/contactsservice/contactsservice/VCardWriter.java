@@ -0,0 +1,247 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/***
+ * Writes contacts as vCard 3.0 cards, one at a time, in the form
+ * {@link VCardParser} reads back
+ ***/
+public class VCardWriter implements Closeable {
+
+    private static final int MAX_LINE_LENGTH = 75;
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder();
+
+    public VCardWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the card of the contact, with its avatar when it has one
+     */
+    public void write(Contact contact) throws IOException {
+        writeLine("BEGIN:VCARD");
+        writeLine("VERSION:3.0");
+        property("FN", "", text(displayName(contact)));
+        property("N", "", text(contact.familyName) + ";" + text(contact.givenName) + ";" + text(contact.middleName)
+                + ";" + text(contact.prefix) + ";" + text(contact.suffix));
+        optionalProperty("X-PHONETIC-FIRST-NAME", contact.phoneticGivenName);
+        optionalProperty("X-PHONETIC-MIDDLE-NAME", contact.phoneticMiddleName);
+        optionalProperty("X-PHONETIC-LAST-NAME", contact.phoneticFamilyName);
+        optionalProperty("NICKNAME", contact.nickname);
+        if (!StringUtils.isNullOrEmpty(contact.company) || !StringUtils.isNullOrEmpty(contact.department)) {
+            property("ORG", "", text(contact.company) + ";" + text(contact.department));
+        }
+        optionalProperty("TITLE", contact.jobTitle);
+        if (!StringUtils.isNullOrEmpty(contact.birthday)) {
+            property("BDAY", "", text(contact.birthday));
+        }
+
+        for (Item phone : contact.phones) {
+            property("TEL", phoneTypes(phone.label), text(phone.value));
+        }
+        for (Item email : contact.emails) {
+            property("EMAIL", types("INTERNET", email.label), text(email.value));
+        }
+        for (PostalAddress address : contact.postalAddresses) {
+            property("ADR", types(null, address.label), ";;" + text(address.street) + ";" + text(address.city) + ";"
+                    + text(address.region) + ";" + text(address.postcode) + ";" + text(address.country));
+        }
+        for (Item website : contact.websites) {
+            property("URL", types(null, website.label), text(website.value));
+        }
+        for (Item im : contact.instantMessageAddresses) {
+            property("IMPP", "", text(imScheme(im.label) + im.value));
+        }
+        for (Item date : contact.dates) {
+            if ("anniversary".equalsIgnoreCase(date.label)) {
+                property("X-ANNIVERSARY", "", text(date.value));
+            }
+        }
+        if (!StringUtils.isNullOrEmpty(contact.sip)) {
+            property("X-SIP", "", text(contact.sip));
+        }
+        optionalProperty("NOTE", contact.note);
+        if (contact.avatar != null && contact.avatar.length > 0) {
+            line.append("PHOTO;ENCODING=b;TYPE=JPEG:");
+            encodeBase64(contact.avatar, line);
+            flushLine();
+        }
+        writeLine("END:VCARD");
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String displayName(Contact contact) {
+        if (!StringUtils.isNullOrEmpty(contact.displayName)) {
+            return contact.displayName;
+        }
+        StringBuilder name = new StringBuilder();
+        for (String part : new String[]{contact.prefix, contact.givenName, contact.middleName, contact.familyName, contact.suffix}) {
+            if (!StringUtils.isNullOrEmpty(part)) {
+                if (name.length() > 0) {
+                    name.append(' ');
+                }
+                name.append(part);
+            }
+        }
+        return name.toString();
+    }
+
+    private void optionalProperty(String name, String value) throws IOException {
+        if (!StringUtils.isNullOrEmpty(value)) {
+            property(name, "", text(value));
+        }
+    }
+
+    private void property(String name, String parameters, String value) throws IOException {
+        line.append(name).append(parameters).append(':').append(value);
+        flushLine();
+    }
+
+    /**
+     * Maps the labels of {@link Item#stringToPhoneType(String)} to TEL types
+     */
+    private static String phoneTypes(String label) {
+        String lowerCase = label == null ? "" : label.toLowerCase(Locale.US);
+        switch (lowerCase) {
+            case "mobile":
+                return ";TYPE=CELL";
+            case "fax work":
+                return ";TYPE=WORK,FAX";
+            case "fax home":
+                return ";TYPE=HOME,FAX";
+            case "pager":
+                return ";TYPE=PAGER";
+            case "main":
+                return ";TYPE=MAIN";
+            default:
+                return types(null, label);
+        }
+    }
+
+    private static String types(String fixedType, String label) {
+        String type = null;
+        if (!StringUtils.isNullOrEmpty(label)) {
+            String lowerCase = label.toLowerCase(Locale.US);
+            if (lowerCase.equals("home") || lowerCase.equals("work") || lowerCase.equals("other")) {
+                type = lowerCase.toUpperCase(Locale.US);
+            } else {
+                // custom labels, without the characters which would end the parameter
+                type = "X-" + label.replaceAll("[;:,\"\\r\\n]", " ");
+            }
+        }
+        if (fixedType == null) {
+            return type == null ? "" : ";TYPE=" + type;
+        }
+        return ";TYPE=" + fixedType + (type == null ? "" : "," + type);
+    }
+
+    private static String imScheme(String label) {
+        String lowerCase = label == null ? "" : label.toLowerCase(Locale.US);
+        switch (lowerCase) {
+            case "aim":
+                return "aim:";
+            case "windows live":
+                return "msnim:";
+            case "yahoo":
+                return "ymsgr:";
+            case "skype":
+                return "skype:";
+            case "icq":
+                return "icq:";
+            case "jabber":
+                return "xmpp:";
+            case "qq":
+                return "qq:";
+            case "hangouts":
+                return "gtalk:";
+            default:
+                // custom protocols become the scheme when they can be one
+                return lowerCase.matches("[a-z][a-z0-9+.-]*") ? lowerCase + ":" : "other:";
+        }
+    }
+
+    /**
+     * Escapes a text value or structured value component
+     */
+    private static String text(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\r':
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void writeLine(String text) throws IOException {
+        line.append(text);
+        flushLine();
+    }
+
+    /**
+     * Writes the pending line, folded so that no line exceeds {@link #MAX_LINE_LENGTH} characters
+     */
+    private void flushLine() throws IOException {
+        int start = 0;
+        int limit = MAX_LINE_LENGTH;
+        while (line.length() - start > limit) {
+            int end = start + limit;
+            if (Character.isHighSurrogate(line.charAt(end - 1))) {
+                end--;
+            }
+            writer.append(line, start, end).append("\r\n ");
+            start = end;
+            // the leading space of a continuation line counts
+            limit = MAX_LINE_LENGTH - 1;
+        }
+        writer.append(line, start, line.length()).append("\r\n");
+        line.setLength(0);
+    }
+
+    private static void encodeBase64(byte[] data, StringBuilder out) {
+        int i = 0;
+        for (; i + 2 < data.length; i += 3) {
+            int chunk = ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+            out.append(BASE64[chunk >> 18]).append(BASE64[(chunk >> 12) & 0x3F])
+                    .append(BASE64[(chunk >> 6) & 0x3F]).append(BASE64[chunk & 0x3F]);
+        }
+        int remaining = data.length - i;
+        if (remaining > 0) {
+            int chunk = (data[i] & 0xFF) << 16;
+            if (remaining == 2) {
+                chunk |= (data[i + 1] & 0xFF) << 8;
+            }
+            out.append(BASE64[chunk >> 18]).append(BASE64[(chunk >> 12) & 0x3F])
+                    .append(remaining == 2 ? BASE64[(chunk >> 6) & 0x3F] : '=').append('=');
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class AccountPolicyTest {
+
+  @Test
+  public void defaultPolicy_deniesMessagingAppsOnlyForUpdates() {
+    AccountPolicy policy = AccountPolicy.DEFAULT;
+
+    assertThat(policy.allowsType("com.whatsapp")).isFalse();
+    assertThat(policy.allowsType(" org.Telegram.messenger")).isFalse();
+    assertThat(policy.allowsType("com.google")).isTrue();
+    assertThat(policy.allowsType(null)).isTrue();
+    assertThat(policy.allowsType("")).isTrue();
+    assertThat(policy.filterReads).isFalse();
+  }
+
+  @Test
+  public void selection_compilesEveryList() {
+    AccountPolicy policy = new AccountPolicy(Arrays.asList("com.google"), Arrays.asList("what_sapp"),
+        Collections.<String>emptyList(), Arrays.asList("spam@example.com"), true);
+
+    assertThat(policy.selection).isEqualTo("account_type IN (?)"
+        + " AND (account_type IS NULL OR (account_type NOT LIKE ? ESCAPE '\\'))"
+        + " AND (account_name IS NULL OR account_name NOT IN (?))");
+    assertThat(policy.selectionArgs).asList()
+        .containsExactly("com.google", "%what\\_sapp%", "spam@example.com").inOrder();
+  }
+
+  @Test
+  public void allows_matchesTheSelection() {
+    AccountPolicy policy = new AccountPolicy(Arrays.asList("com.google"), null, Arrays.asList("me@example.com"),
+        null, true);
+
+    assertThat(policy.allows("com.google", "me@example.com")).isTrue();
+    assertThat(policy.allows("com.google", "other@example.com")).isFalse();
+    assertThat(policy.allows(null, "me@example.com")).isFalse();
+    assertThat(policy.allows("com.google", null)).isFalse();
+  }
+
+  @Test
+  public void emptyPolicy_hasNoSelection() {
+    AccountPolicy policy = AccountPolicy.fromMap(new HashMap<String, Object>());
+
+    assertThat(policy.selection).isNull();
+    assertThat(policy.selectionArgs).isEmpty();
+    assertThat(policy.filterReads).isTrue();
+    assertThat(policy.allows("com.whatsapp", "me")).isTrue();
+  }
+
+  @Test
+  public void fromMap_readsTheChannelKeys() {
+    Map<String, Object> map = new HashMap<>();
+    map.put("deniedAccountTypes", Arrays.asList("Facebook"));
+    map.put("filterReads", false);
+
+    AccountPolicy policy = AccountPolicy.fromMap(map);
+
+    assertThat(policy.allowsType("com.facebook.auth.login")).isFalse();
+    assertThat(policy.filterReads).isFalse();
+  }
+}
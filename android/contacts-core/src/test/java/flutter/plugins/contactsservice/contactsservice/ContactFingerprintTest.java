@@ -0,0 +1,49 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class ContactFingerprintTest {
+
+  private static final String[] NAME = {"vnd.android.cursor.item/name", "Jane Doe", "Jane", "Doe"};
+  private static final String[] PHONE = {"vnd.android.cursor.item/phone_v2", "+1 555 0100", "2", null};
+
+  @Test
+  public void combine_ignoresRowOrder() {
+    long first = fingerprint(NAME, PHONE);
+    long second = fingerprint(PHONE, NAME);
+
+    assertThat(first).isEqualTo(second);
+  }
+
+  @Test
+  public void combine_countsDuplicateRows() {
+    assertThat(fingerprint(NAME, PHONE, PHONE)).isNotEqualTo(fingerprint(NAME));
+    assertThat(fingerprint(NAME, PHONE, PHONE)).isNotEqualTo(fingerprint(NAME, PHONE));
+  }
+
+  @Test
+  public void hashRow_separatesValues() {
+    assertThat(ContactFingerprint.hashRow(new String[]{"ab", "c"}))
+        .isNotEqualTo(ContactFingerprint.hashRow(new String[]{"a", "bc"}));
+    assertThat(ContactFingerprint.hashRow(new String[]{null, "a"}))
+        .isNotEqualTo(ContactFingerprint.hashRow(new String[]{"", "a"}));
+  }
+
+  @Test
+  public void hashRow_changesWithAnyValue() {
+    String[] edited = PHONE.clone();
+    edited[2] = "3";
+
+    assertThat(fingerprint(NAME, edited)).isNotEqualTo(fingerprint(NAME, PHONE));
+  }
+
+  private static long fingerprint(String[]... rows) {
+    long fingerprint = 0;
+    for (String[] row : rows) {
+      fingerprint = ContactFingerprint.combine(fingerprint, ContactFingerprint.hashRow(row));
+    }
+    return fingerprint;
+  }
+}
@@ -0,0 +1,82 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+public class ContactSorterTest {
+
+  @Test
+  public void sort_accentedNamesSortWithTheirBaseLetter() throws Exception {
+    List<Contact> contacts = new ArrayList<>();
+    contacts.add(contact("Zo\u00e9", null, "Zo\u00e9"));
+    contacts.add(contact("\u00c9mile", null, "\u00c9mile"));
+    contacts.add(contact("eddy", null, "eddy"));
+    contacts.add(contact("Fabien", null, "Fabien"));
+
+    new ContactSorter(ContactSorter.GIVEN_NAME, Locale.FRENCH).sort(contacts, null, 1);
+
+    assertThat(givenNames(contacts)).containsExactly("eddy", "\u00c9mile", "Fabien", "Zo\u00e9").inOrder();
+  }
+
+  @Test
+  public void sort_familyNameThenGivenNameWithUnnamedLast() throws Exception {
+    List<Contact> contacts = new ArrayList<>();
+    contacts.add(contact(null, null, null));
+    contacts.add(contact("Bob", "Martin", null));
+    contacts.add(contact("Alice", "Martin", null));
+    contacts.add(contact("Carl", "Dupont", null));
+    contacts.add(contact(null, null, "Martinez"));
+
+    new ContactSorter(ContactSorter.FAMILY_NAME, Locale.ENGLISH).sort(contacts, null, 1);
+
+    assertThat(givenNames(contacts)).containsExactly("Carl", "Alice", "Bob", null, null).inOrder();
+    assertThat(contacts.get(3).displayName).isEqualTo("Martinez");
+  }
+
+  @Test
+  public void sort_parallelKeysMatchSequentialOnes() throws Exception {
+    Random random = new Random(7);
+    List<Contact> sequential = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      sequential.add(contact("n" + random.nextInt(100000), "f" + random.nextInt(100), null));
+    }
+    List<Contact> parallel = new ArrayList<>(sequential);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      new ContactSorter(ContactSorter.GIVEN_NAME, Locale.ENGLISH).sort(parallel, pool, 4);
+    } finally {
+      pool.shutdown();
+    }
+    new ContactSorter(ContactSorter.GIVEN_NAME, Locale.ENGLISH).sort(sequential, null, 1);
+
+    assertThat(parallel).containsExactlyElementsIn(sequential).inOrder();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsUnknownSortOrder() {
+    new ContactSorter("middleName", Locale.ENGLISH);
+  }
+
+  private static Contact contact(String givenName, String familyName, String displayName) {
+    Contact contact = new Contact("id");
+    contact.givenName = givenName;
+    contact.familyName = familyName;
+    contact.displayName = displayName;
+    return contact;
+  }
+
+  private static List<String> givenNames(List<Contact> contacts) {
+    List<String> names = new ArrayList<>();
+    for (Contact contact : contacts) {
+      names.add(contact.givenName);
+    }
+    return names;
+  }
+}
@@ -2,6 +2,7 @@ package flutter.plugins.contactsservice.contactsservice;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.HashMap;
 import org.junit.Test;
 
 public class ContactTest {
@@ -97,4 +98,19 @@ public class ContactTest {
     assertThat(contact1.compareTo(contact3))
         .isGreaterThan(0);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void fromMap_rawContactVersions() {
+    HashMap<String, Object> versions = new HashMap<>();
+    versions.put("12", 3);
+    versions.put("13", 4294967296L);
+    HashMap<String, Object> map = new HashMap<>();
+    map.put("identifier", "id");
+    map.put("androidRawContactVersions", versions);
+
+    Contact contact = Contact.fromMap(map);
+
+    assertThat(contact.androidRawContactVersions).containsExactly("12", 3L, "13", 4294967296L);
+    assertThat(contact.toMap().get("androidRawContactVersions")).isEqualTo(contact.androidRawContactVersions);
+  }
+}
@@ -0,0 +1,93 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+
+public class DuplicateFinderTest {
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void find_samePhoneInDifferentForms() throws Exception {
+    List<DuplicateFinder.Candidate> candidates = Arrays.asList(
+        candidate("a", "Jane", "Doe", null, Arrays.asList("+1 (555) 010-0100"), none()),
+        candidate("b", "J.", "Doe", null, Arrays.asList("555-010-0100"), none()),
+        candidate("c", "John", "Smith", null, Arrays.asList("+1 555 010 0199"), none()));
+
+    List<DuplicateFinder.Cluster> clusters = DuplicateFinder.find(candidates, pool, 4);
+
+    assertThat(clusters).hasSize(1);
+    assertThat(clusters.get(0).identifiers).containsExactly("a", "b").inOrder();
+    assertThat(clusters.get(0).reasons).containsExactly(DuplicateFinder.REASON_PHONE);
+  }
+
+  @Test
+  public void find_emailCaseAndNameOrder() throws Exception {
+    List<DuplicateFinder.Candidate> candidates = Arrays.asList(
+        candidate("a", "Jane", "Doe", null, none(), Arrays.asList("Jane@Example.com")),
+        candidate("b", "Doe", "Jane", null, none(), Arrays.asList("jane@example.com ")));
+
+    List<DuplicateFinder.Cluster> clusters = DuplicateFinder.find(candidates, pool, 4);
+
+    assertThat(clusters).hasSize(1);
+    assertThat(clusters.get(0).reasons)
+        .containsExactly(DuplicateFinder.REASON_EMAIL, DuplicateFinder.REASON_NAME).inOrder();
+  }
+
+  @Test
+  public void find_phoneticNameAloneIsNotEnough() throws Exception {
+    List<DuplicateFinder.Candidate> candidates = Arrays.asList(
+        candidate("a", "Taro", "Yamada", "yamada taro", none(), none()),
+        candidate("b", "Jiro", "Yamada", "yamada taro", none(), none()));
+
+    assertThat(DuplicateFinder.find(candidates, pool, 4)).isEmpty();
+  }
+
+  @Test
+  public void find_transitiveMatchesFormOneCluster() throws Exception {
+    List<DuplicateFinder.Candidate> candidates = Arrays.asList(
+        candidate("a", "Jane", "Doe", null, Arrays.asList("5550100100"), none()),
+        candidate("b", "Janet", "Doe", null, Arrays.asList("5550100100"), Arrays.asList("jd@example.com")),
+        candidate("c", "JD", null, null, none(), Arrays.asList("jd@example.com")));
+
+    List<DuplicateFinder.Cluster> clusters = DuplicateFinder.find(candidates, pool, 2);
+
+    assertThat(clusters).hasSize(1);
+    assertThat(clusters.get(0).identifiers).containsExactly("a", "b", "c").inOrder();
+    assertThat(clusters.get(0).reasons)
+        .containsExactly(DuplicateFinder.REASON_PHONE, DuplicateFinder.REASON_EMAIL).inOrder();
+  }
+
+  @Test
+  public void find_sharedSwitchboardNumberIsIgnored() throws Exception {
+    List<DuplicateFinder.Candidate> candidates = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      candidates.add(candidate(String.valueOf(i), "Given" + i, "Family" + i, null,
+          Arrays.asList("+1 555 000 0000"), none()));
+    }
+
+    assertThat(DuplicateFinder.find(candidates, pool, 4)).isEmpty();
+  }
+
+  private static DuplicateFinder.Candidate candidate(String identifier, String givenName, String familyName,
+      String phoneticName, List<String> phones, List<String> emails) {
+    return DuplicateFinder.candidate(identifier, givenName, null, familyName, phoneticName, phones, emails);
+  }
+
+  private static List<String> none() {
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,150 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class FieldDiffTest {
+
+  private static final FieldDiff.Adapter<Item> ADAPTER = new FieldDiff.Adapter<Item>() {
+    @Override
+    public String getIdentifier(Item item) {
+      return item.identifier;
+    }
+
+    @Override
+    public boolean equalValues(Item item, Item existing) {
+      return item.equalValues(existing);
+    }
+
+    @Override
+    public boolean isDeletable(Item existing) {
+      return !"com.whatsapp".equals(existing.accountType);
+    }
+  };
+
+  @Test
+  public void compute_itemWithoutIdentifier_isInserted() {
+    Item item = new Item(null, "home", "a@example.com");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Collections.<Item>emptyList(), Arrays.asList(item), ADAPTER);
+
+    assertThat(diff.inserts).containsExactly(item);
+    assertThat(diff.updates).isEmpty();
+    assertThat(diff.deletes).isEmpty();
+  }
+
+  @Test
+  public void compute_changedValue_isUpdated() {
+    Item existing = new Item("1", "home", "a@example.com");
+    Item item = new Item("1", "home", "b@example.com");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Arrays.asList(existing), Arrays.asList(item), ADAPTER);
+
+    assertThat(diff.updates).containsExactly(item);
+    assertThat(diff.inserts).isEmpty();
+    assertThat(diff.deletes).isEmpty();
+  }
+
+  @Test
+  public void compute_labelCaseOnly_isUnchanged() {
+    Item existing = new Item("1", "home", "a@example.com");
+    Item item = new Item("1", "Home", "a@example.com");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Arrays.asList(existing), Arrays.asList(item), ADAPTER);
+
+    assertThat(diff.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void compute_missingItem_isDeleted() {
+    Item kept = new Item("1", "home", "a@example.com");
+    Item removed = new Item("2", "work", "b@example.com");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Arrays.asList(kept, removed), Arrays.asList(kept), ADAPTER);
+
+    assertThat(diff.deletes).containsExactly(removed);
+  }
+
+  @Test
+  public void compute_emptyNewItems_deletesAllDeletable() {
+    Item own = new Item("1", "mobile", "123", "com.google");
+    Item synced = new Item("2", "mobile", "456", "com.whatsapp");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Arrays.asList(own, synced), Collections.<Item>emptyList(), ADAPTER);
+
+    assertThat(diff.deletes).containsExactly(own);
+  }
+
+  @Test
+  public void compute_unknownIdentifier_isInserted() {
+    Item existing = new Item("1", "home", "a@example.com");
+    Item foreign = new Item("42", "work", "b@example.com");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Arrays.asList(existing), Arrays.asList(existing, foreign), ADAPTER);
+
+    assertThat(diff.inserts).containsExactly(foreign);
+    assertThat(diff.deletes).isEmpty();
+  }
+
+  @Test
+  public void compute_duplicateIdentifier_isMatchedOnce() {
+    Item existing = new Item("1", "home", "a@example.com");
+    Item first = new Item("1", "home", "b@example.com");
+    Item second = new Item("1", "home", "c@example.com");
+
+    FieldDiff<Item> diff = FieldDiff.compute(Arrays.asList(existing), Arrays.asList(first, second), ADAPTER);
+
+    assertThat(diff.updates).containsExactly(first);
+    assertThat(diff.inserts).isEmpty();
+  }
+
+  @Test
+  public void compute_hundredsOfEntries() {
+    List<Item> existingItems = new ArrayList<>();
+    List<Item> newItems = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      existingItems.add(new Item(String.valueOf(i), "mobile", "+1555" + i));
+      if (i % 3 == 0) {
+        // unchanged
+        newItems.add(new Item(String.valueOf(i), "mobile", "+1555" + i));
+      } else if (i % 3 == 1) {
+        newItems.add(new Item(String.valueOf(i), "work", "+1555" + i));
+      }
+      // i % 3 == 2 is removed
+    }
+    for (int i = 0; i < 100; i++) {
+      newItems.add(new Item(null, "home", "+1666" + i));
+    }
+
+    FieldDiff<Item> diff = FieldDiff.compute(existingItems, newItems, ADAPTER);
+
+    assertThat(diff.inserts).hasSize(100);
+    assertThat(diff.updates).hasSize(200);
+    assertThat(diff.deletes).hasSize(200);
+  }
+
+  @Test
+  public void item_equalsAndHashCode_ignoreLabelCase() {
+    Item item1 = new Item("1", "Home", "a@example.com");
+    Item item2 = new Item("1", "home", "a@example.com");
+
+    assertThat(item1).isEqualTo(item2);
+    assertThat(item1.hashCode()).isEqualTo(item2.hashCode());
+    assertThat(item1).isNotEqualTo(new Item("2", "home", "a@example.com"));
+  }
+
+  @Test
+  public void postalAddress_equalsAndHashCode() {
+    PostalAddress address1 = new PostalAddress("1", "work", "street", null, "city", "12345", null, "country", null);
+    PostalAddress address2 = new PostalAddress("1", "Work", "street", null, "city", "12345", null, "country", null);
+
+    assertThat(address1).isEqualTo(address2);
+    assertThat(address1.hashCode()).isEqualTo(address2.hashCode());
+    assertThat(address1).isNotEqualTo(new PostalAddress("1", "work", "other street", null, "city", "12345", null, "country", null));
+  }
+}
@@ -0,0 +1,63 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ItemTest {
+
+  @Test
+  public void getPhoneLabel_customLabelFromRow() {
+    DataRow row = row(DataKinds.Phone.LABEL, "Satellite");
+
+    assertThat(Item.getPhoneLabel(DataKinds.Phone.TYPE_CUSTOM, row)).isEqualTo("satellite");
+    assertThat(Item.getPhoneLabel(DataKinds.Phone.TYPE_MOBILE, row)).isEqualTo("mobile");
+    assertThat(Item.getPhoneLabel(DataKinds.Phone.TYPE_CUSTOM, row(DataKinds.Phone.LABEL, null))).isEmpty();
+  }
+
+  @Test
+  public void labelsRoundTrip() {
+    for (String label : new String[]{"home", "work", "mobile", "fax work", "fax home", "main", "company", "pager"}) {
+      assertThat(Item.getPhoneLabel(Item.stringToPhoneType(label), null)).isEqualTo(label);
+    }
+    for (String label : new String[]{"assistant", "domestic partner", "referred by", "spouse"}) {
+      assertThat(Item.getRelationLabel(Item.stringToRelationType(label), null)).isEqualTo(label);
+    }
+    assertThat(Item.getInstantMessageAddressLabel(Item.stringToInstantMessageAddressProtocol("jabber"), null))
+        .isEqualTo("Jabber");
+  }
+
+  @Test
+  public void postalAddress_fromRow() {
+    DataRow row = row(DataKinds.ID, "7", DataKinds.StructuredPostal.TYPE, "2",
+        DataKinds.StructuredPostal.STREET, "1 Main St", DataKinds.StructuredPostal.CITY, "Springfield");
+
+    PostalAddress address = new PostalAddress(row);
+
+    assertThat(address.identifier).isEqualTo("7");
+    assertThat(address.label).isEqualTo("work");
+    assertThat(address.street).isEqualTo("1 Main St");
+    assertThat(address.city).isEqualTo("Springfield");
+  }
+
+  private static DataRow row(String... columnsAndValues) {
+    final Map<String, String> values = new HashMap<>();
+    for (int i = 0; i < columnsAndValues.length; i += 2) {
+      values.put(columnsAndValues[i], columnsAndValues[i + 1]);
+    }
+    return new DataRow() {
+      @Override
+      public String getString(String column) {
+        return values.get(column);
+      }
+
+      @Override
+      public int getInt(String column) {
+        String value = values.get(column);
+        return value != null ? Integer.parseInt(value) : 0;
+      }
+    };
+  }
+}
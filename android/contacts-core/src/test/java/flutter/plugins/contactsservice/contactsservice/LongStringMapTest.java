@@ -0,0 +1,62 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class LongStringMapTest {
+
+  @Test
+  public void putGetRemove_matchesAHashMap() {
+    LongStringMap map = new LongStringMap();
+    Map<Long, String> expected = new HashMap<>();
+    Random random = new Random(7);
+    for (int i = 0; i < 20000; i++) {
+      long key = random.nextInt(3000);
+      if (random.nextInt(3) == 0) {
+        assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+      } else {
+        String value = "key" + i;
+        assertThat(map.put(key, value)).isEqualTo(expected.put(key, value));
+      }
+    }
+
+    assertThat(map.size()).isEqualTo(expected.size());
+    for (long key = 0; key < 3000; key++) {
+      assertThat(map.get(key)).isEqualTo(expected.get(key));
+    }
+  }
+
+  @Test
+  public void toMap_packsSortedIdsWithTheirLookupKeys() {
+    LongStringMap map = new LongStringMap(2);
+    map.put(42, "0r42");
+    map.put(-1, "0r-1");
+    map.put(7, "0r7");
+
+    Map<String, Object> packed = map.toMap();
+
+    assertThat((long[]) packed.get("ids")).asList().containsExactly(-1L, 7L, 42L).inOrder();
+    assertThat(packed.get("lookupKeys")).isEqualTo(Arrays.asList("0r-1", "0r7", "0r42"));
+  }
+
+  @Test
+  public void clear_emptiesTheMap() {
+    LongStringMap map = new LongStringMap();
+    map.put(1, "a");
+
+    map.clear();
+
+    assertThat(map.size()).isEqualTo(0);
+    assertThat(map.get(1)).isNull();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void put_rejectsNullValues() {
+    new LongStringMap().put(1, null);
+  }
+}
@@ -0,0 +1,87 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class MetricsTest {
+
+  @Test
+  public void histogram_percentilesAreBucketUpperBounds() {
+    Histogram histogram = new Histogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(10);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(1000);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(100);
+    assertThat(histogram.percentile(0.5)).isEqualTo(15);
+    assertThat(histogram.percentile(0.9)).isEqualTo(15);
+    // capped by the largest value recorded
+    assertThat(histogram.percentile(0.99)).isEqualTo(1000);
+    assertThat(new Histogram().percentile(0.5)).isEqualTo(0);
+  }
+
+  @Test
+  public void record_aggregatesCallsByMethod() {
+    Metrics metrics = new Metrics();
+    for (int roundTrips : new int[]{1, 5}) {
+      CallMetrics call = new CallMetrics("getContacts");
+      call.started();
+      for (int i = 0; i < roundTrips; i++) {
+        call.addProviderCall(1000);
+      }
+      call.addRowScanned();
+      call.addContactsDecoded(3);
+      metrics.record(call);
+    }
+
+    Map<String, Object> getContacts = (Map<String, Object>) metrics.toMap().get("getContacts");
+    assertThat(getContacts).containsEntry("calls", 2L);
+    assertThat(getContacts).containsEntry("providerRoundTrips", 6L);
+    assertThat(getContacts).containsEntry("maxProviderRoundTrips", 5L);
+    assertThat(getContacts).containsEntry("rowsScanned", 2L);
+    assertThat(getContacts).containsEntry("contactsDecoded", 6L);
+    assertThat((Map<String, Object>) getContacts.get("providerTime")).containsEntry("sumMicros", 6L);
+
+    metrics.reset();
+    assertThat(metrics.toMap()).isEmpty();
+  }
+
+  @Test
+  public void record_keepsCoalescedCallsApart() {
+    Metrics metrics = new Metrics();
+    CallMetrics call = new CallMetrics("getContacts");
+    call.started();
+    call.addProviderCall(1000);
+    metrics.record(call);
+    CallMetrics joined = new CallMetrics("getContacts");
+    joined.coalesced();
+    metrics.record(joined);
+
+    Map<String, Object> getContacts = (Map<String, Object>) metrics.toMap().get("getContacts");
+    assertThat(getContacts).containsEntry("calls", 1L);
+    assertThat(getContacts).containsEntry("coalesced", 1L);
+    assertThat((Map<String, Object>) getContacts.get("totalTime")).containsEntry("count", 1L);
+    assertThat((Map<String, Object>) getContacts.get("coalescedWait")).containsEntry("count", 1L);
+  }
+
+  @Test
+  public void payloadSize_followsStandardMessageCodec() {
+    assertThat(Metrics.payloadSize(null)).isEqualTo(1);
+    assertThat(Metrics.payloadSize("abc")).isEqualTo(5);
+    assertThat(Metrics.payloadSize("\u00e9")).isEqualTo(4);
+    assertThat(Metrics.payloadSize(new byte[300])).isEqualTo(304);
+    assertThat(Metrics.payloadSize(new long[3])).isEqualTo(26);
+    assertThat(Metrics.payloadSize(Arrays.asList(1, 2L))).isEqualTo(16);
+    HashMap<String, Object> map = new HashMap<>();
+    map.put("a", new ArrayList<>());
+    assertThat(Metrics.payloadSize(map)).isEqualTo(7);
+  }
+}
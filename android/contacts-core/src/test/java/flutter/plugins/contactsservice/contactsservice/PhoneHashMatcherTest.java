@@ -0,0 +1,78 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+
+public class PhoneHashMatcherTest {
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void match_normalizesBeforeHashing() throws Exception {
+    PhoneHashMatcher matcher = new PhoneHashMatcher(pack("salt", "+15550100100", "+15550100200"), "salt");
+
+    boolean[] matches = matcher.match(
+        new String[]{"+1 (555) 010-0100", "+1 555 010 0300", null, "+1-555-010-0200"}, pool, 4);
+
+    assertThat(matches).isEqualTo(new boolean[]{true, false, false, true});
+  }
+
+  @Test
+  public void match_usesSalt() throws Exception {
+    PhoneHashMatcher matcher = new PhoneHashMatcher(pack("other", "+15550100100"), "salt");
+
+    assertThat(matcher.match(new String[]{"+15550100100"}, pool, 1)).isEqualTo(new boolean[]{false});
+  }
+
+  @Test
+  public void match_manyHashes() throws Exception {
+    String[] numbers = new String[20000];
+    String[] registered = new String[numbers.length / 2];
+    for (int i = 0; i < numbers.length; i++) {
+      numbers[i] = "+4420" + (10000000 + i);
+      if (i % 2 == 0) {
+        registered[i / 2] = numbers[i];
+      }
+    }
+    PhoneHashMatcher matcher = new PhoneHashMatcher(pack(null, registered), null);
+
+    boolean[] matches = matcher.match(numbers, pool, 4);
+
+    for (int i = 0; i < numbers.length; i++) {
+      assertThat(matches[i]).isEqualTo(i % 2 == 0);
+    }
+  }
+
+  @Test
+  public void normalize_keepsLeadingPlusAndDigits() {
+    assertThat(PhoneHashMatcher.normalize("+1 (555) 010-0100")).isEqualTo("+15550100100");
+    assertThat(PhoneHashMatcher.normalize("555+0100")).isEqualTo("5550100");
+    assertThat(PhoneHashMatcher.normalize("+ -")).isNull();
+  }
+
+  private static byte[] pack(String salt, String... numbers) throws Exception {
+    byte[] packed = new byte[numbers.length * PhoneHashMatcher.HASH_LENGTH];
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    Charset utf8 = Charset.forName("UTF-8");
+    for (int i = 0; i < numbers.length; i++) {
+      digest.reset();
+      if (salt != null) {
+        digest.update(salt.getBytes(utf8));
+      }
+      byte[] hash = digest.digest(numbers[i].getBytes(utf8));
+      System.arraycopy(hash, 0, packed, i * PhoneHashMatcher.HASH_LENGTH, hash.length);
+    }
+    return packed;
+  }
+}
@@ -0,0 +1,49 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Locale;
+import org.junit.Test;
+
+public class SectionIndexTest {
+
+  @Test
+  public void fromSortedNames_followsTheListOrder() {
+    // as COLLATE NOCASE returns them, accented letters after Z
+    SectionIndex index = SectionIndex.fromSortedNames(Arrays.asList(
+        null, "  ", "42", "Alice", "anna", "Bernard", "bob", "Zo\u00e9", "\u00c9mile", "\u00e9lise"), Locale.FRENCH);
+
+    assertThat(index.titles).asList().containsExactly("#", "A", "B", "Z", "\u00c9").inOrder();
+    assertThat(index.counts).asList().containsExactly(3, 2, 2, 1, 2).inOrder();
+  }
+
+  @Test
+  public void fromSortedNames_repeatsATitleWhoseNamesAreApart() {
+    SectionIndex index = SectionIndex.fromSortedNames(Arrays.asList("1st", "Zack", "_x", "\u00c9mile"), Locale.ENGLISH);
+
+    assertThat(index.titles).asList().containsExactly("#", "Z", "#", "\u00c9").inOrder();
+    assertThat(index.counts).asList().containsExactly(1, 1, 1, 1).inOrder();
+  }
+
+  @Test
+  public void title_keepsTheAccentsOfTheFirstLetter() {
+    assertThat(SectionIndex.title("\u00e9lise", Locale.FRENCH)).isEqualTo("\u00c9");
+    assertThat(SectionIndex.title("\u0416\u0435\u043d\u044f", Locale.ENGLISH)).isEqualTo("\u0416");
+    assertThat(SectionIndex.title("+33 6", Locale.ENGLISH)).isEqualTo("#");
+    assertThat(SectionIndex.title(null, Locale.ENGLISH)).isEqualTo("#");
+  }
+
+  @Test
+  public void toMap_holdsTitlesAndCounts() {
+    SectionIndex index = new SectionIndex(new String[]{"A", "B"}, new int[]{3, 1});
+
+    assertThat(index.toMap()).containsEntry("titles", Arrays.asList("A", "B"));
+    assertThat(index.toMap()).containsEntry("counts", Arrays.asList(3, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsMismatchedArrays() {
+    new SectionIndex(new String[]{"A"}, new int[0]);
+  }
+}
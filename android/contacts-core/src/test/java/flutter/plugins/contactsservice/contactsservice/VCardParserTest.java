@@ -0,0 +1,133 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import org.junit.Test;
+
+public class VCardParserTest {
+
+  @Test
+  public void next_vCard21_quotedPrintableAndBareTypes() throws IOException {
+    VCardParser parser = new VCardParser(new StringReader(
+        "BEGIN:VCARD\r\n"
+            + "VERSION:2.1\r\n"
+            + "N;CHARSET=UTF-8;ENCODING=QUOTED-PRINTABLE:M=C3=BCller;J=C3=BCrgen;;;\r\n"
+            + "TEL;CELL;VOICE:+49 170 1234567\r\n"
+            + "TEL;WORK;FAX:+49 30 1234567\r\n"
+            + "NOTE;ENCODING=QUOTED-PRINTABLE:first line=0D=0A=\r\n"
+            + "second line\r\n"
+            + "END:VCARD\r\n"));
+
+    Contact contact = parser.next();
+
+    assertThat(contact.familyName).isEqualTo("M\u00fcller");
+    assertThat(contact.givenName).isEqualTo("J\u00fcrgen");
+    assertThat(contact.phones).containsExactly(
+        new Item(null, "mobile", "+49 170 1234567"), new Item(null, "fax work", "+49 30 1234567")).inOrder();
+    assertThat(contact.note).isEqualTo("first line\r\nsecond line");
+    assertThat(parser.next()).isNull();
+  }
+
+  @Test
+  public void next_vCard30_foldedLinesGroupsAndEscapes() throws IOException {
+    VCardParser parser = new VCardParser(new StringReader(
+        "BEGIN:VCARD\n"
+            + "VERSION:3.0\n"
+            + "FN:Jane Doe\n"
+            + "N:Doe;Jane;;Dr.;\n"
+            + "ORG:Example\\, Inc.;Research\n"
+            + "item1.EMAIL;TYPE=INTERNET,WORK:jane@exam\n"
+            + " ple.com\n"
+            + "ADR;TYPE=HOME:;;1 Main St;Springfield;IL;62701;USA\n"
+            + "BDAY:1990-01-31\n"
+            + "END:VCARD\n"));
+
+    Contact contact = parser.next();
+
+    assertThat(contact.displayName).isEqualTo("Jane Doe");
+    assertThat(contact.prefix).isEqualTo("Dr.");
+    assertThat(contact.company).isEqualTo("Example, Inc.");
+    assertThat(contact.department).isEqualTo("Research");
+    assertThat(contact.emails).containsExactly(new Item(null, "work", "jane@example.com"));
+    assertThat(contact.postalAddresses).containsExactly(
+        new PostalAddress(null, "home", "1 Main St", null, "Springfield", "62701", "IL", "USA", null));
+    assertThat(contact.birthday).isEqualTo("1990-01-31");
+  }
+
+  @Test
+  public void next_vCard40_uriValuesAndDataPhoto() throws IOException {
+    VCardParser parser = new VCardParser(new StringReader(
+        "BEGIN:VCARD\n"
+            + "VERSION:4.0\n"
+            + "N:Doe;John;;;\n"
+            + "TEL;VALUE=uri;TYPE=\"voice,home\":tel:+1-555-555-5555\n"
+            + "IMPP:xmpp:john@example.com\n"
+            + "IMPP:sip:john@example.com\n"
+            + "BDAY:--0131\n"
+            + "ANNIVERSARY:20100615\n"
+            + "PHOTO:data:image/png;base64,AAEC/w==\n"
+            + "END:VCARD\n"));
+
+    Contact contact = parser.next();
+
+    assertThat(contact.phones).containsExactly(new Item(null, "home", "+1-555-555-5555"));
+    assertThat(contact.instantMessageAddresses).containsExactly(new Item(null, "jabber", "john@example.com"));
+    assertThat(contact.sip).isEqualTo("john@example.com");
+    assertThat(contact.birthday).isEqualTo("--01-31");
+    assertThat(contact.dates).containsExactly(new Item(null, "anniversary", "2010-06-15"));
+    assertThat(contact.avatar).isEqualTo(new byte[]{0, 1, 2, (byte) 0xFF});
+  }
+
+  @Test
+  public void next_streamsFiftyThousandCards() throws IOException {
+    final int cards = 50000;
+    VCardParser parser = new VCardParser(new GeneratedCards(cards));
+
+    int count = 0;
+    Contact contact;
+    while ((contact = parser.next()) != null) {
+      assertThat(contact.givenName).isEqualTo("Given" + count);
+      count++;
+    }
+
+    assertThat(count).isEqualTo(cards);
+  }
+
+  /**
+   * Produces the cards on demand so the test never holds the whole file
+   */
+  private static class GeneratedCards extends Reader {
+    private final int cards;
+    private int card;
+    private String current = "";
+    private int position;
+
+    GeneratedCards(int cards) {
+      this.cards = cards;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (position == current.length()) {
+        if (card == cards) {
+          return -1;
+        }
+        current = "BEGIN:VCARD\r\nVERSION:3.0\r\nN:Family" + card + ";Given" + card + ";;;\r\n"
+            + "TEL;TYPE=CELL:+1555" + card + "\r\nEMAIL:given" + card + "@example.com\r\nEND:VCARD\r\n";
+        position = 0;
+        card++;
+      }
+      int count = Math.min(length, current.length() - position);
+      current.getChars(position, position + count, buffer, offset);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Test;
+
+public class VCardWriterTest {
+
+  @Test
+  public void write_readsBackWithParser() throws IOException {
+    Contact contact = new Contact("lookup");
+    contact.givenName = "Jane";
+    contact.familyName = "Doe; Jr";
+    contact.company = "Example, Inc.";
+    contact.note = "line 1\nline 2";
+    contact.birthday = "--01-31";
+    contact.phones.add(new Item("1", "mobile", "+1 555 0100"));
+    contact.phones.add(new Item("2", "fax work", "+1 555 0101"));
+    contact.emails.add(new Item("3", "Private", "jane@example.com"));
+    contact.postalAddresses.add(new PostalAddress("4", "home", "1 Main St", null, "Springfield", "62701", "IL", "USA", null));
+    contact.instantMessageAddresses.add(new Item("5", "jabber", "jane@example.com"));
+    contact.avatar = new byte[300];
+    for (int i = 0; i < contact.avatar.length; i++) {
+      contact.avatar[i] = (byte) i;
+    }
+
+    Contact parsed = new VCardParser(new StringReader(write(contact))).next();
+
+    assertThat(parsed.givenName).isEqualTo("Jane");
+    assertThat(parsed.familyName).isEqualTo("Doe; Jr");
+    assertThat(parsed.company).isEqualTo("Example, Inc.");
+    assertThat(parsed.note).isEqualTo("line 1\nline 2");
+    assertThat(parsed.birthday).isEqualTo("--01-31");
+    assertThat(parsed.phones).containsExactly(
+        new Item(null, "mobile", "+1 555 0100"), new Item(null, "fax work", "+1 555 0101")).inOrder();
+    assertThat(parsed.emails).containsExactly(new Item(null, "private", "jane@example.com"));
+    assertThat(parsed.postalAddresses).containsExactly(
+        new PostalAddress(null, "home", "1 Main St", null, "Springfield", "62701", "IL", "USA", null));
+    assertThat(parsed.instantMessageAddresses).containsExactly(new Item(null, "jabber", "jane@example.com"));
+    assertThat(parsed.avatar).isEqualTo(contact.avatar);
+  }
+
+  @Test
+  public void write_foldsLongLines() throws IOException {
+    Contact contact = new Contact("lookup");
+    contact.avatar = new byte[1000];
+
+    for (String line : write(contact).split("\r\n")) {
+      assertThat(line.length()).isAtMost(75);
+    }
+  }
+
+  private static String write(Contact contact) throws IOException {
+    StringWriter output = new StringWriter();
+    VCardWriter writer = new VCardWriter(output);
+    writer.write(contact);
+    writer.close();
+    return output.toString();
+  }
+}
@@ -0,0 +1,35 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+/***
+ * Encodes contacts one after the other with the standard message codec as soon as they are
+ * decoded, so that only their encoded bytes stay in memory. Holds a single window of a bounded
+ * memory read, the buffer grows with the contacts written. Dart reads them back with
+ * StandardMessageCodec.readValue until the buffer is exhausted
+ ***/
+class ContactStreamWriter extends StandardMessageCodec {
+
+    private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    private int count;
+
+    void write(Map<String, Object> contact) {
+        writeValue(stream, contact);
+        count++;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int size() {
+        return stream.size();
+    }
+
+    byte[] toByteArray() {
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,203 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * In memory copy of what the first reads need: the contact id, display name and thumbnail uri of every contact,
+ * in display name order, and the group titles. Only used once {@link #load} ran, after which
+ * any change to the contacts provider drops it
+ ***/
+class ContactsCache {
+
+    /**
+     * A snapshot of the Contacts table
+     */
+    static class Index {
+        final HashMap<String, String> contactIdByLookupKey = new HashMap<>();
+        final HashMap<String, Integer> positionByLookupKey = new HashMap<>();
+        // one summary per contact, in display name order
+        final ArrayList<Contact> summaries = new ArrayList<>();
+    }
+
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            invalidate();
+        }
+    };
+
+    private ContentResolver observedResolver;
+    private boolean closed;
+    // Bumped on every change so that a load racing with a change does not publish stale data
+    private volatile int generation;
+    private volatile Index index;
+    // Null until loaded, group id to titles
+    private volatile ConcurrentHashMap<String, ArrayList<String>> groupTitles;
+
+    /**
+     * Watches the provider and loads the contacts and groups in two queries. Does nothing when
+     * already loaded.
+     *
+     * @throws SecurityException without the contacts permission
+     */
+    synchronized void load(ContentResolver contentResolver, String orderBy) {
+        if (closed) {
+            return;
+        }
+        if (observedResolver == null) {
+            contentResolver.registerContentObserver(ContactsContract.AUTHORITY_URI, true, observer);
+            observedResolver = contentResolver;
+        }
+        if (index != null && groupTitles != null) {
+            return;
+        }
+        int loadedGeneration = generation;
+
+        Index loadedIndex = new Index();
+        Cursor cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, new String[]{
+                ContactsContract.Contacts._ID, ContactsContract.Contacts.LOOKUP_KEY, ContactsContract.Contacts.DISPLAY_NAME,
+                ContactsContract.Contacts.PHOTO_THUMBNAIL_URI
+        }, null, null, orderBy);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String lookupKey = cursor.getString(1);
+                if (lookupKey == null || loadedIndex.contactIdByLookupKey.containsKey(lookupKey)) {
+                    continue;
+                }
+                loadedIndex.contactIdByLookupKey.put(lookupKey, cursor.getString(0));
+                loadedIndex.positionByLookupKey.put(lookupKey, loadedIndex.summaries.size());
+                Contact contact = new Contact(lookupKey);
+                contact.displayName = cursor.getString(2);
+                contact.photoThumbnailUri = cursor.getString(3);
+                loadedIndex.summaries.add(contact);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        ConcurrentHashMap<String, ArrayList<String>> loadedGroupTitles = new ConcurrentHashMap<>();
+        cursor = contentResolver.query(ContactsContract.Groups.CONTENT_URI,
+                new String[]{ContactsContract.Groups._ID, ContactsContract.Groups.TITLE}, null, null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String title = cursor.getString(1);
+                if (title == null) {
+                    continue;
+                }
+                ArrayList<String> titles = new ArrayList<>();
+                titles.add(title);
+                loadedGroupTitles.put(cursor.getString(0), titles);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (loadedGeneration == generation) {
+            index = loadedIndex;
+            groupTitles = loadedGroupTitles;
+        }
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (observedResolver != null) {
+            observedResolver.unregisterContentObserver(observer);
+            observedResolver = null;
+        }
+        invalidate();
+    }
+
+    void invalidate() {
+        generation++;
+        index = null;
+        groupTitles = null;
+    }
+
+    /**
+     * @return the current snapshot of the Contacts table, null when not loaded
+     */
+    Index getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the titles of the group, null when unknown
+     */
+    ArrayList<String> getGroupTitles(String groupId) {
+        ConcurrentHashMap<String, ArrayList<String>> titles = groupTitles;
+        return titles != null ? titles.get(groupId) : null;
+    }
+
+    /**
+     * Remembers the titles of a group read from the provider, until the next change
+     */
+    void putGroupTitles(String groupId, ArrayList<String> titles) {
+        ConcurrentHashMap<String, ArrayList<String>> cached = groupTitles;
+        if (cached != null) {
+            cached.put(groupId, titles);
+        }
+    }
+
+    /**
+     * @param lookupKeys the contacts to summarize, null for all of them
+     * @return the summaries of the given contacts, in display name order or in the given order,
+     * null when not loaded or when a lookup key is not in the snapshot
+     */
+    ArrayList<Contact> getSummaries(List<String> lookupKeys, boolean orderByDisplayName) {
+        Index current = index;
+        if (current == null) {
+            return null;
+        }
+        ArrayList<Contact> summaries = new ArrayList<>();
+        if (lookupKeys == null) {
+            for (Contact summary : current.summaries) {
+                summaries.add(copy(summary));
+            }
+        } else if (orderByDisplayName) {
+            boolean[] requested = new boolean[current.summaries.size()];
+            for (String lookupKey : lookupKeys) {
+                Integer position = current.positionByLookupKey.get(lookupKey);
+                if (position == null) {
+                    return null;
+                }
+                requested[position] = true;
+            }
+            for (int i = 0; i < requested.length; i++) {
+                if (requested[i]) {
+                    summaries.add(copy(current.summaries.get(i)));
+                }
+            }
+        } else {
+            for (String lookupKey : lookupKeys) {
+                Integer position = current.positionByLookupKey.get(lookupKey);
+                if (position == null) {
+                    return null;
+                }
+                summaries.add(copy(current.summaries.get(position)));
+            }
+        }
+        return summaries;
+    }
+
+    // callers may fill in the contacts they get, the snapshot stays untouched
+    private static Contact copy(Contact summary) {
+        Contact contact = new Contact(summary.identifier);
+        contact.displayName = summary.displayName;
+        contact.photoThumbnailUri = summary.photoThumbnailUri;
+        return contact;
+    }
+}
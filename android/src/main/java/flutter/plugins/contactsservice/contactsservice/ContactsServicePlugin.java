@@ -1,5 +1,6 @@
 package flutter.plugins.contactsservice.contactsservice;
 
+import android.Manifest;
 import android.annotation.TargetApi;
 import android.content.ContentProviderOperation;
 import android.content.ContentProviderResult;
@@ -8,28 +9,51 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Process;
+import android.os.RemoteException;
 import android.provider.BaseColumns;
 import android.provider.ContactsContract;
+import android.telephony.PhoneNumberUtils;
+import android.telephony.TelephonyManager;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +61,7 @@ import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
 import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
@@ -63,6 +88,9 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     private static final String LOG_TAG = "flutter_contacts";
     private ContentResolver contentResolver;
     private MethodChannel methodChannel;
+    private EventChannel progressChannel;
+    // Only touched from the platform thread
+    private EventChannel.EventSink progressSink;
     private BaseContactsServiceDelegate delegate;
 
     private static final String getContactsMethod = "getContacts";
@@ -82,10 +110,87 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     private static final String openDeviceContactPickerMethod = "openDeviceContactPicker";
     private static final String getAvatarMethod = "getAvatar";
     private static final String addContactWithReturnIdentifierMethod = "addContactWithReturnIdentifier";
+    private static final String addContactsMethod = "addContacts";
+    private static final String updateContactsMethod = "updateContacts";
+    private static final String importVCardMethod = "importVCard";
+    private static final String exportVCardMethod = "exportVCard";
+    private static final String findDuplicatesMethod = "findDuplicates";
+    private static final String getContactFingerprintsMethod = "getContactFingerprints";
+    private static final String matchPhoneHashesMethod = "matchPhoneHashes";
+    private static final String getSectionIndexMethod = "getSectionIndex";
+    private static final String getContactCountMethod = "getContactCount";
+    private static final String setAccountPolicyMethod = "setAccountPolicy";
+    private static final String getContactWindowIdsMethod = "getContactWindowIds";
+    private static final String getContactWindowMethod = "getContactWindow";
+    private static final String getMetricsMethod = "getMetrics";
+    private static final String resetMetricsMethod = "resetMetrics";
+
+    // The calls changing what the reads return, a read started before one of them is never joined after it
+    private static final Set<String> WRITE_METHODS = new HashSet<>(Arrays.asList(addContactMethod,
+            addContactWithReturnIdentifierMethod, addContactsMethod, updateContactMethod, updateContactsMethod,
+            deleteContactMethod, deleteContactsByIdentifiersMethod, importVCardMethod, setAccountPolicyMethod));
+
+    // Application meta-data turning on the warm-up of the contacts cache when the plugin is attached
+    private static final String WARM_UP_META_DATA = "flutter.plugins.contactsservice.warmUp";
+
+    // ContactsProvider rejects batches with more than 500 operations between two yield points
+    private static final int MAX_BATCH_OPERATIONS = 400;
+    // Keeps IN (...) selections below SQLITE_MAX_VARIABLE_NUMBER (999)
+    private static final int MAX_SELECTION_ARGS = 500;
+
+
+    private final ExecutorService pool =
+            new ThreadPoolExecutor(0, 10, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1000));
+
+    private final Metrics metrics = new Metrics();
+    private final ContactsCache cache = new ContactsCache();
+    private final LookupKeyIndex lookupKeyIndex = new LookupKeyIndex();
+    // Tells the country numbers without a country code are in, null without a context
+    private TelephonyManager telephonyManager;
+    private volatile Tracer tracer = SystemTracer.INSTANCE;
+    private volatile AccountPolicy accountPolicy = AccountPolicy.DEFAULT;
+    // Cookie of the async trace section of each call. Platform thread only.
+    private int lastRequestId;
+    // The call the current thread works for, null outside of a method channel call
+    private static final ThreadLocal<CallMetrics> currentCall = new ThreadLocal<>();
+    // The call being handled by onMethodCall, set when its work was handed to the executor or joined
+    // a running read, which then record it. Platform thread only.
+    private CallMetrics dispatchingCall;
+    private boolean dispatched;
+
+    // Runs the tasks on the pool, accounting each of them to the call that started it
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            final CallMetrics call = new CallMetrics(dispatchingCall != null ? dispatchingCall.method : "unknown");
+            dispatched = true;
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    call.started();
+                    currentCall.set(call);
+                    try {
+                        command.run();
+                    } finally {
+                        currentCall.remove();
+                        metrics.record(call);
+                    }
+                }
+            });
+        }
+    };
 
+    // Callers waiting on a read that is already running, keyed by method name and arguments.
+    // Only touched from the platform thread (onMethodCall and AsyncTask.onPostExecute), so no locking is needed.
+    private final HashMap<Object, ArrayList<Result>> inFlightReads = new HashMap<>();
 
-    private final ExecutorService executor =
-            new ThreadPoolExecutor(0, 10, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1000));
+    public ContactsServicePlugin() {
+    }
+
+    // Reads and writes through the given resolver, without any channel, for tests
+    ContactsServicePlugin(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
 
     private void initDelegateWithRegister(Registrar registrar) {
         this.delegate = new ContactServiceDelegateOld(registrar);
@@ -100,7 +205,62 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     private void initInstance(BinaryMessenger messenger, Context context) {
         methodChannel = new MethodChannel(messenger, "github.com/clovisnicolas/flutter_contacts");
         methodChannel.setMethodCallHandler(this);
+        progressChannel = new EventChannel(messenger, "github.com/clovisnicolas/flutter_contacts/progress");
+        progressChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                progressSink = events;
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                progressSink = null;
+            }
+        });
         this.contentResolver = context.getContentResolver();
+        this.telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        startWarmUp(context);
+    }
+
+    /**
+     * Loads the contacts cache on a background thread when the app opts in through the
+     * {@link #WARM_UP_META_DATA} meta-data and holds the contacts permission
+     */
+    private void startWarmUp(final Context context) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                if (!isWarmUpEnabled(context) || context.checkPermission(Manifest.permission.READ_CONTACTS,
+                        Process.myPid(), Process.myUid()) != PackageManager.PERMISSION_GRANTED) {
+                    return;
+                }
+                tracer.beginSection("warmUp");
+                try {
+                    loadCache(context.getContentResolver());
+                } catch (Exception e) {
+                    Log.e(LOG_TAG, "Exception encountered while warming up the contacts cache: ");
+                    e.printStackTrace();
+                } finally {
+                    tracer.endSection();
+                }
+            }
+        }, "contacts-warm-up");
+        thread.start();
+    }
+
+    private static boolean isWarmUpEnabled(Context context) {
+        try {
+            ApplicationInfo info = context.getPackageManager()
+                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            return info.metaData != null && info.metaData.getBoolean(WARM_UP_META_DATA, false);
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+
+    void loadCache(ContentResolver contentResolver) {
+        cache.load(contentResolver, ORDER_BY_FIELD);
     }
 
     @Override
@@ -113,19 +273,123 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     public void onDetachedFromEngine(FlutterPluginBinding binding) {
         methodChannel.setMethodCallHandler(null);
         methodChannel = null;
+        progressChannel.setStreamHandler(null);
+        progressChannel = null;
+        progressSink = null;
         contentResolver = null;
         this.delegate = null;
+        cache.close();
+        lookupKeyIndex.close();
     }
 
     @Override
     public void onMethodCall(MethodCall call, Result result) {
+        if (getMetricsMethod.equals(call.method)) {
+            result.success(metrics.toMap());
+            return;
+        }
+        if (resetMetricsMethod.equals(call.method)) {
+            metrics.reset();
+            result.success(null);
+            return;
+        }
+        int requestId = ++lastRequestId;
+        tracer.beginAsyncSection(call.method, requestId);
+        result = new TracedResult(result, call.method, requestId);
+        // Calls answered on the platform thread are recorded here, the others by the executor
+        CallMetrics callMetrics = new CallMetrics(call.method);
+        callMetrics.started();
+        dispatchingCall = callMetrics;
+        dispatched = false;
+        currentCall.set(callMetrics);
+        try {
+            handleMethodCall(call, result);
+        } finally {
+            currentCall.remove();
+            dispatchingCall = null;
+            if (!dispatched) {
+                metrics.record(callMetrics);
+            }
+        }
+    }
+
+    /**
+     * Replaces the tracer the sections are written to, the system trace by default
+     */
+    void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Replaces the accounts the raw contacts read and updated may belong to, {@link AccountPolicy#DEFAULT} by default
+     */
+    void setAccountPolicy(AccountPolicy policy) {
+        accountPolicy = policy;
+    }
+
+    /**
+     * Ends the async trace section of a call once it is answered
+     */
+    private class TracedResult implements Result {
+        private final Result result;
+        private final String method;
+        private final int requestId;
+
+        TracedResult(Result result, String method, int requestId) {
+            this.result = result;
+            this.method = method;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public void success(Object value) {
+            tracer.endAsyncSection(method, requestId);
+            result.success(value);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            tracer.endAsyncSection(method, requestId);
+            result.error(errorCode, errorMessage, errorDetails);
+        }
+
+        @Override
+        public void notImplemented() {
+            tracer.endAsyncSection(method, requestId);
+            result.notImplemented();
+        }
+    }
+
+    private void handleMethodCall(MethodCall call, Result result) {
+        if (WRITE_METHODS.contains(call.method)) {
+            forgetInFlightReads();
+        }
         switch (call.method) {
             case getContactsByIdentifiersMethod:
             case getIdentifiersMethod:
             case getContactsSummaryMethod:
             case getContactsMethod: {
-                this.getContacts(call.method, (String) call.argument("query"), (boolean) call.argument("withThumbnails"), (boolean) call.argument(
-                        "photoHighResolution"), (boolean) call.argument("orderByGivenName"), (String) call.argument("identifiers"), result);
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    this.getContacts(call.method, (String) call.argument("query"), (boolean) call.argument("withThumbnails"), (boolean) call.argument(
+                            "photoHighResolution"), (boolean) call.argument("orderByGivenName"), (String) call.argument("sortOrder"),
+                            (String) call.argument("identifiers"), Boolean.TRUE.equals(call.argument("withNames")), readResult);
+                }
+                break;
+            }
+            case getContactWindowIdsMethod: {
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    String identifiers = call.argument("identifiers");
+                    new GetContactWindowIdsTask(identifiers != null ? Arrays.asList(identifiers.split("\\|")) : null,
+                            (boolean) call.argument("orderByGivenName"), readResult).executeOnExecutor(executor);
+                }
+                break;
+            }
+            case getContactWindowMethod: {
+                new GetContactWindowTask((long[]) call.argument("contactIds"), (boolean) call.argument("withThumbnails"),
+                        (boolean) call.argument("photoHighResolution"), (boolean) call.argument("orderByGivenName"), result)
+                        .executeOnExecutor(executor);
                 break;
             }
             case getAvatarMethod: {
@@ -156,18 +420,23 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
                 }
                 break;
             }
+            case addContactsMethod: {
+                ArrayList<Contact> contacts = new ArrayList<>();
+                for (Object map : (List) call.arguments) {
+                    contacts.add(Contact.fromMap((HashMap) map));
+                }
+                new AddContactsTask(contacts, result).executeOnExecutor(executor);
+                break;
+            }
             case deleteContactsByIdentifiersMethod: {
                 String identifierString = (String) call.argument("identifiers");
                 if (identifierString == null) {
                     result.success(null);
                 } else {
                     List<String> identifiersList = Arrays.asList(identifierString.split("\\|"));
-                    if (this.deleteContactsByIdentifiers(identifiersList)) {
-                        result.success(null);
-                    } else {
-                        result.error(null, "Failed to delete the contacts, make sure they have valid identifiers", null);
-                    }
+                    new DeleteContactsTask(identifiersList, result).executeOnExecutor(executor);
                 }
+                break;
             }
             case deleteContactMethod: {
                 final Contact contact = Contact.fromMap((HashMap) call.arguments);
@@ -180,15 +449,80 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
             }
             case updateContactMethod: {
                 final Contact contact = Contact.fromMap((HashMap) call.arguments);
-                if (this.updateContact(contact)) {
+                final HashMap baseline = (HashMap) ((HashMap) call.arguments).get("baseline");
+                if (this.updateContact(contact, baseline != null ? Contact.fromMap(baseline) : null)) {
                     result.success(null);
                 } else {
-                    result.error(null, "Failed to update the contact, make sure it has a valid identifier", null);
+                    result.error(null, "Failed to update the contact, make sure it has a valid identifier and was not modified since it was read", null);
+                }
+                break;
+            }
+            case updateContactsMethod: {
+                ArrayList<Contact> contacts = new ArrayList<>();
+                ArrayList<Contact> baselines = new ArrayList<>();
+                for (Object map : (List) call.arguments) {
+                    contacts.add(Contact.fromMap((HashMap) map));
+                    HashMap baseline = (HashMap) ((HashMap) map).get("baseline");
+                    baselines.add(baseline != null ? Contact.fromMap(baseline) : null);
+                }
+                new UpdateContactsTask(contacts, baselines, result).executeOnExecutor(executor);
+                break;
+            }
+            case importVCardMethod: {
+                new ImportVCardTask((String) call.argument("path"), result).executeOnExecutor(executor);
+                break;
+            }
+            case exportVCardMethod: {
+                String identifiers = call.argument("identifiers");
+                new ExportVCardTask((String) call.argument("path"),
+                        identifiers != null ? Arrays.asList(identifiers.split("\\|")) : null,
+                        (boolean) call.argument("withPhotos"), result).executeOnExecutor(executor);
+                break;
+            }
+            case findDuplicatesMethod: {
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    new FindDuplicatesTask(readResult).executeOnExecutor(executor);
+                }
+                break;
+            }
+            case getContactFingerprintsMethod: {
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    new GetFingerprintsTask(readResult).executeOnExecutor(executor);
+                }
+                break;
+            }
+            case getSectionIndexMethod: {
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    new GetSectionIndexTask(readResult).executeOnExecutor(executor);
+                }
+                break;
+            }
+            case setAccountPolicyMethod: {
+                setAccountPolicy(call.arguments != null ? AccountPolicy.fromMap((Map<?, ?>) call.arguments) : AccountPolicy.DEFAULT);
+                result.success(null);
+                break;
+            }
+            case getContactCountMethod: {
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    new GetContactCountTask((String) call.argument("accountType"), (String) call.argument("accountName"),
+                            Boolean.TRUE.equals(call.argument("hasPhoneNumber")), readResult).executeOnExecutor(executor);
                 }
                 break;
             }
+            case matchPhoneHashesMethod: {
+                new MatchPhoneHashesTask((byte[]) call.argument("hashes"), (String) call.argument("salt"), result)
+                        .executeOnExecutor(executor);
+                break;
+            }
             case getContactsLookupKeysMethod: {
-                new GetLookupKeysTask(result).executeOnExecutor(executor);
+                Result readResult = coalesceRead(call, result);
+                if (readResult != null) {
+                    new GetLookupKeysTask(readResult).executeOnExecutor(executor);
+                }
                 break;
             }
 //            case openExistingContactMethod: {
@@ -221,6 +555,147 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         }
     }
 
+    /**
+     * Queries the resolver, accounting the round trip, the rows and the time spent in the provider
+     * to the current call.
+     */
+    private Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        CallMetrics call = currentCall.get();
+        if (call == null) {
+            return contentResolver.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        long start = System.nanoTime();
+        Cursor cursor = contentResolver.query(uri, projection, selection, selectionArgs, sortOrder);
+        call.addProviderCall(System.nanoTime() - start);
+        return cursor != null ? new MeteredCursor(cursor, call) : null;
+    }
+
+    private ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> ops)
+            throws RemoteException, OperationApplicationException {
+        tracer.beginSection("applyBatch " + ops.size());
+        long start = System.nanoTime();
+        try {
+            return contentResolver.applyBatch(ContactsContract.AUTHORITY, ops);
+        } finally {
+            // the observers only hear of the change later, on a binder thread, and reads answered
+            // in between would miss this write
+            cache.invalidate();
+            lookupKeyIndex.markStale();
+            recordProviderCall(start);
+            tracer.endSection();
+        }
+    }
+
+    private static void recordProviderCall(long startNanos) {
+        CallMetrics call = currentCall.get();
+        if (call != null) {
+            call.addProviderCall(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Joins the given result to an identical read that is already in flight.
+     *
+     * @return a result the caller must use to start the read, or null when an identical read is
+     * already running and will answer this result too
+     */
+    private Result coalesceRead(MethodCall call, Result result) {
+        Object key = Arrays.asList(call.method, call.arguments);
+        ArrayList<Result> waiting = inFlightReads.get(key);
+        if (waiting != null) {
+            waiting.add(new JoinedReadResult(result, dispatchingCall));
+            dispatched = true;
+            return null;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(result);
+        inFlightReads.put(key, waiting);
+        return new CoalescedReadResult(key, waiting);
+    }
+
+    /**
+     * Makes the reads that are already running unavailable to later callers, which start a read of
+     * their own. The callers that joined them still get their result.
+     */
+    private void forgetInFlightReads() {
+        inFlightReads.clear();
+    }
+
+    /**
+     * Records a call that joined a running read once the shared result reaches it, as coalesced
+     * rather than as a call of its own.
+     */
+    private class JoinedReadResult implements Result {
+        private final Result result;
+        private final CallMetrics call;
+
+        JoinedReadResult(Result result, CallMetrics call) {
+            this.result = result;
+            this.call = call;
+            call.coalesced();
+        }
+
+        @Override
+        public void success(Object value) {
+            metrics.record(call);
+            result.success(value);
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            metrics.record(call);
+            result.error(errorCode, errorMessage, errorDetails);
+        }
+
+        @Override
+        public void notImplemented() {
+            metrics.record(call);
+            result.notImplemented();
+        }
+    }
+
+    /**
+     * Delivers the outcome of a shared read to every caller that joined it.
+     */
+    private class CoalescedReadResult implements Result {
+        private final Object key;
+        private final List<Result> waiting;
+
+        CoalescedReadResult(Object key, List<Result> waiting) {
+            this.key = key;
+            this.waiting = waiting;
+        }
+
+        private List<Result> drain() {
+            // a later identical read may have taken the key since a write forgot this one
+            if (inFlightReads.get(key) == waiting) {
+                inFlightReads.remove(key);
+            }
+            return waiting;
+        }
+
+        @Override
+        public void success(Object value) {
+            for (Result result : drain()) {
+                result.success(value);
+            }
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            for (Result result : drain()) {
+                result.error(errorCode, errorMessage, errorDetails);
+            }
+        }
+
+        @Override
+        public void notImplemented() {
+            for (Result result : drain()) {
+                result.notImplemented();
+            }
+        }
+    }
+
     private static final String[] PROJECTION = {
             ContactsContract.Data.LOOKUP_KEY,
             ContactsContract.Data.CONTACT_ID,
@@ -228,6 +703,8 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
             ContactsContract.Contacts.Data.MIMETYPE,
             ContactsContract.RawContacts.ACCOUNT_TYPE,
             ContactsContract.RawContacts.ACCOUNT_NAME,
+            ContactsContract.Data.RAW_CONTACT_ID,
+            ContactsContract.RawContacts.VERSION,
             StructuredName.DISPLAY_NAME,
             StructuredName.GIVEN_NAME,
             StructuredName.MIDDLE_NAME,
@@ -276,25 +753,46 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
             ContactsContract.Data.DATA1,
     };
 
+    // read from the Contacts table, one row per contact
     private static final String[] SUMMARY_PROJECTION = {
-            ContactsContract.Data.LOOKUP_KEY,
+            ContactsContract.Contacts._ID,
+            ContactsContract.Contacts.LOOKUP_KEY,
             ContactsContract.Contacts.DISPLAY_NAME,
+            ContactsContract.Contacts.PHOTO_THUMBNAIL_URI,
+    };
+
+    private static final String[] SUMMARY_NAME_PROJECTION = {
+            ContactsContract.Data.CONTACT_ID,
+            CommonDataKinds.StructuredName.GIVEN_NAME,
+            CommonDataKinds.StructuredName.MIDDLE_NAME,
+            CommonDataKinds.StructuredName.FAMILY_NAME,
+            CommonDataKinds.StructuredName.PREFIX,
+            CommonDataKinds.StructuredName.SUFFIX,
+            CommonDataKinds.StructuredName.PHONETIC_GIVEN_NAME,
+            CommonDataKinds.StructuredName.PHONETIC_MIDDLE_NAME,
+            CommonDataKinds.StructuredName.PHONETIC_FAMILY_NAME,
     };
 
     private static final String ORDER_BY_FIELD = (ContactsContract.Contacts.DISPLAY_NAME + " COLLATE NOCASE ASC");
+    // keeps the rows of each contact next to each other, for the windowed decoding
+    private static final String WINDOW_ORDER_BY_FIELD = ORDER_BY_FIELD + ", " + ContactsContract.Data.CONTACT_ID;
+    // the same order over the Contacts table
+    private static final String CONTACTS_WINDOW_ORDER_BY_FIELD = ORDER_BY_FIELD + ", " + ContactsContract.Contacts._ID;
 
     @TargetApi(Build.VERSION_CODES.ECLAIR)
     private void getContacts(String callMethod, String query, boolean withThumbnails, boolean photoHighResolution, boolean orderByGivenName,
-                             String identifiers, Result result) {
+                             String sortOrder, String identifiers, boolean withNames, Result result) {
         List<String> identifiersList = null;
         if (identifiers != null) {
             identifiersList = Arrays.asList(identifiers.split("\\|"));
         }
-        new GetContactsTask(callMethod, result, withThumbnails, photoHighResolution, orderByGivenName, identifiersList).executeOnExecutor(executor, query, false);
+        new GetContactsTask(callMethod, result, withThumbnails, photoHighResolution, orderByGivenName, sortOrder, identifiersList,
+                withNames).executeOnExecutor(executor, query, false);
     }
 
     private void getContactsForPhone(String callMethod, String phone, boolean withThumbnails, boolean photoHighResolution, boolean orderByGivenName, Result result) {
-        new GetContactsTask(callMethod, result, withThumbnails, photoHighResolution, orderByGivenName, null).executeOnExecutor(executor, phone, true);
+        new GetContactsTask(callMethod, result, withThumbnails, photoHighResolution, orderByGivenName, null, null, false)
+                .executeOnExecutor(executor, phone, true);
     }
 
     @Override
@@ -360,10 +858,10 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
                     return true;
                 }
                 Uri contactUri = intent.getData();
-                Cursor cursor = contentResolver.query(contactUri, null, null, null, null);
+                Cursor cursor = query(contactUri, null, null, null, null);
                 if (cursor.moveToFirst()) {
                     String id = contactUri.getLastPathSegment();
-                    getContacts(openDeviceContactPickerMethod, id, false, false, false, null, this.result);
+                    getContacts(openDeviceContactPickerMethod, id, false, false, false, null, null, false, this.result);
                 } else {
                     Log.e(LOG_TAG, "onActivityResult - cursor.moveToFirst() returns false");
                     finishWithResult(FORM_OPERATION_CANCELED);
@@ -416,8 +914,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         HashMap getContactByIdentifier(String identifier) {
             ArrayList<Contact> matchingContacts;
             {
-                Cursor cursor = contentResolver.query(
-                        ContactsContract.Data.CONTENT_URI, PROJECTION,
+                Cursor cursor = queryData(PROJECTION,
                         ContactsContract.RawContacts.CONTACT_ID + " = ?",
                         new String[]{identifier},
                         null
@@ -504,16 +1001,24 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         private boolean withThumbnails;
         private boolean photoHighResolution;
         private boolean orderByGivenName;
+        // a ContactSorter sort order, or null to keep the order of the provider
+        private String sortOrder;
         private List<String> identifiers;
+        // whether summaries carry the name fields
+        private boolean withNames;
 
         public GetContactsTask(String callMethod, MethodChannel.Result result, boolean withThumbnails, boolean photoHighResolution,
-                               boolean orderByGivenName, List<String> identifiers) {
+                               boolean orderByGivenName, String sortOrder, List<String> identifiers, boolean withNames) {
             this.callMethod = callMethod;
             this.getContactResult = result;
             this.withThumbnails = withThumbnails;
             this.photoHighResolution = photoHighResolution;
-            this.orderByGivenName = orderByGivenName;
+            // sorted after decoding, the provider order would be thrown away
+            this.orderByGivenName = orderByGivenName && sortOrder == null;
+            this.sortOrder = sortOrder;
             this.identifiers = identifiers;
+            // the other sort orders need the name fields
+            this.withNames = withNames || (sortOrder != null && !ContactSorter.DISPLAY_NAME.equals(sortOrder));
         }
 
         @TargetApi(Build.VERSION_CODES.ECLAIR)
@@ -527,7 +1032,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
                     contacts = getContactsFrom(getCursor(null, orderByGivenName));
                     break;
                 case getContactsSummaryMethod:
-                    contacts = getContactsSummary(identifiers, orderByGivenName);
+                    contacts = getContactsSummary(identifiers, orderByGivenName, withNames);
                     break;
                 case getIdentifiersMethod:
                     ArrayList<String> contactList = getContactIdentifiersFrom(getCursorForIdentifiers(orderByGivenName));
@@ -540,7 +1045,12 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
                     return null;
             }
 
+            if (sortOrder != null) {
+                sortContacts(contacts, sortOrder);
+            }
+
             if (withThumbnails) {
+                tracer.beginSection("loadAvatars");
                 for (Contact c : contacts) {
                     final byte[] avatar = loadContactPhotoHighRes(
                             c.identifier, photoHighResolution, contentResolver);
@@ -551,10 +1061,13 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
                         c.avatar = new byte[0];
                     }
                 }
+                tracer.endSection();
             }
 
             //Transform the list of contacts to a list of Map
 
+            tracer.beginSection("toMap");
+            long start = System.nanoTime();
             ArrayList<HashMap> contactMaps = new ArrayList<>();
 
             if (callMethod.equalsIgnoreCase(getContactsSummaryMethod)) {
@@ -566,6 +1079,11 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
                     contactMaps.add(c.toMap());
                 }
             }
+            CallMetrics call = currentCall.get();
+            if (call != null) {
+                call.addSerialization(System.nanoTime() - start, contactMaps);
+            }
+            tracer.endSection();
 
             return contactMaps;
         }
@@ -580,188 +1098,806 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     }
 
     @TargetApi(Build.VERSION_CODES.CUPCAKE)
-    private class GetLookupKeysTask extends AsyncTask<Object, Void, HashMap> {
+    private class GetContactWindowIdsTask extends AsyncTask<Void, Void, long[]> {
 
-        private Result getContactResult;
+        // null for all contacts
+        private final List<String> identifiers;
+        private final boolean orderByGivenName;
+        private final Result result;
 
-        public GetLookupKeysTask(MethodChannel.Result result) {
-            this.getContactResult = result;
+        GetContactWindowIdsTask(List<String> identifiers, boolean orderByGivenName, Result result) {
+            this.identifiers = identifiers;
+            this.orderByGivenName = orderByGivenName;
+            this.result = result;
         }
 
-        @TargetApi(Build.VERSION_CODES.ECLAIR)
-        protected HashMap doInBackground(Object... params) {
-            HashMap<String, String> lookupKeysMap = new HashMap<>();
-
-            Cursor cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, new String[]{_ID, ContactsContract.Contacts.LOOKUP_KEY}, null, null, null);
-
-            if (cursor != null && cursor.getCount() > 0) {
-                cursor.moveToPosition(-1);
-                while (cursor.moveToNext()) {
-                    lookupKeysMap.put(cursor.getString(cursor.getColumnIndex(_ID)),
-                            cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY)));
-                }
-            }
-
-            return lookupKeysMap;
+        @Override
+        protected long[] doInBackground(Void... params) {
+            return getContactWindowIds(identifiers, orderByGivenName);
         }
 
-        protected void onPostExecute(HashMap result) {
-            if (result == null) {
-                getContactResult.notImplemented();
-            } else {
-                getContactResult.success(result);
-            }
+        @Override
+        protected void onPostExecute(long[] contactIds) {
+            result.success(contactIds);
         }
     }
 
-    private Cursor getCursor(String lookupKey, boolean orderByGivenName) {
-
-        if (lookupKey == null) {
-            //retrieve all contacts
-            if (orderByGivenName) {
-                return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, null, null, ORDER_BY_FIELD);
-            } else {
-                return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, null, null, null);
-            }
-        } else {
-            //get contact with lookup key
-
-            String contactId = getContactIdFromLookupKey(lookupKey);
+    /**
+     * Reads one window of contacts for a bounded memory read, see {@link #writeContactWindow}
+     */
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class GetContactWindowTask extends AsyncTask<Void, Void, byte[]> {
 
-            if (contactId != null) {
-                String selection = ContactsContract.Data.CONTACT_ID + " = ? ";
-                ArrayList<String> selectionArgs = new ArrayList<>();
-                selectionArgs.add(contactId);
+        private final long[] contactIds;
+        private final boolean withThumbnails;
+        private final boolean photoHighResolution;
+        private final boolean orderByGivenName;
+        private final Result result;
 
-                return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, selection,
-                        selectionArgs.toArray(new String[selectionArgs.size()]), null);
-            }
+        GetContactWindowTask(long[] contactIds, boolean withThumbnails, boolean photoHighResolution,
+                             boolean orderByGivenName, Result result) {
+            this.contactIds = contactIds;
+            this.withThumbnails = withThumbnails;
+            this.photoHighResolution = photoHighResolution;
+            this.orderByGivenName = orderByGivenName;
+            this.result = result;
         }
-        return null;
-    }
 
-    private Cursor getCursorForContactIdentifiers(List<String> lookupKeyList, boolean orderByGivenName) {
-        Log.e(this.getClass().getSimpleName(), "getCursorForContactIdentifiers");
-        List<String> contactIdList = new ArrayList<>();
-        if (lookupKeyList != null && lookupKeyList.size() > 0) {
-            for (String lookupKey : lookupKeyList) {
-                String contactId = getContactIdFromLookupKey(lookupKey);
-                if (contactId != null) {
-                    contactIdList.add(contactId);
-                }
-            }
+        @Override
+        protected byte[] doInBackground(Void... params) {
+            ContactStreamWriter writer = new ContactStreamWriter();
+            writeContactWindow(contactIds, writer, withThumbnails, photoHighResolution, orderByGivenName);
+            return writer.toByteArray();
         }
 
-        if (contactIdList.size() == 0) {
-            return null;
+        @Override
+        protected void onPostExecute(byte[] contacts) {
+            result.success(contacts);
         }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class AddContactsTask extends AsyncTask<Void, Void, ArrayList<String>> {
 
-        String selectionString = "";
+        private final List<Contact> contacts;
+        private final Result result;
+        private HashMap<String, Object> errorDetails;
 
-        for (String i : contactIdList) {
-            selectionString += "?,";
+        AddContactsTask(List<Contact> contacts, Result result) {
+            this.contacts = contacts;
+            this.result = result;
         }
 
-        String selection = ContactsContract.Data.CONTACT_ID + " IN (" + selectionString.substring(0, selectionString.length() - 1) + ")";
+        @Override
+        protected ArrayList<String> doInBackground(Void... params) {
+            try {
+                return addContacts(contacts);
+            } catch (BatchCommitException e) {
+                Log.e(LOG_TAG, "Exception encountered while inserting contacts: ");
+                e.printStackTrace();
+                errorDetails = e.details;
+                return null;
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while inserting contacts: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
 
-        if (orderByGivenName) {
-            return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, selection,
-                    contactIdList.toArray(new String[contactIdList.size()]), ORDER_BY_FIELD);
+        @Override
+        protected void onPostExecute(ArrayList<String> identifiers) {
+            forgetInFlightReads();
+            if (identifiers == null) {
+                result.error(null, "Failed to add the contacts, the details list the ones added", errorDetails);
+            } else {
+                result.success(identifiers);
+            }
         }
-        return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, selection,
-                contactIdList.toArray(new String[contactIdList.size()]), null);
     }
 
-    private Cursor getCursorForPhone(String phone, boolean orderByGivenName) {
-        if (phone.isEmpty()) {
-            return null;
-        }
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class UpdateContactsTask extends AsyncTask<Void, Void, ArrayList<String>> {
 
-        Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI, Uri.encode(phone));
-        String[] projection = new String[]{BaseColumns._ID};
+        private final List<Contact> contacts;
+        private final List<Contact> baselines;
+        private final Result result;
+        private HashMap<String, Object> errorDetails;
 
-        ArrayList<String> contactIds = new ArrayList<>();
-        Cursor phoneCursor = contentResolver.query(uri, projection, null, null, null);
-        while (phoneCursor != null && phoneCursor.moveToNext()) {
-            contactIds.add(phoneCursor.getString(phoneCursor.getColumnIndex(BaseColumns._ID)));
-        }
-        if (phoneCursor != null) {
-            phoneCursor.close();
+        UpdateContactsTask(List<Contact> contacts, List<Contact> baselines, Result result) {
+            this.contacts = contacts;
+            this.baselines = baselines;
+            this.result = result;
         }
 
-        if (!contactIds.isEmpty()) {
-            String contactIdsListString = contactIds.toString().replace("[", "(").replace("]", ")");
-            String contactSelection = ContactsContract.Data.CONTACT_ID + " IN " + contactIdsListString;
-            if (orderByGivenName) {
-                return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, contactSelection, null, ORDER_BY_FIELD);
-
+        @Override
+        protected ArrayList<String> doInBackground(Void... params) {
+            try {
+                return updateContacts(contacts, baselines);
+            } catch (BatchCommitException e) {
+                Log.e(LOG_TAG, "Exception encountered while updating contacts: ");
+                e.printStackTrace();
+                errorDetails = e.details;
+                return null;
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while updating contacts: ");
+                e.printStackTrace();
+                return null;
             }
-            return contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION, contactSelection, null, null);
         }
 
-        return null;
+        @Override
+        protected void onPostExecute(ArrayList<String> notFound) {
+            forgetInFlightReads();
+            if (notFound == null) {
+                result.error(null, "Failed to update the contacts, some may have been modified since they were read."
+                        + " The details list the ones updated", errorDetails);
+            } else {
+                result.success(notFound);
+            }
+        }
     }
 
-    private ArrayList<Contact> getContactsSummary(List<String> lookupKeyList, boolean orderByGivenName) {
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class DeleteContactsTask extends AsyncTask<Void, Void, ArrayList<String>> {
 
-        List<String> contactIdList = new ArrayList<>();
-        if (lookupKeyList != null && lookupKeyList.size() > 0) {
-            for (String lookupKey : lookupKeyList) {
-                String contactId = getContactIdFromLookupKey(lookupKey);
-                if (contactId != null) {
-                    contactIdList.add(contactId);
-                }
-            }
-        }
+        private final List<String> lookupKeys;
+        private final Result result;
 
-        if (contactIdList.size() == 0) {
-            return new ArrayList<Contact>();
+        DeleteContactsTask(List<String> lookupKeys, Result result) {
+            this.lookupKeys = lookupKeys;
+            this.result = result;
         }
 
-        String selectionString = "";
+        @Override
+        protected ArrayList<String> doInBackground(Void... params) {
+            try {
+                return deleteContactsByIdentifiers(lookupKeys);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while deleting contacts by identifiers: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
 
-        for (String i : contactIdList) {
-            selectionString += "?,";
+        @Override
+        protected void onPostExecute(ArrayList<String> notFound) {
+            forgetInFlightReads();
+            if (notFound == null) {
+                result.error(null, "Failed to delete the contacts, make sure they have valid identifiers", null);
+            } else {
+                result.success(notFound);
+            }
         }
+    }
 
-        String selection = ContactsContract.Data.CONTACT_ID + " IN (" + selectionString.substring(0, selectionString.length() - 1) + ")";
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class ImportVCardTask extends AsyncTask<Void, Integer, Integer> {
 
-        Cursor cursor = null;
-        if (orderByGivenName) {
-            cursor = contentResolver.query(ContactsContract.Data.CONTENT_URI, SUMMARY_PROJECTION, selection,
-                    contactIdList.toArray(new String[contactIdList.size()]), ORDER_BY_FIELD);
-//            cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, SUMMARY_PROJECTION, selection, contactIdList.toArray(new String[contactIdList.size()]), ORDER_BY_FIELD);
-        } else {
-            cursor = contentResolver.query(ContactsContract.Data.CONTENT_URI, SUMMARY_PROJECTION, selection,
-                    contactIdList.toArray(new String[contactIdList.size()]), null);
-//            cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, SUMMARY_PROJECTION, selection, contactIdList.toArray(new String[contactIdList.size()]), null);
+        private final String path;
+        private final Result result;
+
+        ImportVCardTask(String path, Result result) {
+            this.path = path;
+            this.result = result;
         }
 
-        if (cursor != null && cursor.getCount() > 0) {
-            ArrayList<Contact> list = new ArrayList<>();
-            while (cursor != null && cursor.moveToNext()) {
-                String lookupKey = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY));
-                Contact contact = new Contact(lookupKey);
-                contact.displayName = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME));
-                list.add(contact);
+        @Override
+        protected Integer doInBackground(Void... params) {
+            try {
+                return importVCard(path, this);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while importing vCard: ");
+                e.printStackTrace();
+                return null;
             }
-            if (cursor != null) {
-                cursor.close();
+        }
+
+        void onBatchApplied(int count) {
+            publishProgress(count);
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... counts) {
+            sendProgress(importVCardMethod, counts[0]);
+        }
+
+        @Override
+        protected void onPostExecute(Integer count) {
+            forgetInFlightReads();
+            if (count == null) {
+                result.error(null, "Failed to import the vCard file", null);
+            } else {
+                sendProgress(importVCardMethod, count);
+                result.success(count);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class ExportVCardTask extends AsyncTask<Void, Integer, Integer> {
+
+        private final String path;
+        private final List<String> lookupKeys;
+        private final boolean withPhotos;
+        private final Result result;
+
+        ExportVCardTask(String path, List<String> lookupKeys, boolean withPhotos, Result result) {
+            this.path = path;
+            this.lookupKeys = lookupKeys;
+            this.withPhotos = withPhotos;
+            this.result = result;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            try {
+                return exportVCard(path, lookupKeys, withPhotos, this);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while exporting vCard: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        void onChunkWritten(int count) {
+            publishProgress(count);
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... counts) {
+            sendProgress(exportVCardMethod, counts[0]);
+        }
+
+        @Override
+        protected void onPostExecute(Integer count) {
+            if (count == null) {
+                result.error(null, "Failed to export the vCard file", null);
+            } else {
+                result.success(count);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class FindDuplicatesTask extends AsyncTask<Void, Void, ArrayList<HashMap>> {
+
+        private final Result result;
+
+        FindDuplicatesTask(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        protected ArrayList<HashMap> doInBackground(Void... params) {
+            try {
+                ArrayList<HashMap> clusters = new ArrayList<>();
+                for (DuplicateFinder.Cluster cluster : findDuplicates()) {
+                    HashMap<String, Object> map = new HashMap<>();
+                    map.put("identifiers", cluster.identifiers);
+                    map.put("reasons", cluster.reasons);
+                    clusters.add(map);
+                }
+                return clusters;
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while finding duplicates: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<HashMap> clusters) {
+            if (clusters == null) {
+                result.error(null, "Failed to find the duplicate contacts", null);
+            } else {
+                result.success(clusters);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class GetFingerprintsTask extends AsyncTask<Void, Void, HashMap<String, Long>> {
+
+        private final Result result;
+
+        GetFingerprintsTask(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        protected HashMap<String, Long> doInBackground(Void... params) {
+            try {
+                return getContactFingerprints();
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while fingerprinting contacts: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(HashMap<String, Long> fingerprints) {
+            if (fingerprints == null) {
+                result.error(null, "Failed to fingerprint the contacts", null);
+            } else {
+                result.success(fingerprints);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class GetSectionIndexTask extends AsyncTask<Void, Void, SectionIndex> {
+
+        private final Result result;
+
+        GetSectionIndexTask(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        protected SectionIndex doInBackground(Void... params) {
+            try {
+                return getSectionIndex();
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while indexing contacts: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(SectionIndex index) {
+            if (index == null) {
+                result.error(null, "Failed to index the contacts", null);
+            } else {
+                result.success(index.toMap());
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class GetContactCountTask extends AsyncTask<Void, Void, Integer> {
+
+        private final String accountType;
+        private final String accountName;
+        private final boolean hasPhoneNumber;
+        private final Result result;
+
+        GetContactCountTask(String accountType, String accountName, boolean hasPhoneNumber, Result result) {
+            this.accountType = accountType;
+            this.accountName = accountName;
+            this.hasPhoneNumber = hasPhoneNumber;
+            this.result = result;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            try {
+                return getContactCount(accountType, accountName, hasPhoneNumber);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while counting contacts: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Integer count) {
+            if (count == null) {
+                result.error(null, "Failed to count the contacts", null);
+            } else {
+                result.success(count);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class MatchPhoneHashesTask extends AsyncTask<Void, Void, ArrayList<String>> {
+
+        private final byte[] hashes;
+        private final String salt;
+        private final Result result;
+
+        MatchPhoneHashesTask(byte[] hashes, String salt, Result result) {
+            this.hashes = hashes;
+            this.salt = salt;
+            this.result = result;
+        }
+
+        @Override
+        protected ArrayList<String> doInBackground(Void... params) {
+            try {
+                return matchPhoneHashes(hashes, salt);
+            } catch (Exception e) {
+                Log.e(LOG_TAG, "Exception encountered while matching phone hashes: ");
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<String> lookupKeys) {
+            if (lookupKeys == null) {
+                result.error(null, "Failed to match the phone hashes", null);
+            } else {
+                result.success(lookupKeys);
+            }
+        }
+    }
+
+    /**
+     * Reports how many contacts a long running method has processed so far, on the platform thread
+     */
+    private void sendProgress(String method, int count) {
+        if (progressSink != null) {
+            HashMap<String, Object> progress = new HashMap<>();
+            progress.put("method", method);
+            progress.put("count", count);
+            progressSink.success(progress);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.CUPCAKE)
+    private class GetLookupKeysTask extends AsyncTask<Object, Void, HashMap> {
+
+        private Result getContactResult;
+
+        public GetLookupKeysTask(MethodChannel.Result result) {
+            this.getContactResult = result;
+        }
+
+        @TargetApi(Build.VERSION_CODES.ECLAIR)
+        protected HashMap doInBackground(Object... params) {
+            lookupKeyIndex.update(contentResolver);
+            long start = System.nanoTime();
+            HashMap<String, Object> lookupKeysMap = lookupKeyIndex.toMap();
+            CallMetrics call = currentCall.get();
+            if (call != null) {
+                call.addSerialization(System.nanoTime() - start, lookupKeysMap);
+            }
+            return lookupKeysMap;
+        }
+
+        protected void onPostExecute(HashMap result) {
+            if (result == null) {
+                getContactResult.notImplemented();
+            } else {
+                getContactResult.success(result);
+            }
+        }
+    }
+
+    /**
+     * Sorts the contacts for the user's locale, computing the collation keys on a pool sized to the
+     * device cores. The contacts are left in the provider order when the sort fails.
+     */
+    private void sortContacts(List<Contact> contacts, String sortOrder) {
+        tracer.beginSection("sortContacts");
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            new ContactSorter(sortOrder, Locale.getDefault()).sort(contacts, pool, parallelism);
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Exception encountered while sorting contacts: ");
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+            tracer.endSection();
+        }
+    }
+
+    private Cursor getCursor(String lookupKey, boolean orderByGivenName) {
+        tracer.beginSection("getCursor");
+        try {
+            if (lookupKey == null) {
+                //retrieve all contacts
+                if (orderByGivenName) {
+                    return queryData(PROJECTION, null, null, ORDER_BY_FIELD);
+                } else {
+                    return queryData(PROJECTION, null, null, null);
+                }
+            } else {
+                //get contact with lookup key
+
+                String contactId = getContactIdFromLookupKey(lookupKey);
+
+                if (contactId != null) {
+                    String selection = ContactsContract.Data.CONTACT_ID + " = ? ";
+                    ArrayList<String> selectionArgs = new ArrayList<>();
+                    selectionArgs.add(contactId);
+
+                    return queryData(PROJECTION, selection, selectionArgs.toArray(new String[selectionArgs.size()]), null);
+                }
+            }
+            return null;
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    Cursor getCursorForContactIdentifiers(List<String> lookupKeyList, boolean orderByGivenName) {
+        tracer.beginSection("getCursorForContactIdentifiers");
+        try {
+            List<String> contactIdList = new ArrayList<>();
+            if (lookupKeyList != null && lookupKeyList.size() > 0) {
+                for (String lookupKey : lookupKeyList) {
+                    String contactId = getContactIdFromLookupKey(lookupKey);
+                    if (contactId != null) {
+                        contactIdList.add(contactId);
+                    }
+                }
+            }
+
+            if (contactIdList.size() == 0) {
+                return null;
+            }
+
+            String selectionString = "";
+
+            for (String i : contactIdList) {
+                selectionString += "?,";
+            }
+
+            String selection = ContactsContract.Data.CONTACT_ID + " IN (" + selectionString.substring(0, selectionString.length() - 1) + ")";
+
+            if (orderByGivenName) {
+                return queryData(PROJECTION, selection, contactIdList.toArray(new String[contactIdList.size()]), ORDER_BY_FIELD);
+            }
+            return queryData(PROJECTION, selection, contactIdList.toArray(new String[contactIdList.size()]), null);
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    private Cursor getCursorForPhone(String phone, boolean orderByGivenName) {
+        tracer.beginSection("getCursorForPhone");
+        try {
+            if (phone.isEmpty()) {
+                return null;
+            }
+
+            Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI, Uri.encode(phone));
+            String[] projection = new String[]{BaseColumns._ID};
+
+            ArrayList<String> contactIds = new ArrayList<>();
+            Cursor phoneCursor = query(uri, projection, null, null, null);
+            while (phoneCursor != null && phoneCursor.moveToNext()) {
+                contactIds.add(phoneCursor.getString(phoneCursor.getColumnIndex(BaseColumns._ID)));
+            }
+            if (phoneCursor != null) {
+                phoneCursor.close();
+            }
+
+            if (!contactIds.isEmpty()) {
+                String contactIdsListString = contactIds.toString().replace("[", "(").replace("]", ")");
+                String contactSelection = ContactsContract.Data.CONTACT_ID + " IN " + contactIdsListString;
+                if (orderByGivenName) {
+                    return queryData(PROJECTION, contactSelection, null, ORDER_BY_FIELD);
+
+                }
+                return queryData(PROJECTION, contactSelection, null, null);
+            }
+
+            return null;
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    ArrayList<Contact> getContactsSummary(List<String> lookupKeyList, boolean orderByGivenName) {
+        return getContactsSummary(lookupKeyList, orderByGivenName, false);
+    }
+
+    /**
+     * One summary per contact, read from the Contacts table rather than from every data row of the
+     * contacts, with one query per {@link #MAX_SELECTION_ARGS} lookup keys. With names, one more
+     * StructuredName query fills in the name fields.
+     *
+     * @param lookupKeyList the contacts to summarize, null for all of them
+     * @param orderByGivenName display name order, otherwise the order of the lookup keys
+     */
+    ArrayList<Contact> getContactsSummary(List<String> lookupKeyList, boolean orderByGivenName, boolean withNames) {
+        if (!withNames) {
+            ArrayList<Contact> cached = cache.getSummaries(lookupKeyList, orderByGivenName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        tracer.beginSection("getContactsSummary");
+        try {
+            // contact id to summary, a contact reachable by several lookup keys is listed once
+            LinkedHashMap<String, Contact> byContactId = new LinkedHashMap<>();
+            if (lookupKeyList == null) {
+                readSummaries(null, null, orderByGivenName ? ORDER_BY_FIELD : null, byContactId);
+            } else {
+                byContactId = readRequestedSummaries(lookupKeyList);
+            }
+            if (withNames) {
+                readSummaryNames(lookupKeyList == null ? null : new ArrayList<>(byContactId.keySet()), byContactId);
+            }
+
+            ArrayList<Contact> summaries = new ArrayList<>(byContactId.values());
+            if (orderByGivenName && lookupKeyList != null) {
+                // the order of the provider's COLLATE NOCASE, the sort is stable
+                Collections.sort(summaries, new Comparator<Contact>() {
+                    @Override
+                    public int compare(Contact first, Contact second) {
+                        String firstName = first.displayName != null ? first.displayName : "";
+                        String secondName = second.displayName != null ? second.displayName : "";
+                        return String.CASE_INSENSITIVE_ORDER.compare(firstName, secondName);
+                    }
+                });
+            }
+            return summaries;
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * @return contact id to summary in the order of the lookup keys, keys which could not be
+     * resolved are absent
+     */
+    private LinkedHashMap<String, Contact> readRequestedSummaries(List<String> lookupKeys) {
+        Map<String, Contact> byContactId = new HashMap<>();
+        for (int start = 0; start < lookupKeys.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = lookupKeys.subList(start, Math.min(start + MAX_SELECTION_ARGS, lookupKeys.size()));
+            readSummaries(ContactsContract.Contacts.LOOKUP_KEY + " IN (" + makePlaceholders(chunk.size()) + ")",
+                    chunk.toArray(new String[chunk.size()]), null, byContactId);
+        }
+        Map<String, String> contactIdByLookupKey = new HashMap<>();
+        for (Map.Entry<String, Contact> entry : byContactId.entrySet()) {
+            contactIdByLookupKey.put(entry.getValue().identifier, entry.getKey());
+        }
+
+        // Lookup keys change when contacts get re-aggregated, the lookup uri still resolves those
+        List<String> staleContactIds = new ArrayList<>();
+        for (String lookupKey : lookupKeys) {
+            if (contactIdByLookupKey.containsKey(lookupKey)) {
+                continue;
+            }
+            String contactId = getContactIdFromLookupKey(lookupKey);
+            if (contactId != null) {
+                contactIdByLookupKey.put(lookupKey, contactId);
+                if (!byContactId.containsKey(contactId) && !staleContactIds.contains(contactId)) {
+                    staleContactIds.add(contactId);
+                }
+            }
+        }
+        for (int start = 0; start < staleContactIds.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = staleContactIds.subList(start, Math.min(start + MAX_SELECTION_ARGS, staleContactIds.size()));
+            readSummaries(_ID + " IN (" + makePlaceholders(chunk.size()) + ")",
+                    chunk.toArray(new String[chunk.size()]), null, byContactId);
+        }
+
+        LinkedHashMap<String, Contact> requested = new LinkedHashMap<>();
+        for (String lookupKey : lookupKeys) {
+            String contactId = contactIdByLookupKey.get(lookupKey);
+            Contact contact = contactId != null ? byContactId.get(contactId) : null;
+            if (contact != null && !requested.containsKey(contactId)) {
+                requested.put(contactId, contact);
+            }
+        }
+        return requested;
+    }
+
+    private void readSummaries(String selection, String[] selectionArgs, String orderBy, Map<String, Contact> byContactId) {
+        Cursor cursor = query(ContactsContract.Contacts.CONTENT_URI, SUMMARY_PROJECTION, selection, selectionArgs, orderBy);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                if (byContactId.containsKey(contactId)) {
+                    continue;
+                }
+                Contact contact = new Contact(cursor.getString(1));
+                contact.displayName = cursor.getString(2);
+                contact.photoThumbnailUri = cursor.getString(3);
+                byContactId.put(contactId, contact);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Fills in the name fields from the first StructuredName row of each contact
+     *
+     * @param contactIds the contacts to read the names of, null for all of them
+     */
+    private void readSummaryNames(List<String> contactIds, Map<String, Contact> byContactId) {
+        String selection = ContactsContract.Data.MIMETYPE + "=?";
+        if (contactIds == null) {
+            readSummaryNames(selection, new String[]{CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE}, byContactId);
+            return;
+        }
+        for (int start = 0; start < contactIds.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = contactIds.subList(start, Math.min(start + MAX_SELECTION_ARGS, contactIds.size()));
+            String[] selectionArgs = new String[chunk.size() + 1];
+            selectionArgs[0] = CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE;
+            for (int i = 0; i < chunk.size(); i++) {
+                selectionArgs[i + 1] = chunk.get(i);
+            }
+            readSummaryNames(selection + " AND " + ContactsContract.Data.CONTACT_ID + " IN (" + makePlaceholders(chunk.size()) + ")",
+                    selectionArgs, byContactId);
+        }
+    }
+
+    private void readSummaryNames(String selection, String[] selectionArgs, Map<String, Contact> byContactId) {
+        Cursor cursor = queryData(SUMMARY_NAME_PROJECTION, selection, selectionArgs, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            Set<String> named = new HashSet<>();
+            while (cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                Contact contact = byContactId.get(contactId);
+                if (contact == null || !named.add(contactId)) {
+                    continue;
+                }
+                contact.givenName = cursor.getString(1);
+                contact.middleName = cursor.getString(2);
+                contact.familyName = cursor.getString(3);
+                contact.prefix = cursor.getString(4);
+                contact.suffix = cursor.getString(5);
+                contact.phoneticGivenName = cursor.getString(6);
+                contact.phoneticMiddleName = cursor.getString(7);
+                contact.phoneticFamilyName = cursor.getString(8);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Queries the data rows, restricted to the accounts of the policy when it applies to reads so
+     * that the provider only scans the rows of those accounts
+     */
+    private Cursor queryData(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return queryAllowed(ContactsContract.Data.CONTENT_URI, projection, selection, selectionArgs, sortOrder);
+    }
+
+    /**
+     * Queries the rows of a table having the RawContacts account columns, keeping those of the
+     * accounts the policy allows when it filters the reads
+     */
+    private Cursor queryAllowed(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        AccountPolicy policy = accountPolicy;
+        if (filtersReads(policy)) {
+            selection = selection == null ? policy.selection : "(" + selection + ") AND " + policy.selection;
+            if (selectionArgs == null) {
+                selectionArgs = policy.selectionArgs;
+            } else {
+                String[] args = Arrays.copyOf(selectionArgs, selectionArgs.length + policy.selectionArgs.length);
+                System.arraycopy(policy.selectionArgs, 0, args, selectionArgs.length, policy.selectionArgs.length);
+                selectionArgs = args;
             }
-            return list;
         }
-        return new ArrayList<Contact>();
+        return query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    private static boolean filtersReads(AccountPolicy policy) {
+        return policy.filterReads && policy.selection != null;
     }
 
     private Cursor getCursorForIdentifiers(boolean orderByGivenName) {
-        String[] projection = new String[]{ContactsContract.Contacts.LOOKUP_KEY};
-        if (orderByGivenName) {
-            return contentResolver.query(ContactsContract.Contacts.CONTENT_URI, projection, null, null, ORDER_BY_FIELD);
+        tracer.beginSection("getCursorForIdentifiers");
+        try {
+            String[] projection = new String[]{ContactsContract.Contacts.LOOKUP_KEY};
+            if (orderByGivenName) {
+                return query(ContactsContract.Contacts.CONTENT_URI, projection, null, null, ORDER_BY_FIELD);
+            }
+            return query(ContactsContract.Contacts.CONTENT_URI, projection, null, null, null);
+        } finally {
+            tracer.endSection();
         }
-        return contentResolver.query(ContactsContract.Contacts.CONTENT_URI, projection, null, null, null);
     }
 
-    private ArrayList<Contact> getContactsFrom(Cursor cursor) {
+    ArrayList<Contact> getContactsFrom(Cursor cursor) {
         return getContactsFrom(cursor, false);
     }
 
@@ -772,142 +1908,290 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
      * @return the list of contacts
      */
     private ArrayList<Contact> getContactsFrom(Cursor cursor, boolean summaryFields) {
-        HashMap<String, Contact> map = new LinkedHashMap<>();
+        tracer.beginSection("getContactsFrom");
+        try {
+            HashMap<String, Contact> map = new LinkedHashMap<>();
 
-        if (cursor != null && cursor.getCount() > 0) {
-            cursor.moveToPosition(-1);
-        } else {
+            if (cursor != null && cursor.getCount() > 0) {
+                cursor.moveToPosition(-1);
+            } else {
+                return new ArrayList<>(map.values());
+            }
+
+            DataRow row = new CursorDataRow(cursor);
+            while (cursor != null && cursor.moveToNext()) {
+                int columnIndex = cursor.getColumnIndex(ContactsContract.Data.LOOKUP_KEY);
+                String lookupKey = cursor.getString(columnIndex);
+
+                if (!map.containsKey(lookupKey)) {
+                    map.put(lookupKey, new Contact(lookupKey));
+                }
+                Contact contact = map.get(lookupKey);
+
+                decodeRow(cursor, row, contact, summaryFields);
+            }
+
+            if (cursor != null) {
+                cursor.close();
+            }
+
+            CallMetrics call = currentCall.get();
+            if (call != null) {
+                call.addContactsDecoded(map.size());
+            }
             return new ArrayList<>(map.values());
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * The first step of a bounded memory read: the ids of the contacts to read, which Dart then
+     * reads a window at a time with {@link #writeContactWindow}. The lookup keys are resolved with
+     * one query per {@link #MAX_SELECTION_ARGS} keys.
+     *
+     * @param lookupKeys null for all contacts
+     * @return the ids of the contacts, once each, in contact id order or in display name then
+     * contact id order
+     */
+    long[] getContactWindowIds(List<String> lookupKeys, boolean orderByName) {
+        tracer.beginSection("getContactWindowIds");
+        try {
+            Set<String> requested = null;
+            String selection = null;
+            String[] selectionArgs = null;
+            if (lookupKeys != null) {
+                requested = new HashSet<>();
+                for (StoredContact stored : resolveLookupKeys(lookupKeys).values()) {
+                    requested.add(stored.contactId);
+                }
+                if (requested.isEmpty()) {
+                    return new long[0];
+                }
+                // above that the provider orders all contacts and the requested ones are kept
+                if (requested.size() <= MAX_SELECTION_ARGS) {
+                    selection = _ID + " IN (" + makePlaceholders(requested.size()) + ")";
+                    selectionArgs = requested.toArray(new String[requested.size()]);
+                }
+            }
+            Cursor cursor = query(ContactsContract.Contacts.CONTENT_URI, new String[]{_ID}, selection, selectionArgs,
+                    orderByName ? CONTACTS_WINDOW_ORDER_BY_FIELD : _ID);
+            if (cursor == null) {
+                return new long[0];
+            }
+            long[] contactIds = new long[requested != null ? requested.size() : cursor.getCount()];
+            int count = 0;
+            try {
+                while (cursor.moveToNext() && count < contactIds.length) {
+                    if (requested == null || requested.contains(cursor.getString(0))) {
+                        contactIds[count++] = cursor.getLong(0);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return count == contactIds.length ? contactIds : Arrays.copyOf(contactIds, count);
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Encodes the contacts with the given ids, a window of the ids returned by {@link #getContactWindowIds},
+     * in the same order. Only the rows of {@link #MAX_SELECTION_ARGS} contacts are read at a time.
+     */
+    void writeContactWindow(long[] contactIds, ContactStreamWriter writer, boolean withThumbnails,
+                            boolean photoHighResolution, boolean orderByName) {
+        String sortOrder = orderByName ? WINDOW_ORDER_BY_FIELD : ContactsContract.Data.CONTACT_ID;
+        for (int start = 0; start < contactIds.length; start += MAX_SELECTION_ARGS) {
+            int end = Math.min(start + MAX_SELECTION_ARGS, contactIds.length);
+            String[] selectionArgs = new String[end - start];
+            for (int i = start; i < end; i++) {
+                selectionArgs[i - start] = String.valueOf(contactIds[i]);
+            }
+            String selection = ContactsContract.Data.CONTACT_ID + " IN (" + makePlaceholders(selectionArgs.length) + ")";
+            writeContactsFrom(queryData(PROJECTION, selection, selectionArgs, sortOrder), writer, withThumbnails,
+                    photoHighResolution);
+        }
+    }
+
+    /**
+     * Decodes the contacts of a cursor ordered so that the rows of each contact are next to each
+     * other, encoding each contact as soon as its last row is read. Only one contact is decoded at a
+     * time whatever the size of the address book.
+     */
+    void writeContactsFrom(Cursor cursor, ContactStreamWriter writer, boolean withThumbnails, boolean photoHighResolution) {
+        tracer.beginSection("writeContactsFrom");
+        long serializationNanos = 0;
+        int countBefore = writer.getCount();
+        int sizeBefore = writer.size();
+        try {
+            if (cursor == null) {
+                return;
+            }
+            DataRow row = new CursorDataRow(cursor);
+            int contactIdColumn = cursor.getColumnIndex(ContactsContract.Data.CONTACT_ID);
+            int lookupKeyColumn = cursor.getColumnIndex(ContactsContract.Data.LOOKUP_KEY);
+            long contactId = -1;
+            Contact contact = null;
+            while (cursor.moveToNext()) {
+                long rowContactId = cursor.getLong(contactIdColumn);
+                if (contact == null || rowContactId != contactId) {
+                    if (contact != null) {
+                        serializationNanos += writeContact(contact, writer, withThumbnails, photoHighResolution);
+                    }
+                    contactId = rowContactId;
+                    contact = new Contact(cursor.getString(lookupKeyColumn));
+                }
+                decodeRow(cursor, row, contact, false);
+            }
+            if (contact != null) {
+                serializationNanos += writeContact(contact, writer, withThumbnails, photoHighResolution);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            CallMetrics call = currentCall.get();
+            if (call != null) {
+                call.addContactsDecoded(writer.getCount() - countBefore);
+                call.addEncodedPayload(serializationNanos, writer.size() - sizeBefore);
+            }
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * @return the time spent encoding the contact
+     */
+    private long writeContact(Contact contact, ContactStreamWriter writer, boolean withThumbnails, boolean photoHighResolution) {
+        if (withThumbnails) {
+            byte[] avatar = loadContactPhotoHighRes(contact.identifier, photoHighResolution, contentResolver);
+            // To stay backwards-compatible, return an empty byte array rather than `null`.
+            contact.avatar = avatar != null ? avatar : new byte[0];
         }
+        long start = System.nanoTime();
+        writer.write(contact.toMap());
+        return System.nanoTime() - start;
+    }
 
-        while (cursor != null && cursor.moveToNext()) {
-            int columnIndex = cursor.getColumnIndex(ContactsContract.Data.LOOKUP_KEY);
-            String lookupKey = cursor.getString(columnIndex);
-
-            if (!map.containsKey(lookupKey)) {
-                map.put(lookupKey, new Contact(lookupKey));
-            }
-            Contact contact = map.get(lookupKey);
+    /**
+     * Adds the values of the data row the cursor is on to the contact
+     */
+    private void decodeRow(Cursor cursor, DataRow row, Contact contact, boolean summaryFields) {
+        contact.displayName = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME));
+        String mimeType = cursor.getString(cursor.getColumnIndex(ContactsContract.Data.MIMETYPE));
+
+        //NAMES
+        if (mimeType.equals(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE)) {
+            contact.givenName = cursor.getString(cursor.getColumnIndex(StructuredName.GIVEN_NAME));
+            contact.middleName = cursor.getString(cursor.getColumnIndex(StructuredName.MIDDLE_NAME));
+            contact.familyName = cursor.getString(cursor.getColumnIndex(StructuredName.FAMILY_NAME));
+            contact.prefix = cursor.getString(cursor.getColumnIndex(StructuredName.PREFIX));
+            contact.suffix = cursor.getString(cursor.getColumnIndex(StructuredName.SUFFIX));
+        }
 
-            contact.identifier = lookupKey;
-            contact.displayName = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME));
-            String mimeType = cursor.getString(cursor.getColumnIndex(ContactsContract.Data.MIMETYPE));
+        if (!summaryFields) {
+            contact.androidAccountType = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE));
+            contact.androidAccountName = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME));
+            contact.androidRawContactVersions.put(cursor.getString(cursor.getColumnIndex(ContactsContract.Data.RAW_CONTACT_ID)),
+                    cursor.getLong(cursor.getColumnIndex(ContactsContract.RawContacts.VERSION)));
 
-            //NAMES
             if (mimeType.equals(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE)) {
-                contact.givenName = cursor.getString(cursor.getColumnIndex(StructuredName.GIVEN_NAME));
-                contact.middleName = cursor.getString(cursor.getColumnIndex(StructuredName.MIDDLE_NAME));
-                contact.familyName = cursor.getString(cursor.getColumnIndex(StructuredName.FAMILY_NAME));
-                contact.prefix = cursor.getString(cursor.getColumnIndex(StructuredName.PREFIX));
-                contact.suffix = cursor.getString(cursor.getColumnIndex(StructuredName.SUFFIX));
+                contact.phoneticGivenName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_GIVEN_NAME));
+                contact.phoneticMiddleName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_MIDDLE_NAME));
+                contact.phoneticFamilyName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_FAMILY_NAME));
+                contact.phoneticName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_NAME));
             }
-
-            if (!summaryFields) {
-                contact.androidAccountType = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE));
-                contact.androidAccountName = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME));
-
-                if (mimeType.equals(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE)) {
-                    contact.phoneticGivenName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_GIVEN_NAME));
-                    contact.phoneticMiddleName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_MIDDLE_NAME));
-                    contact.phoneticFamilyName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_FAMILY_NAME));
-                    contact.phoneticName = cursor.getString(cursor.getColumnIndex(StructuredName.PHONETIC_NAME));
-                }
-                //NICK NAME
-                if (mimeType.equals(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE)) {
-                    contact.nickname = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Nickname.NAME));
-                }
-                // SIP
-                else if (mimeType.equals(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE)) {
-                    contact.sip = cursor.getString(cursor.getColumnIndex(CommonDataKinds.SipAddress.SIP_ADDRESS));
-                }
-                // NOTE
-                else if (mimeType.equals(CommonDataKinds.Note.CONTENT_ITEM_TYPE)) {
-                    contact.note = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Note.NOTE));
-                }
-                //PHONES
-                else if (mimeType.equals(CommonDataKinds.Phone.CONTENT_ITEM_TYPE)) {
-                    String phoneNumber = cursor.getString(cursor.getColumnIndex(Phone.NUMBER));
-                    String accountType = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE));
-                    if (!TextUtils.isEmpty(phoneNumber)) {
-                        int type = cursor.getInt(cursor.getColumnIndex(Phone.TYPE));
-                        String label = Item.getPhoneLabel(type, cursor);
-                        contact.phones.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), label, phoneNumber, accountType));
-                    }
-                }
-                //MAILS
-                else if (mimeType.equals(CommonDataKinds.Email.CONTENT_ITEM_TYPE)) {
-                    String email = cursor.getString(cursor.getColumnIndex(Email.ADDRESS));
-                    int type = cursor.getInt(cursor.getColumnIndex(Email.TYPE));
-                    if (!TextUtils.isEmpty(email)) {
-                        contact.emails.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getEmailLabel(type, cursor), email));
-                    }
-                }
-                //ORG
-                else if (mimeType.equals(CommonDataKinds.Organization.CONTENT_ITEM_TYPE)) {
-                    contact.company = cursor.getString(cursor.getColumnIndex(Organization.COMPANY));
-                    contact.jobTitle = cursor.getString(cursor.getColumnIndex(Organization.TITLE));
-                    contact.department = cursor.getString(cursor.getColumnIndex(Organization.DEPARTMENT));
+            //NICK NAME
+            if (mimeType.equals(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE)) {
+                contact.nickname = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Nickname.NAME));
+            }
+            // SIP
+            else if (mimeType.equals(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE)) {
+                contact.sip = cursor.getString(cursor.getColumnIndex(CommonDataKinds.SipAddress.SIP_ADDRESS));
+            }
+            // NOTE
+            else if (mimeType.equals(CommonDataKinds.Note.CONTENT_ITEM_TYPE)) {
+                contact.note = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Note.NOTE));
+            }
+            //PHONES
+            else if (mimeType.equals(CommonDataKinds.Phone.CONTENT_ITEM_TYPE)) {
+                String phoneNumber = cursor.getString(cursor.getColumnIndex(Phone.NUMBER));
+                String accountType = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE));
+                if (!TextUtils.isEmpty(phoneNumber)) {
+                    int type = cursor.getInt(cursor.getColumnIndex(Phone.TYPE));
+                    String label = Item.getPhoneLabel(type, row);
+                    contact.phones.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), label, phoneNumber, accountType));
                 }
-                //ADDRESSES
-                else if (mimeType.equals(CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE)) {
-                    contact.postalAddresses.add(new PostalAddress(cursor));
+            }
+            //MAILS
+            else if (mimeType.equals(CommonDataKinds.Email.CONTENT_ITEM_TYPE)) {
+                String email = cursor.getString(cursor.getColumnIndex(Email.ADDRESS));
+                int type = cursor.getInt(cursor.getColumnIndex(Email.TYPE));
+                if (!TextUtils.isEmpty(email)) {
+                    contact.emails.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getEmailLabel(type, row), email));
                 }
-                // BIRTHDAY/EVENTS(DATES)
-                else if (mimeType.equals(CommonDataKinds.Event.CONTENT_ITEM_TYPE)) {
-                    String date = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Event.START_DATE));
-                    int eventType = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Event.TYPE));
-                    if (eventType == CommonDataKinds.Event.TYPE_BIRTHDAY) {
-                        contact.birthday = date;
-                    } else {
-                        contact.dates.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getDatesLabel(eventType, cursor),
-                                date));
-                    }
+            }
+            //ORG
+            else if (mimeType.equals(CommonDataKinds.Organization.CONTENT_ITEM_TYPE)) {
+                contact.company = cursor.getString(cursor.getColumnIndex(Organization.COMPANY));
+                contact.jobTitle = cursor.getString(cursor.getColumnIndex(Organization.TITLE));
+                contact.department = cursor.getString(cursor.getColumnIndex(Organization.DEPARTMENT));
+            }
+            //ADDRESSES
+            else if (mimeType.equals(CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE)) {
+                contact.postalAddresses.add(new PostalAddress(row));
+            }
+            // BIRTHDAY/EVENTS(DATES)
+            else if (mimeType.equals(CommonDataKinds.Event.CONTENT_ITEM_TYPE)) {
+                String date = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Event.START_DATE));
+                int eventType = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Event.TYPE));
+                if (eventType == CommonDataKinds.Event.TYPE_BIRTHDAY) {
+                    contact.birthday = date;
+                } else {
+                    contact.dates.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getDatesLabel(eventType, row),
+                            date));
                 }
-                //INSTANT MESSAGE ADDRESSES / Im
-                else if (mimeType.equals(CommonDataKinds.Im.CONTENT_ITEM_TYPE)) {
-                    String im = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Im.DATA));
-                    int protocol = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Im.PROTOCOL));
-                    if (!TextUtils.isEmpty(im)) {
-                        contact.instantMessageAddresses.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)),
-                                Item.getInstantMessageAddressLabel(protocol, cursor), im));
-                    }
+            }
+            //INSTANT MESSAGE ADDRESSES / Im
+            else if (mimeType.equals(CommonDataKinds.Im.CONTENT_ITEM_TYPE)) {
+                String im = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Im.DATA));
+                int protocol = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Im.PROTOCOL));
+                if (!TextUtils.isEmpty(im)) {
+                    contact.instantMessageAddresses.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)),
+                            Item.getInstantMessageAddressLabel(protocol, row), im));
                 }
-                //RELATIONS
-                else if (mimeType.equals(CommonDataKinds.Relation.CONTENT_ITEM_TYPE)) {
-                    String relation = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Relation.NAME));
-                    int type = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Relation.TYPE));
-                    if (!TextUtils.isEmpty(relation)) {
-                        contact.relations.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getRelationLabel(type,
-                                cursor), relation));
-                    }
+            }
+            //RELATIONS
+            else if (mimeType.equals(CommonDataKinds.Relation.CONTENT_ITEM_TYPE)) {
+                String relation = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Relation.NAME));
+                int type = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Relation.TYPE));
+                if (!TextUtils.isEmpty(relation)) {
+                    contact.relations.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getRelationLabel(type,
+                            row), relation));
                 }
-                //WEBSITES
-                else if (mimeType.equals(CommonDataKinds.Website.CONTENT_ITEM_TYPE)) {
-                    String url = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Website.URL));
-                    int type = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Website.TYPE));
-                    if (!TextUtils.isEmpty(url)) {
-                        contact.websites.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getWebsiteLabel(type,
-                                cursor), url));
-                    }
+            }
+            //WEBSITES
+            else if (mimeType.equals(CommonDataKinds.Website.CONTENT_ITEM_TYPE)) {
+                String url = cursor.getString(cursor.getColumnIndex(CommonDataKinds.Website.URL));
+                int type = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Website.TYPE));
+                if (!TextUtils.isEmpty(url)) {
+                    contact.websites.add(new Item(cursor.getString(cursor.getColumnIndex(BaseColumns._ID)), Item.getWebsiteLabel(type,
+                            row), url));
                 }
-                //LABELS
-                else if (mimeType.equals(CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE)) {
-                    String groupId = cursor.getString(cursor.getColumnIndex(CommonDataKinds.GroupMembership.DATA1));
-                    if (!TextUtils.isEmpty(groupId)) {
-                        ArrayList<String> groupTitle = getLabelGroupTitle(groupId);
-                        if (groupTitle.size() > 0) {
-                            contact.labels.addAll(groupTitle);
-                        }
+            }
+            //LABELS
+            else if (mimeType.equals(CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE)) {
+                String groupId = cursor.getString(cursor.getColumnIndex(CommonDataKinds.GroupMembership.DATA1));
+                if (!TextUtils.isEmpty(groupId)) {
+                    ArrayList<String> groupTitle = getLabelGroupTitle(groupId);
+                    if (groupTitle.size() > 0) {
+                        contact.labels.addAll(groupTitle);
                     }
                 }
             }
         }
-
-        if (cursor != null) {
-            cursor.close();
-        }
-
-        return new ArrayList<>(map.values());
     }
 
     private ArrayList<String> getContactIdentifiersFrom(Cursor cursor) {
@@ -926,7 +2210,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     private void setAvatarDataForContactIfAvailable(Contact contact) {
         Uri contactUri = ContentUris.withAppendedId(ContactsContract.Contacts.CONTENT_URI, Integer.parseInt(contact.identifier));
         Uri photoUri = Uri.withAppendedPath(contactUri, ContactsContract.Contacts.Photo.CONTENT_DIRECTORY);
-        Cursor avatarCursor = contentResolver.query(photoUri,
+        Cursor avatarCursor = query(photoUri,
                 new String[]{ContactsContract.Contacts.Photo.PHOTO}, null, null, null);
         if (avatarCursor != null && avatarCursor.moveToFirst()) {
             byte[] avatar = avatarCursor.getBlob(0);
@@ -942,7 +2226,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         new GetAvatarsTask(contact, highRes, contentResolver, result).executeOnExecutor(this.executor);
     }
 
-    private static class GetAvatarsTask extends AsyncTask<Void, Void, byte[]> {
+    private class GetAvatarsTask extends AsyncTask<Void, Void, byte[]> {
         final Contact contact;
         final boolean highRes;
         final ContentResolver contentResolver;
@@ -969,11 +2253,14 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
     }
 
-    private static byte[] loadContactPhotoHighRes(final String lookUpKey,
-                                                  final boolean photoHighResolution, final ContentResolver contentResolver) {
+    private byte[] loadContactPhotoHighRes(final String lookUpKey,
+                                           final boolean photoHighResolution, final ContentResolver contentResolver) {
+        tracer.beginSection("loadContactPhoto");
         try {
             final Uri uri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookUpKey);
+            long start = System.nanoTime();
             final InputStream input = ContactsContract.Contacts.openContactPhotoInputStream(contentResolver, uri, photoHighResolution);
+            recordProviderCall(start);
 
             if (input == null) return null;
 
@@ -988,6 +2275,8 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         } catch (final IOException ex) {
             Log.e(LOG_TAG, ex.getMessage());
             return null;
+        } finally {
+            tracer.endSection();
         }
     }
 
@@ -995,7 +2284,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         try {
             ArrayList<ContentProviderOperation> ops = getAddContactOperations(contact);
 
-            contentResolver.applyBatch(ContactsContract.AUTHORITY, ops);
+            applyBatch(ops);
 
             return true;
         } catch (Exception e) {
@@ -1005,29 +2294,65 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         }
     }
 
-    private String getLookupKeyFromContactId(String contactId) {
-        final String[] projection = new String[]{ContactsContract.Contacts.LOOKUP_KEY};
-        String selection = _ID + " = ?";
-        String[] selectionArgs = new String[]{contactId};
-        Cursor contactCursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, projection, selection, selectionArgs, null);
+    private String getContactIdFromLookupKey(String lookupKey) {
+
+        if (lookupKey == null || lookupKey.isEmpty()) {
+            return null;
+        }
+        ContactsCache.Index index = cache.getIndex();
+        if (index != null && index.contactIdByLookupKey.containsKey(lookupKey)) {
+            return index.contactIdByLookupKey.get(lookupKey);
+        }
+
+        final String[] projection = new String[]{_ID};
+        Uri lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey);
+        Uri uri = ContactsContract.Contacts.getLookupUri(contentResolver, lookupUri);
+
+        if (uri == null) {
+            return null;
+        }
+
+        Cursor contactCursor = query(uri, projection, null, null, null);
 
         if (contactCursor != null && contactCursor.getCount() > 0) {
             contactCursor.moveToPosition(0);
 
-            String lookupKey = contactCursor.getString(contactCursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY));
+            String contactId = contactCursor.getString(contactCursor.getColumnIndex(_ID));
             contactCursor.close();
-            return lookupKey;
+            return contactId;
         }
         return null;
     }
 
-    private String getContactIdFromLookupKey(String lookupKey) {
+    private String getNamedContactIdFromLookupKey(String lookupKey) {
+        final String[] projection = new String[]{ContactsContract.Contacts.NAME_RAW_CONTACT_ID};
+        Uri lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey);
+        Uri uri = ContactsContract.Contacts.getLookupUri(contentResolver, lookupUri);
 
-        if (lookupKey == null || lookupKey.isEmpty()) {
+        if (uri == null) {
             return null;
         }
 
-        final String[] projection = new String[]{_ID};
+        Cursor contactCursor = query(uri, projection, null, null, null);
+
+        if (contactCursor != null && contactCursor.getCount() > 0) {
+            contactCursor.moveToPosition(0);
+
+            String namedRawContactId = contactCursor.getString(contactCursor.getColumnIndex(ContactsContract.Contacts.NAME_RAW_CONTACT_ID));
+            contactCursor.close();
+            return namedRawContactId;
+        }
+        return null;
+    }
+
+    /*private String getRawContactIdFromLookupKey(String lookupKey) {
+     *//*
+        get all raw contacts by lookup
+            return first google raw contact id
+                if no google contact return getNamedContactIdFromLookupKey
+
+         *//*
+        final String[] projection = new String[]{ContactsContract.Contacts.NAME_RAW_CONTACT_ID};
         Uri lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey);
         Uri uri = ContactsContract.Contacts.getLookupUri(contentResolver, lookupUri);
 
@@ -1035,104 +2360,634 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
             return null;
         }
 
-        Cursor contactCursor = contentResolver.query(uri, projection, null, null, null);
+        Cursor contactCursor = query(uri, projection, null, null, null);
+
+        if (contactCursor != null && contactCursor.getCount() > 0) {
+            contactCursor.moveToPosition(0);
+
+            String namedRawContactId = contactCursor.getString(contactCursor.getColumnIndex(ContactsContract.Contacts.NAME_RAW_CONTACT_ID));
+            contactCursor.close();
+            return namedRawContactId;
+        }
+        return null;
+    }*/
+
+    /**
+     * Inserts the contact and resolves its lookup key with a single query
+     *
+     * @return the lookup key of the new contact, empty if it could not be inserted
+     */
+    private String addContactWithReturnIdentifier(Contact contact) {
+        try {
+            List<Contact> contacts = new ArrayList<>();
+            contacts.add(contact);
+            String lookupKey = addContacts(contacts).get(0);
+            if (lookupKey != null) {
+                return lookupKey;
+            }
+        } catch (Exception e) {
+            Log.e("TAG", "Exception encountered while inserting contact: ");
+            e.printStackTrace();
+        }
+        return "";
+    }
+
+    /**
+     * Inserts the contacts with as few batches as possible, never splitting a contact across two batches.
+     * The batches applied before a failing one stay committed.
+     *
+     * @return the lookup keys of the new contacts, in the order of the given list
+     * @throws BatchCommitException when a batch fails, with the number of contacts already added, the
+     *                              first ones of the list, under "addedCount" and their lookup keys in
+     *                              order under "added" unless those could not be read
+     */
+    private ArrayList<String> addContacts(List<Contact> contacts) throws BatchCommitException {
+        ContactBatchInserter inserter = new ContactBatchInserter(true);
+        try {
+            for (Contact contact : contacts) {
+                inserter.add(contact);
+            }
+            inserter.flush();
+        } catch (Exception e) {
+            HashMap<String, Object> details = new HashMap<>();
+            details.put("addedCount", inserter.rawContactIds.size());
+            try {
+                details.put("added", getLookupKeysInOrder(inserter.rawContactIds));
+            } catch (Exception lookupFailure) {
+                // the failed commit is what the caller needs to hear about, the count still tells what was added
+                Log.e(LOG_TAG, "Exception encountered while reading the lookup keys of the contacts added: ");
+                lookupFailure.printStackTrace();
+            }
+            throw new BatchCommitException(e, details);
+        }
+        return getLookupKeysInOrder(inserter.rawContactIds);
+    }
+
+    private ArrayList<String> getLookupKeysInOrder(List<Long> rawContactIds) {
+        Map<Long, String> lookupKeys = getLookupKeysFromRawContactIds(rawContactIds);
+        ArrayList<String> identifiers = new ArrayList<>();
+        for (Long rawContactId : rawContactIds) {
+            identifiers.add(lookupKeys.get(rawContactId));
+        }
+        return identifiers;
+    }
+
+    /**
+     * A batch failed after others were committed, the details tell the caller which contacts were written
+     */
+    private static class BatchCommitException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final HashMap<String, Object> details;
+
+        BatchCommitException(Exception cause, HashMap<String, Object> details) {
+            super(cause);
+            this.details = details;
+        }
+    }
+
+    /**
+     * Accumulates the insert operations of contacts and applies them in batches of at most
+     * {@link #MAX_BATCH_OPERATIONS} operations, never splitting a contact across two batches
+     */
+    private class ContactBatchInserter {
+        private final ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        private final ArrayList<Integer> rawContactOpIndexes = new ArrayList<>();
+        private final Map<String, Long> groupIds = new HashMap<>();
+        private final boolean keepRawContactIds;
+        final ArrayList<Long> rawContactIds = new ArrayList<>();
+        int insertedCount;
+
+        ContactBatchInserter(boolean keepRawContactIds) {
+            this.keepRawContactIds = keepRawContactIds;
+        }
+
+        /**
+         * @return true when the pending batch had to be applied to make room for the contact
+         */
+        boolean add(Contact contact) throws RemoteException, OperationApplicationException {
+            boolean flushed = false;
+            ArrayList<ContentProviderOperation> contactOps = getAddContactOperations(contact, ops.size(), groupIds);
+            if (!ops.isEmpty() && ops.size() + contactOps.size() > MAX_BATCH_OPERATIONS) {
+                flush();
+                flushed = true;
+                // back references are absolute, rebuild them for the new batch
+                contactOps = getAddContactOperations(contact, 0, groupIds);
+            }
+            rawContactOpIndexes.add(ops.size());
+            ops.addAll(contactOps);
+            return flushed;
+        }
+
+        void flush() throws RemoteException, OperationApplicationException {
+            if (ops.isEmpty()) {
+                return;
+            }
+            ContentProviderResult[] results = applyBatch(ops);
+            if (keepRawContactIds) {
+                for (int index : rawContactOpIndexes) {
+                    rawContactIds.add(ContentUris.parseId(results[index].uri));
+                }
+            }
+            insertedCount += rawContactOpIndexes.size();
+            ops.clear();
+            rawContactOpIndexes.clear();
+        }
+    }
+
+    /**
+     * Streams the cards of the vCard file into the provider, holding a single batch of contacts in memory
+     *
+     * @param task notified with the number of contacts imported so far after each batch
+     * @return the number of contacts imported
+     */
+    private int importVCard(String path, ImportVCardTask task) throws IOException, RemoteException, OperationApplicationException {
+        VCardParser parser = new VCardParser(new InputStreamReader(new FileInputStream(path), "UTF-8"));
+        ContactBatchInserter inserter = new ContactBatchInserter(false);
+        try {
+            Contact contact;
+            while ((contact = parser.next()) != null) {
+                if (inserter.add(contact)) {
+                    task.onBatchApplied(inserter.insertedCount);
+                }
+            }
+            inserter.flush();
+        } finally {
+            parser.close();
+        }
+        return inserter.insertedCount;
+    }
+
+    // Everything getContactsFrom reads except the row ids and the photo blob
+    private static final String[] FINGERPRINT_PROJECTION = {
+            ContactsContract.Data.LOOKUP_KEY,
+            ContactsContract.Data.MIMETYPE,
+            ContactsContract.RawContacts.ACCOUNT_TYPE,
+            ContactsContract.RawContacts.ACCOUNT_NAME,
+            ContactsContract.Data.DATA1,
+            ContactsContract.Data.DATA2,
+            ContactsContract.Data.DATA3,
+            ContactsContract.Data.DATA4,
+            ContactsContract.Data.DATA5,
+            ContactsContract.Data.DATA6,
+            ContactsContract.Data.DATA7,
+            ContactsContract.Data.DATA8,
+            ContactsContract.Data.DATA9,
+            ContactsContract.Data.DATA10,
+    };
+
+    /**
+     * Fingerprints every contact in a single pass over its data rows, hashing each row as it is read
+     * instead of decoding the contact
+     *
+     * @return lookup key to fingerprint
+     */
+    private HashMap<String, Long> getContactFingerprints() {
+        HashMap<String, long[]> fingerprints = new HashMap<>();
+        Cursor cursor = queryData(FINGERPRINT_PROJECTION,
+                ContactsContract.Data.MIMETYPE + "!=?", new String[]{CommonDataKinds.Photo.CONTENT_ITEM_TYPE}, null);
+        if (cursor != null) {
+            String[] row = new String[FINGERPRINT_PROJECTION.length - 1];
+            try {
+                while (cursor.moveToNext()) {
+                    String lookupKey = cursor.getString(0);
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = cursor.getString(i + 1);
+                    }
+                    long[] fingerprint = fingerprints.get(lookupKey);
+                    if (fingerprint == null) {
+                        fingerprint = new long[1];
+                        fingerprints.put(lookupKey, fingerprint);
+                    }
+                    fingerprint[0] = ContactFingerprint.combine(fingerprint[0], ContactFingerprint.hashRow(row));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        HashMap<String, Long> result = new HashMap<>(fingerprints.size() * 4 / 3 + 1);
+        for (Map.Entry<String, long[]> entry : fingerprints.entrySet()) {
+            result.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return result;
+    }
+
+    private static final String[] DUPLICATES_PROJECTION = {
+            ContactsContract.Data.LOOKUP_KEY,
+            ContactsContract.Data.MIMETYPE,
+            ContactsContract.Data.DATA1,
+            Phone.NORMALIZED_NUMBER,
+            StructuredName.GIVEN_NAME,
+            StructuredName.MIDDLE_NAME,
+            StructuredName.FAMILY_NAME,
+            StructuredName.PHONETIC_GIVEN_NAME,
+            StructuredName.PHONETIC_MIDDLE_NAME,
+            StructuredName.PHONETIC_FAMILY_NAME,
+    };
+
+    /**
+     * Reads the names, phones and emails of all contacts in one query and groups the likely duplicates,
+     * scoring them on a pool sized to the device cores since the plugin executor may be running this
+     */
+    private List<DuplicateFinder.Cluster> findDuplicates() throws InterruptedException, ExecutionException {
+        String selection = ContactsContract.Data.MIMETYPE + " IN (?,?,?)";
+        String[] selectionArgs = {StructuredName.CONTENT_ITEM_TYPE, Phone.CONTENT_ITEM_TYPE, Email.CONTENT_ITEM_TYPE};
+        Cursor cursor = queryData(DUPLICATES_PROJECTION, selection, selectionArgs, null);
+        if (cursor == null) {
+            return new ArrayList<>();
+        }
+
+        Map<String, String[]> names = new LinkedHashMap<>();
+        Map<String, List<String>> phones = new HashMap<>();
+        Map<String, List<String>> emails = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                String lookupKey = cursor.getString(0);
+                String mimeType = cursor.getString(1);
+                if (!names.containsKey(lookupKey)) {
+                    names.put(lookupKey, null);
+                }
+                if (mimeType.equals(StructuredName.CONTENT_ITEM_TYPE)) {
+                    names.put(lookupKey, new String[]{cursor.getString(4), cursor.getString(5), cursor.getString(6),
+                            joinNonEmpty(cursor.getString(7), cursor.getString(8), cursor.getString(9))});
+                } else {
+                    Map<String, List<String>> values = mimeType.equals(Phone.CONTENT_ITEM_TYPE) ? phones : emails;
+                    List<String> list = values.get(lookupKey);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        values.put(lookupKey, list);
+                    }
+                    String normalizedNumber = mimeType.equals(Phone.CONTENT_ITEM_TYPE) ? cursor.getString(3) : null;
+                    list.add(normalizedNumber != null ? normalizedNumber : cursor.getString(2));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<DuplicateFinder.Candidate> candidates = new ArrayList<>(names.size());
+        List<String> none = new ArrayList<>();
+        for (Map.Entry<String, String[]> entry : names.entrySet()) {
+            String[] name = entry.getValue() != null ? entry.getValue() : new String[4];
+            List<String> contactPhones = phones.get(entry.getKey());
+            List<String> contactEmails = emails.get(entry.getKey());
+            candidates.add(DuplicateFinder.candidate(entry.getKey(), name[0], name[1], name[2], name[3],
+                    contactPhones != null ? contactPhones : none, contactEmails != null ? contactEmails : none));
+        }
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            return DuplicateFinder.find(candidates, pool, parallelism);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Counts the contacts without reading them. Unfiltered by account, the provider counts the rows
+     * of the Contacts table itself, or a single column is scanned when it cannot. Filtered by account,
+     * or by an account policy filtering the reads, the contact ids of the matching raw contacts, or
+     * phone rows, are read and counted once each.
+     *
+     * @param accountType     null for any account type
+     * @param accountName     null for any account name
+     * @param hasPhoneNumber  to count the contacts having a phone number only
+     */
+    int getContactCount(String accountType, String accountName, boolean hasPhoneNumber) {
+        if (accountType == null && accountName == null && !filtersReads(accountPolicy)) {
+            String selection = hasPhoneNumber ? ContactsContract.Contacts.HAS_PHONE_NUMBER + " = 1" : null;
+            Cursor cursor;
+            try {
+                cursor = query(ContactsContract.Contacts.CONTENT_URI, new String[]{BaseColumns._COUNT}, selection, null, null);
+            } catch (IllegalArgumentException | SQLiteException e) {
+                // the provider does not know the count projection
+                cursor = null;
+            }
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToFirst()) {
+                        return cursor.getInt(0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            cursor = query(ContactsContract.Contacts.CONTENT_URI, new String[]{_ID}, selection, null, null);
+            if (cursor == null) {
+                return 0;
+            }
+            try {
+                return cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+        }
+
+        Uri uri;
+        String column;
+        StringBuilder selection = new StringBuilder();
+        ArrayList<String> selectionArgs = new ArrayList<>();
+        if (hasPhoneNumber) {
+            uri = ContactsContract.Data.CONTENT_URI;
+            column = ContactsContract.Data.CONTACT_ID;
+            selection.append(ContactsContract.Data.MIMETYPE).append(" = ?");
+            selectionArgs.add(Phone.CONTENT_ITEM_TYPE);
+        } else {
+            uri = ContactsContract.RawContacts.CONTENT_URI;
+            column = ContactsContract.RawContacts.CONTACT_ID;
+            selection.append(ContactsContract.RawContacts.DELETED).append(" = 0");
+        }
+        if (accountType != null) {
+            selection.append(" AND ").append(ContactsContract.RawContacts.ACCOUNT_TYPE).append(" = ?");
+            selectionArgs.add(accountType);
+        }
+        if (accountName != null) {
+            selection.append(" AND ").append(ContactsContract.RawContacts.ACCOUNT_NAME).append(" = ?");
+            selectionArgs.add(accountName);
+        }
+        Cursor cursor = queryAllowed(uri, new String[]{column}, selection.toString(),
+                selectionArgs.toArray(new String[selectionArgs.size()]), null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            // a contact has several raw contacts or phones
+            long[] contactIds = new long[cursor.getCount()];
+            int size = 0;
+            while (cursor.moveToNext() && size < contactIds.length) {
+                // raw contacts not aggregated yet belong to no contact
+                if (!cursor.isNull(0)) {
+                    contactIds[size++] = cursor.getLong(0);
+                }
+            }
+            Arrays.sort(contactIds, 0, size);
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || contactIds[i] != contactIds[i - 1]) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * The sections of the contacts in the order they are listed in, computed from the display
+     * names in a single pass. The provider's own index follows its sort keys rather than that order.
+     */
+    SectionIndex getSectionIndex() {
+        ArrayList<String> names = new ArrayList<>();
+        Cursor cursor = query(ContactsContract.Contacts.CONTENT_URI,
+                new String[]{ContactsContract.Contacts.DISPLAY_NAME}, null, null, ORDER_BY_FIELD);
+        if (cursor == null) {
+            return new SectionIndex(new String[0], new int[0]);
+        }
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return SectionIndex.fromSortedNames(names, Locale.getDefault());
+    }
+
+    /**
+     * Hashes every phone number in parallel, in its E.164 form when the provider knows it,
+     * and looks the hashes up in the packed ones
+     *
+     * @return the lookup keys of the contacts with at least one matching number
+     */
+    private ArrayList<String> matchPhoneHashes(byte[] packedHashes, String salt)
+            throws InterruptedException, ExecutionException {
+        PhoneHashMatcher matcher = new PhoneHashMatcher(packedHashes, salt);
+        Cursor cursor = queryData(new String[]{ContactsContract.Data.LOOKUP_KEY, Phone.NUMBER, Phone.NORMALIZED_NUMBER},
+                ContactsContract.Data.MIMETYPE + "=?", new String[]{Phone.CONTENT_ITEM_TYPE}, null);
+        if (cursor == null) {
+            return new ArrayList<>();
+        }
+
+        String countryIso = deviceCountryIso();
+        String[] lookupKeys;
+        String[] numbers;
+        try {
+            lookupKeys = new String[cursor.getCount()];
+            numbers = new String[lookupKeys.length];
+            for (int i = 0; i < lookupKeys.length && cursor.moveToNext(); i++) {
+                lookupKeys[i] = cursor.getString(0);
+                String normalizedNumber = cursor.getString(2);
+                numbers[i] = normalizedNumber != null ? normalizedNumber : toE164(cursor.getString(1), countryIso);
+            }
+        } finally {
+            cursor.close();
+        }
 
-        if (contactCursor != null && contactCursor.getCount() > 0) {
-            contactCursor.moveToPosition(0);
+        boolean[] matches;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            matches = matcher.match(numbers, pool, parallelism);
+        } finally {
+            pool.shutdown();
+        }
 
-            String contactId = contactCursor.getString(contactCursor.getColumnIndex(_ID));
-            contactCursor.close();
-            return contactId;
+        Set<String> matched = new LinkedHashSet<>();
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i]) {
+                matched.add(lookupKeys[i]);
+            }
         }
-        return null;
+        return new ArrayList<>(matched);
     }
 
-    private String getNamedContactIdFromLookupKey(String lookupKey) {
-        final String[] projection = new String[]{ContactsContract.Contacts.NAME_RAW_CONTACT_ID};
-        Uri lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey);
-        Uri uri = ContactsContract.Contacts.getLookupUri(contentResolver, lookupUri);
-
-        if (uri == null) {
+    /**
+     * The E.164 form of a number the provider did not normalize, null when it cannot be converted,
+     * which includes every number before Lollipop
+     */
+    private static String toE164(String number, String countryIso) {
+        if (number == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
             return null;
         }
+        return formatNumberToE164(number, countryIso);
+    }
 
-        Cursor contactCursor = contentResolver.query(uri, projection, null, null, null);
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static String formatNumberToE164(String number, String countryIso) {
+        return PhoneNumberUtils.formatNumberToE164(number, countryIso);
+    }
 
-        if (contactCursor != null && contactCursor.getCount() > 0) {
-            contactCursor.moveToPosition(0);
+    /**
+     * The upper case ISO 3166-1 code of the country the device is in, from the network, the SIM or
+     * else the default locale
+     */
+    private String deviceCountryIso() {
+        String countryIso = null;
+        if (telephonyManager != null) {
+            countryIso = telephonyManager.getNetworkCountryIso();
+            if (TextUtils.isEmpty(countryIso)) {
+                countryIso = telephonyManager.getSimCountryIso();
+            }
+        }
+        if (TextUtils.isEmpty(countryIso)) {
+            countryIso = Locale.getDefault().getCountry();
+        }
+        return countryIso.toUpperCase(Locale.US);
+    }
 
-            String namedRawContactId = contactCursor.getString(contactCursor.getColumnIndex(ContactsContract.Contacts.NAME_RAW_CONTACT_ID));
-            contactCursor.close();
-            return namedRawContactId;
+    private static String joinNonEmpty(String... parts) {
+        StringBuilder joined = new StringBuilder();
+        for (String part : parts) {
+            if (!TextUtils.isEmpty(part)) {
+                joined.append(joined.length() > 0 ? " " : "").append(part);
+            }
         }
-        return null;
+        return joined.length() > 0 ? joined.toString() : null;
     }
 
-    /*private String getRawContactIdFromLookupKey(String lookupKey) {
-     *//*
-        get all raw contacts by lookup
-            return first google raw contact id
-                if no google contact return getNamedContactIdFromLookupKey
+    /**
+     * Streams the contacts into a vCard file, decoding {@link #MAX_SELECTION_ARGS} contacts at a time
+     *
+     * @param lookupKeys the contacts to export, null for all of them
+     * @param task       notified with the number of contacts written so far after each chunk
+     * @return the number of contacts written
+     */
+    private int exportVCard(String path, List<String> lookupKeys, boolean withPhotos, ExportVCardTask task) throws IOException {
+        List<String> contactIds = new ArrayList<>();
+        if (lookupKeys == null) {
+            Cursor cursor = query(ContactsContract.Contacts.CONTENT_URI, new String[]{_ID}, null, null, _ID);
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    contactIds.add(cursor.getString(0));
+                }
+                cursor.close();
+            }
+        } else {
+            Set<String> uniqueIds = new LinkedHashSet<>();
+            Map<String, StoredContact> resolved = resolveLookupKeys(lookupKeys);
+            for (String lookupKey : lookupKeys) {
+                StoredContact stored = resolved.get(lookupKey);
+                if (stored != null) {
+                    uniqueIds.add(stored.contactId);
+                }
+            }
+            contactIds.addAll(uniqueIds);
+        }
 
-         *//*
-        final String[] projection = new String[]{ContactsContract.Contacts.NAME_RAW_CONTACT_ID};
-        Uri lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey);
-        Uri uri = ContactsContract.Contacts.getLookupUri(contentResolver, lookupUri);
+        FileChannel channel = new FileOutputStream(path).getChannel();
+        VCardWriter writer = new VCardWriter(new BufferedWriter(Channels.newWriter(channel, "UTF-8"), 64 * 1024));
+        int count = 0;
+        try {
+            for (int start = 0; start < contactIds.size(); start += MAX_SELECTION_ARGS) {
+                List<String> chunk = contactIds.subList(start, Math.min(start + MAX_SELECTION_ARGS, contactIds.size()));
+                String selection = ContactsContract.Data.CONTACT_ID + " IN (" + makePlaceholders(chunk.size()) + ")";
+                Cursor cursor = queryData(PROJECTION, selection, chunk.toArray(new String[chunk.size()]), null);
+                for (Contact contact : getContactsFrom(cursor)) {
+                    if (withPhotos) {
+                        contact.avatar = readContactPhoto(contact.identifier);
+                    }
+                    writer.write(contact);
+                    count++;
+                }
+                task.onChunkWritten(count);
+            }
+        } finally {
+            writer.close();
+        }
+        return count;
+    }
 
-        if (uri == null) {
+    /**
+     * Reads the stored photo of the contact as is, without decoding it
+     *
+     * @return the photo bytes, null when the contact has no photo
+     */
+    private byte[] readContactPhoto(String lookupKey) throws IOException {
+        Uri uri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, lookupKey);
+        long start = System.nanoTime();
+        InputStream input = ContactsContract.Contacts.openContactPhotoInputStream(contentResolver, uri, true);
+        recordProviderCall(start);
+        if (input == null) {
             return null;
         }
-
-        Cursor contactCursor = contentResolver.query(uri, projection, null, null, null);
-
-        if (contactCursor != null && contactCursor.getCount() > 0) {
-            contactCursor.moveToPosition(0);
-
-            String namedRawContactId = contactCursor.getString(contactCursor.getColumnIndex(ContactsContract.Contacts.NAME_RAW_CONTACT_ID));
-            contactCursor.close();
-            return namedRawContactId;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            input.close();
         }
-        return null;
-    }*/
+    }
 
-    private String addContactWithReturnIdentifier(Contact contact) {
-        try {
-            ArrayList<ContentProviderOperation> ops = getAddContactOperations(contact);
+    /**
+     * Resolves the lookup keys of raw contacts with one query per {@link #MAX_SELECTION_ARGS} ids. Only
+     * the name row, which every inserted raw contact has, is read so each raw contact yields a single row
+     *
+     * @return raw contact id to lookup key
+     */
+    private Map<Long, String> getLookupKeysFromRawContactIds(List<Long> rawContactIds) {
+        Map<Long, String> lookupKeys = new HashMap<>();
+        final String[] projection = new String[]{ContactsContract.Data.RAW_CONTACT_ID, ContactsContract.Data.LOOKUP_KEY};
+
+        for (int start = 0; start < rawContactIds.size(); start += MAX_SELECTION_ARGS) {
+            List<Long> chunk = rawContactIds.subList(start, Math.min(start + MAX_SELECTION_ARGS, rawContactIds.size()));
+            String[] selectionArgs = new String[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                selectionArgs[i] = String.valueOf(chunk.get(i));
+            }
+            String selection = ContactsContract.Data.RAW_CONTACT_ID + " IN (" + makePlaceholders(chunk.size()) + ") AND "
+                    + ContactsContract.Data.MIMETYPE + "='" + StructuredName.CONTENT_ITEM_TYPE + "'";
 
-            ContentProviderResult[] results = contentResolver.applyBatch(ContactsContract.AUTHORITY, ops);
-            long contactId = 0;
-            final String[] projection = new String[]{ContactsContract.RawContacts.CONTACT_ID};
-            final Cursor cursor = contentResolver.query(results[0].uri, projection, null, null, null);
-            if (cursor != null && cursor.getCount() > 0) {
+            Cursor cursor = query(ContactsContract.Data.CONTENT_URI, projection, selection, selectionArgs, null);
+            if (cursor != null) {
                 while (cursor.moveToNext()) {
-                    contactId = cursor.getLong(0);
+                    lookupKeys.put(cursor.getLong(0), cursor.getString(1));
                 }
                 cursor.close();
             }
+        }
+        return lookupKeys;
+    }
 
-            if (contactId > 0) {
-                String contactIdStr = String.valueOf(contactId);
-                return getLookupKeyFromContactId(contactIdStr);
-            }
-
-        } catch (Exception e) {
-            Log.e("TAG", "Exception encountered while inserting contact: ");
-            e.printStackTrace();
+    private static String makePlaceholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
         }
-        return "";
+        return placeholders.toString();
     }
 
     private ArrayList<ContentProviderOperation> getAddContactOperations(Contact contact) {
+        return getAddContactOperations(contact, 0, new HashMap<String, Long>());
+    }
+
+    /**
+     * Builds the operations inserting a contact into a batch
+     *
+     * @param rawContactIndex index the raw contact insert will have in the batch, data rows back-reference it
+     * @param groupIds        label group ids already resolved, shared between the contacts of one import
+     * @return the operations, starting with the raw contact insert
+     */
+    private ArrayList<ContentProviderOperation> getAddContactOperations(Contact contact, int rawContactIndex, Map<String, Long> groupIds) {
         ArrayList<ContentProviderOperation> ops = new ArrayList<>();
 
+        // Let the provider yield between contacts so large imports do not hold the database lock
         ContentProviderOperation.Builder op = ContentProviderOperation.newInsert(ContactsContract.RawContacts.CONTENT_URI)
                 .withValue(ContactsContract.RawContacts.ACCOUNT_TYPE, contact.androidAccountType)
-                .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, contact.androidAccountName);
+                .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, contact.androidAccountName)
+                .withYieldAllowed(true);
         ops.add(op.build());
 
         // Names
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE)
                 .withValue(StructuredName.GIVEN_NAME, contact.givenName)
                 .withValue(StructuredName.MIDDLE_NAME, contact.middleName)
@@ -1147,28 +3002,28 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
         // Note
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Note.CONTENT_ITEM_TYPE)
                 .withValue(CommonDataKinds.Note.NOTE, contact.note);
         ops.add(op.build());
 
         // Sip
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE)
                 .withValue(CommonDataKinds.SipAddress.SIP_ADDRESS, contact.sip);
         ops.add(op.build());
 
         // Nickname
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Nickname.CONTENT_ITEM_TYPE)
                 .withValue(CommonDataKinds.Nickname.NAME, contact.nickname);
         ops.add(op.build());
 
         // Organisation
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Organization.CONTENT_ITEM_TYPE)
                 .withValue(Organization.COMPANY, contact.company)
                 .withValue(Organization.TITLE, contact.jobTitle)
@@ -1177,18 +3032,16 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
         //Photo
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.IS_SUPER_PRIMARY, 1)
                 .withValue(CommonDataKinds.Photo.PHOTO, contact.avatar)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Photo.CONTENT_ITEM_TYPE);
         ops.add(op.build());
 
-        op.withYieldAllowed(true);
-
         //Phones
         for (Item phone : contact.phones) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Phone.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.Phone.NUMBER, phone.value)
                     .withValue(CommonDataKinds.Phone.LABEL, phone.label)
@@ -1200,7 +3053,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         //Emails
         for (Item email : contact.emails) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Email.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.Email.ADDRESS, email.value)
                     .withValue(CommonDataKinds.Email.LABEL, email.label)
@@ -1211,7 +3064,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         //Postal addresses
         for (PostalAddress address : contact.postalAddresses) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.StructuredPostal.LABEL, address.label)
                     .withValue(CommonDataKinds.StructuredPostal.STREET, address.street)
@@ -1227,7 +3080,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
         // Birthday
         op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                 .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Event.CONTENT_ITEM_TYPE)
                 .withValue(CommonDataKinds.Event.TYPE, CommonDataKinds.Event.TYPE_BIRTHDAY)
                 .withValue(CommonDataKinds.Event.START_DATE, contact.birthday);
@@ -1236,7 +3089,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         // Other dates/events
         for (Item date : contact.dates) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Event.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.Event.LABEL, date.label)
                     .withValue(CommonDataKinds.Event.TYPE, Item.stringToDatesType(date.label))
@@ -1248,7 +3101,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         // Website
         for (Item website : contact.websites) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Website.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.Website.LABEL, website.label)
                     .withValue(CommonDataKinds.Website.TYPE, Item.stringToWebsiteType(website.label))
@@ -1260,7 +3113,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         // Instant message address
         for (Item im : contact.instantMessageAddresses) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Im.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.Im.PROTOCOL, Item.stringToInstantMessageAddressProtocol(im.label))
                     .withValue(CommonDataKinds.Im.DATA, im.value);
@@ -1269,7 +3122,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         // Relations
         for (Item relation : contact.relations) {
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Relation.CONTENT_ITEM_TYPE)
                     .withValue(CommonDataKinds.Relation.LABEL, relation.label)
                     .withValue(CommonDataKinds.Relation.TYPE, Item.stringToRelationType(relation.label))
@@ -1279,13 +3132,14 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
         //Labels
         for (String label : contact.labels) {
-            long groupId = getLabelGroupId(label);
-            if (groupId < 0L) {
-                groupId = insertLabelGroup(label);
+            Long groupId = groupIds.get(label);
+            if (groupId == null) {
+                groupId = getGroupId(label);
+                groupIds.put(label, groupId);
             }
             if (groupId > 0L) {
                 op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, 0)
+                        .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
                         .withValue(CommonDataKinds.StructuredName.MIMETYPE, CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE)
                         .withValue(ContactsContract.CommonDataKinds.GroupMembership.GROUP_ROW_ID, groupId);
                 ops.add(op.build());
@@ -1298,7 +3152,9 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     private long insertLabelGroup(String groupTitle) {
         ContentValues contentValues = new ContentValues();
         contentValues.put(ContactsContract.Groups.TITLE, groupTitle);
+        long start = System.nanoTime();
         Uri groupUri = contentResolver.insert(ContactsContract.Groups.CONTENT_URI, contentValues);
+        recordProviderCall(start);
         return ContentUris.parseId(groupUri);
     }
 
@@ -1309,7 +3165,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         String selection = ContactsContract.Groups.TITLE + " = ? ";
         String selectionArgs[] = new String[]{groupTitle};
 
-        Cursor cursor = contentResolver.query(ContactsContract.Groups.CONTENT_URI, projection, selection, selectionArgs, null);
+        Cursor cursor = query(ContactsContract.Groups.CONTENT_URI, projection, selection, selectionArgs, null);
         if (cursor != null && cursor.getCount() > 0) {
             while (cursor.moveToNext()) {
                 groupId = cursor.getLong(cursor.getColumnIndex(ContactsContract.Groups._ID));
@@ -1320,19 +3176,24 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     }
 
     private ArrayList<String> getLabelGroupTitle(String groupId) {
+        ArrayList<String> cachedTitle = cache.getGroupTitles(groupId);
+        if (cachedTitle != null) {
+            return new ArrayList<>(cachedTitle);
+        }
         ArrayList<String> groupTitle = new ArrayList();
 
         String projection[] = {ContactsContract.Groups.TITLE};
         String selection = ContactsContract.Groups._ID + " = ? ";
         String selectionArgs[] = new String[]{groupId};
 
-        Cursor cursor = contentResolver.query(ContactsContract.Groups.CONTENT_URI, projection, selection, selectionArgs, null);
+        Cursor cursor = query(ContactsContract.Groups.CONTENT_URI, projection, selection, selectionArgs, null);
         if (cursor != null && cursor.getCount() > 0) {
             while (cursor.moveToNext()) {
                 groupTitle.add(cursor.getString(cursor.getColumnIndex(ContactsContract.Groups.TITLE)));
             }
             cursor.close();
         }
+        cache.putGroupTitles(groupId, new ArrayList<>(groupTitle));
         return groupTitle;
     }
 
@@ -1351,7 +3212,7 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         String selection = ContactsContract.RawContacts.CONTACT_ID + " = ?";
         String[] selectionArgs = new String[]{contactId};
 
-        Cursor contactIdCursor = contentResolver.query(uri, projection, selection, selectionArgs, null);
+        Cursor contactIdCursor = query(uri, projection, selection, selectionArgs, null);
         if (contactIdCursor != null && contactIdCursor.moveToFirst()) {
             res = contactIdCursor.getString(contactIdCursor.getColumnIndex(ContactsContract.RawContacts._ID));
             contactIdCursor.close();
@@ -1359,36 +3220,45 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         return res;
     }
 
-    private boolean deleteContactsByIdentifiers(List<String> lookupKeyList) {
-        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+    /**
+     * Deletes the contacts with a set based delete per {@link #MAX_SELECTION_ARGS} contacts, letting the
+     * provider yield between them
+     *
+     * @return the identifiers which did not resolve to a contact, nothing was deleted for these
+     */
+    private ArrayList<String> deleteContactsByIdentifiers(List<String> lookupKeyList)
+            throws RemoteException, OperationApplicationException {
+        ArrayList<String> notFound = new ArrayList<>();
+        if (lookupKeyList == null) {
+            return notFound;
+        }
 
-        if (lookupKeyList != null) {
-            ArrayList<String> contactIdList = new ArrayList<>();
-            for (String lookupKey : lookupKeyList) {
-                String contactId = getContactIdFromLookupKey(lookupKey);
-                if (contactId != null) {
-                    contactIdList.add(contactId);
-                }
+        Map<String, StoredContact> resolved = resolveLookupKeys(lookupKeyList);
+        Set<String> contactIdSet = new LinkedHashSet<>();
+        for (String lookupKey : lookupKeyList) {
+            StoredContact stored = resolved.get(lookupKey);
+            if (stored == null) {
+                notFound.add(lookupKey);
+            } else {
+                contactIdSet.add(stored.contactId);
             }
+        }
 
-            for (String contactId : contactIdList) {
-                Uri uri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_URI, contactId);
-                if (uri != null) {
-                    ops.add(ContentProviderOperation.newDelete(uri).build());
-                }
-            }
-            if (ops.size() > 0) {
-                try {
-                    contentResolver.applyBatch(ContactsContract.AUTHORITY, ops);
-                    return true;
-                } catch (Exception e) {
-                    Log.e("TAG", "Exception encountered while deleting contacts by identifiers: ");
-                    e.printStackTrace();
-                    return false;
-                }
-            }
+        // Contacts.CONTENT_URI only deletes by id, raw contacts can be deleted by selection
+        List<String> contactIds = new ArrayList<>(contactIdSet);
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        for (int start = 0; start < contactIds.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = contactIds.subList(start, Math.min(start + MAX_SELECTION_ARGS, contactIds.size()));
+            ops.add(ContentProviderOperation.newDelete(ContactsContract.RawContacts.CONTENT_URI)
+                    .withSelection(ContactsContract.RawContacts.CONTACT_ID + " IN (" + makePlaceholders(chunk.size()) + ")",
+                            chunk.toArray(new String[chunk.size()]))
+                    .withYieldAllowed(true)
+                    .build());
         }
-        return true;
+        if (!ops.isEmpty()) {
+            applyBatch(ops);
+        }
+        return notFound;
     }
 
     private boolean deleteContact(Contact contact) {
@@ -1397,230 +3267,509 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         }
         List<String> list = new ArrayList();
         list.add(contact.identifier);
-        return deleteContactsByIdentifiers(list);
+        try {
+            // a contact already gone counts as deleted
+            deleteContactsByIdentifiers(list);
+            return true;
+        } catch (Exception e) {
+            Log.e("TAG", "Exception encountered while deleting contact: ");
+            e.printStackTrace();
+            return false;
+        }
     }
 
-    private boolean updateContact(Contact contact) {
-        Log.e(this.getClass().getSimpleName(), "updateContact");
+    boolean updateContact(Contact contact, Contact baseline) {
+        if (contact.identifier == null || contact.identifier.isEmpty()) {
+            return false;
+        }
         try {
-            ArrayList<ContentProviderOperation> ops = new ArrayList<>();
-            ContentProviderOperation.Builder op = null;
+            List<Contact> contacts = new ArrayList<>();
+            contacts.add(contact);
+            List<Contact> baselines = new ArrayList<>();
+            baselines.add(baseline);
+            return updateContacts(contacts, baselines).isEmpty();
+        } catch (Exception e) {
+            // Log exception
+            Log.e(this.getClass().getSimpleName(), "Exception encountered while updating contact: ");
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-            if (contact.identifier == null || contact.identifier.isEmpty()) {
-                return false;
+    /**
+     * Updates the contacts, loading the stored state of all of them up front and committing the changes
+     * in batches of at most {@link #MAX_BATCH_OPERATIONS} operations.
+     * <p>
+     * When a contact comes with the raw contact versions it was read with, its changes are guarded by
+     * version assertions and the whole batch fails if it was modified in between. A contact given along
+     * with its baseline (the contact as it was read) is diffed against it instead of being read again.
+     *
+     * The batches applied before a failing one stay committed.
+     *
+     * @param baselines the contact as it was read for each contact to update, null or with null entries
+     *                  for the contacts to diff against their stored state
+     * @return the identifiers of the contacts which could not be found, these are left untouched
+     * @throws BatchCommitException when a batch fails, with the identifiers of the contacts committed
+     *                              or left unchanged under "updated", of the ones not written under
+     *                              "failed" and of the ones not found so far under "notFound"
+     */
+    private ArrayList<String> updateContacts(List<Contact> contacts, List<Contact> baselines)
+            throws BatchCommitException {
+        ArrayList<String> notFound = new ArrayList<>();
+        List<String> lookupKeys = new ArrayList<>();
+        Map<String, Contact> baselineByLookupKey = new HashMap<>();
+        for (int i = 0; i < contacts.size(); i++) {
+            Contact contact = contacts.get(i);
+            if (StringUtils.isNullOrEmpty(contact.identifier)) {
+                continue;
+            }
+            lookupKeys.add(contact.identifier);
+            Contact baseline = baselines != null && i < baselines.size() ? baselines.get(i) : null;
+            if (baseline != null && !baseline.androidRawContactVersions.isEmpty()) {
+                // without versions nothing tells the baseline is still current
+                baselineByLookupKey.put(contact.identifier, baseline);
             }
+        }
+        tracer.beginSection("getStoredContacts");
+        Map<String, StoredContact> storedContacts;
+        try {
+            storedContacts = getStoredContacts(lookupKeys, baselineByLookupKey);
+        } finally {
+            tracer.endSection();
+        }
 
-            String rawContactId = getNamedContactIdFromLookupKey(contact.identifier);
-//            String oldWayContactId = getRawContactId(contact.identifier);
-            Log.e(this.getClass().getSimpleName() + " - updateContact", "rawContactId : " + rawContactId);
-            if (rawContactId == null) {
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        ArrayList<String> updated = new ArrayList<>();
+        // the contacts whose operations are in ops
+        ArrayList<String> pending = new ArrayList<>();
+        for (int i = 0; i < contacts.size(); i++) {
+            Contact contact = contacts.get(i);
+            StoredContact stored = contact.identifier == null ? null : storedContacts.get(contact.identifier);
+            if (stored == null || stored.contact == null) {
                 Log.e(this.getClass().getSimpleName(), "Raw id is null for " + contact.identifier);
+                notFound.add(contact.identifier);
+                continue;
+            }
+
+            ArrayList<ContentProviderOperation> contactOps = new ArrayList<>();
+            tracer.beginSection("diff");
+            try {
+                addUpdateContactOperations(contact, stored, contactOps);
+            } finally {
+                tracer.endSection();
+            }
+            if (contactOps.isEmpty()) {
+                updated.add(contact.identifier);
+                continue;
+            }
+            // the versions the caller last saw, a contact never read through the plugin carries none
+            Map<String, Long> versions = stored.fromBaseline
+                    ? stored.contact.androidRawContactVersions : contact.androidRawContactVersions;
+            contactOps.addAll(0, getAssertVersionOperations(versions));
+            if (!ops.isEmpty() && ops.size() + contactOps.size() > MAX_BATCH_OPERATIONS) {
+                applyUpdateBatch(ops, pending, updated, notFound, contacts.subList(i, contacts.size()));
+            }
+            ops.addAll(contactOps);
+            pending.add(contact.identifier);
+        }
+        if (!ops.isEmpty()) {
+            applyUpdateBatch(ops, pending, updated, notFound, Collections.<Contact>emptyList());
+        }
+        return notFound;
+    }
 
-                return false;
+    /**
+     * Applies a batch of {@link #updateContacts}, moving its contacts from pending to updated
+     *
+     * @param remaining the contacts after the batch, not written either when it fails
+     */
+    private void applyUpdateBatch(ArrayList<ContentProviderOperation> ops, List<String> pending, List<String> updated,
+                                  List<String> notFound, List<Contact> remaining) throws BatchCommitException {
+        try {
+            applyBatch(ops);
+        } catch (Exception e) {
+            ArrayList<String> failed = new ArrayList<>(pending);
+            for (Contact contact : remaining) {
+                if (contact.identifier != null) {
+                    failed.add(contact.identifier);
+                }
             }
+            HashMap<String, Object> details = new HashMap<>();
+            details.put("updated", new ArrayList<>(updated));
+            details.put("failed", failed);
+            details.put("notFound", new ArrayList<>(notFound));
+            throw new BatchCommitException(e, details);
+        }
+        updated.addAll(pending);
+        pending.clear();
+        ops.clear();
+    }
 
-            // fetch current contact
+    /**
+     * A contact as currently stored by the provider, with the ids of its single valued data rows
+     */
+    private static class StoredContact {
+        final String contactId;
+        final String rawContactId;
+        String structureNameId, organizationId, nicknameId, sipId, noteId, birthdayId;
+        final Map<String, String> existingLabelIdMap = new HashMap<>();
+        Contact contact;
+        // the contact values come from the caller and are only valid along with the version assertions
+        boolean fromBaseline;
+
+        StoredContact(String contactId, String rawContactId) {
+            this.contactId = contactId;
+            this.rawContactId = rawContactId;
+        }
+    }
 
-            List<String> identifiers = new ArrayList<>();
-            identifiers.add(contact.identifier);
-            Cursor cursor = getCursorForContactIdentifiers(identifiers, true);
+    /**
+     * Mime types of the rows whose ids {@link #addUpdateContactOperations} needs besides the contact values
+     */
+    private static final String[] SINGLE_ROW_MIME_TYPES = {
+            StructuredName.CONTENT_ITEM_TYPE,
+            Organization.CONTENT_ITEM_TYPE,
+            CommonDataKinds.Nickname.CONTENT_ITEM_TYPE,
+            CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE,
+            CommonDataKinds.Note.CONTENT_ITEM_TYPE,
+            CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE,
+            CommonDataKinds.Event.CONTENT_ITEM_TYPE,
+    };
+
+    private static final String[] SINGLE_ROW_PROJECTION = {
+            BaseColumns._ID,
+            ContactsContract.Data.CONTACT_ID,
+            ContactsContract.Data.LOOKUP_KEY,
+            ContactsContract.Data.MIMETYPE,
+            ContactsContract.RawContacts.ACCOUNT_TYPE,
+            ContactsContract.RawContacts.ACCOUNT_NAME,
+            ContactsContract.Data.DATA1,
+            ContactsContract.Data.DATA2,
+    };
+
+    /**
+     * Resolves the given lookup keys and reads the data rows of all matching contacts, one query per
+     * {@link #MAX_SELECTION_ARGS} contacts. Contacts having a baseline only get the ids of their single
+     * valued rows read, the baseline stands for their values.
+     *
+     * @return lookup key to stored contact, keys which could not be resolved are absent
+     */
+    private Map<String, StoredContact> getStoredContacts(List<String> lookupKeys, Map<String, Contact> baselines) {
+        Map<String, StoredContact> byLookupKey = resolveLookupKeys(lookupKeys);
+        Map<String, StoredContact> byContactId = new HashMap<>();
+        for (StoredContact stored : byLookupKey.values()) {
+            byContactId.put(stored.contactId, stored);
+        }
+
+        List<String> contactIds = new ArrayList<>();
+        List<String> baselineContactIds = new ArrayList<>();
+        Set<String> listedContactIds = new HashSet<>();
+        for (String lookupKey : lookupKeys) {
+            StoredContact stored = byLookupKey.get(lookupKey);
+            if (stored == null || !listedContactIds.add(stored.contactId)) {
+                continue;
+            }
+            Contact baseline = baselines.get(lookupKey);
+            if (baseline != null) {
+                stored.contact = baseline;
+                stored.fromBaseline = true;
+                baselineContactIds.add(stored.contactId);
+            } else {
+                contactIds.add(stored.contactId);
+            }
+        }
+        readStoredRows(contactIds, PROJECTION, null, byContactId);
+        readStoredRows(baselineContactIds, SINGLE_ROW_PROJECTION, SINGLE_ROW_MIME_TYPES, byContactId);
+        return byLookupKey;
+    }
+
+    /**
+     * Resolves lookup keys to their contact and name raw contact ids with one query per
+     * {@link #MAX_SELECTION_ARGS} keys, falling back to the lookup uri for keys which changed since
+     *
+     * @return lookup key to stored contact without values, keys which could not be resolved are absent
+     */
+    private Map<String, StoredContact> resolveLookupKeys(List<String> lookupKeys) {
+        Map<String, StoredContact> byLookupKey = new HashMap<>();
+        Map<String, StoredContact> byContactId = new HashMap<>();
+
+        final String[] projection = new String[]{_ID, ContactsContract.Contacts.LOOKUP_KEY, ContactsContract.Contacts.NAME_RAW_CONTACT_ID};
+        for (int start = 0; start < lookupKeys.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = lookupKeys.subList(start, Math.min(start + MAX_SELECTION_ARGS, lookupKeys.size()));
+            String selection = ContactsContract.Contacts.LOOKUP_KEY + " IN (" + makePlaceholders(chunk.size()) + ")";
+            Cursor cursor = query(ContactsContract.Contacts.CONTENT_URI, projection, selection,
+                    chunk.toArray(new String[chunk.size()]), null);
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    StoredContact stored = new StoredContact(cursor.getString(0), cursor.getString(2));
+                    byLookupKey.put(cursor.getString(1), stored);
+                    byContactId.put(stored.contactId, stored);
+                }
+                cursor.close();
+            }
+        }
+
+        // Lookup keys change when contacts get re-aggregated, the lookup uri still resolves those
+        for (String lookupKey : lookupKeys) {
+            if (byLookupKey.containsKey(lookupKey)) {
+                continue;
+            }
+            String contactId = getContactIdFromLookupKey(lookupKey);
+            String rawContactId = contactId != null ? getNamedContactIdFromLookupKey(lookupKey) : null;
+            if (rawContactId != null) {
+                StoredContact stored = byContactId.get(contactId);
+                if (stored == null) {
+                    stored = new StoredContact(contactId, rawContactId);
+                    byContactId.put(contactId, stored);
+                }
+                byLookupKey.put(lookupKey, stored);
+            }
+        }
+        return byLookupKey;
+    }
+
+    /**
+     * Collects the single valued row ids of the given contacts and, unless they have a baseline,
+     * decodes their stored values
+     *
+     * @param mimeTypes the mime types to restrict the query to, null for all of them
+     */
+    private void readStoredRows(List<String> contactIds, String[] projection, String[] mimeTypes,
+                                Map<String, StoredContact> byContactId) {
+        String mimeTypeSelection = "";
+        if (mimeTypes != null) {
+            mimeTypeSelection = " AND " + ContactsContract.Data.MIMETYPE + " IN (" + makePlaceholders(mimeTypes.length) + ")";
+        }
+        int maxContacts = MAX_SELECTION_ARGS - (mimeTypes != null ? mimeTypes.length : 0);
+        for (int start = 0; start < contactIds.size(); start += maxContacts) {
+            List<String> chunk = contactIds.subList(start, Math.min(start + maxContacts, contactIds.size()));
+            String selection = ContactsContract.Data.CONTACT_ID + " IN (" + makePlaceholders(chunk.size()) + ")" + mimeTypeSelection;
+            List<String> selectionArgs = new ArrayList<>(chunk);
+            if (mimeTypes != null) {
+                selectionArgs.addAll(Arrays.asList(mimeTypes));
+            }
+            Cursor cursor = query(ContactsContract.Data.CONTENT_URI, projection, selection,
+                    selectionArgs.toArray(new String[selectionArgs.size()]), null);
+            if (cursor == null) {
+                continue;
+            }
+
+            Map<String, StoredContact> byCurrentLookupKey = new HashMap<>();
+            while (cursor.moveToNext()) {
+                StoredContact stored = byContactId.get(cursor.getString(cursor.getColumnIndex(ContactsContract.Data.CONTACT_ID)));
+                if (stored == null) {
+                    continue;
+                }
+                byCurrentLookupKey.put(cursor.getString(cursor.getColumnIndex(ContactsContract.Data.LOOKUP_KEY)), stored);
 
-            String structureNameId = null;
-            String organizationId = null;
-            String nicknameId = null;
-            String sipId = null;
-            String noteId = null;
-            Map<String, String> existingLabelIdMap = new HashMap<>();
-            String birthdayId = null;
-            while (cursor != null && cursor.moveToNext()) {
                 String id = cursor.getString(cursor.getColumnIndex(BaseColumns._ID));
                 String mimeType = cursor.getString(cursor.getColumnIndex(ContactsContract.Data.MIMETYPE));
                 String accountType = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE));
+                String accountName = cursor.getString(cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME));
 
-                if (mimeType.equals(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
-                    structureNameId = id;
-                } else if (mimeType.equals(CommonDataKinds.Organization.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
-                    organizationId = id;
-                } else if (mimeType.equals(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
-                    nicknameId = id;
-                } else if (mimeType.equals(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
-                    sipId = id;
-                } else if (mimeType.equals(CommonDataKinds.Note.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
-                    noteId = id;
-                } else if (mimeType.equals(CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
+                if (!accountPolicy.allows(accountType, accountName)) {
+                    continue;
+                }
+                if (mimeType.equals(CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE)) {
+                    stored.structureNameId = id;
+                } else if (mimeType.equals(CommonDataKinds.Organization.CONTENT_ITEM_TYPE)) {
+                    stored.organizationId = id;
+                } else if (mimeType.equals(CommonDataKinds.Nickname.CONTENT_ITEM_TYPE)) {
+                    stored.nicknameId = id;
+                } else if (mimeType.equals(CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE)) {
+                    stored.sipId = id;
+                } else if (mimeType.equals(CommonDataKinds.Note.CONTENT_ITEM_TYPE)) {
+                    stored.noteId = id;
+                } else if (mimeType.equals(CommonDataKinds.GroupMembership.CONTENT_ITEM_TYPE)) {
                     String groupId = cursor.getString(cursor.getColumnIndex(CommonDataKinds.GroupMembership.DATA1));
-                    existingLabelIdMap.put(groupId, id);
-                } else if (mimeType.equals(CommonDataKinds.Event.CONTENT_ITEM_TYPE) && StringUtils.validAccountType(accountType)) {
+                    stored.existingLabelIdMap.put(groupId, id);
+                } else if (mimeType.equals(CommonDataKinds.Event.CONTENT_ITEM_TYPE)) {
                     int eventType = cursor.getInt(cursor.getColumnIndex(CommonDataKinds.Event.TYPE));
                     if (eventType == CommonDataKinds.Event.TYPE_BIRTHDAY) {
-                        birthdayId = id;
+                        stored.birthdayId = id;
                     }
                 }
             }
 
-            ArrayList<Contact> contactList = getContactsFrom(cursor);
-
-            if (contactList.size() == 0) {
-                return false;
+            if (mimeTypes != null) {
+                cursor.close();
+                continue;
             }
-
-            Contact currentContact = contactList.get(0);
-
-            String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-            if (structureNameId == null) {
-                Log.e(this.getClass().getSimpleName(), "Inserting structure name");
-                // insert
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI);
-                op.withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
-                op.withValue(ContactsContract.Data.MIMETYPE, ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE);
-            } else {
-                Log.e(this.getClass().getSimpleName(), "Updating structure id :" + structureNameId);
-                // update
-                if (equalsStructureName(contact, currentContact)) {
-                    op = null;
-                } else {
-
-                    String queryStructureName = ContactsContract.Data.CONTACT_ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-                    String contactId = getContactIdFromLookupKey(contact.identifier);
-                    op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
-                    String[] queryArg = new String[]{contactId, ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE};
-                    op.withSelection(queryStructureName, queryArg);
+            for (Contact contact : getContactsFrom(cursor)) {
+                StoredContact stored = byCurrentLookupKey.get(contact.identifier);
+                if (stored != null) {
+                    stored.contact = contact;
                 }
             }
+        }
+    }
 
-            if (op != null) {
-                // Update data (name)
-                op.withValue(StructuredName.GIVEN_NAME, contact.givenName)
-                        .withValue(StructuredName.MIDDLE_NAME, contact.middleName)
-                        .withValue(StructuredName.FAMILY_NAME, contact.familyName)
-                        .withValue(StructuredName.PREFIX, contact.prefix)
-                        .withValue(StructuredName.SUFFIX, contact.suffix)
-                        .withValue(StructuredName.PHONETIC_GIVEN_NAME, contact.phoneticGivenName)
-                        .withValue(StructuredName.PHONETIC_MIDDLE_NAME, contact.phoneticMiddleName)
-                        .withValue(StructuredName.PHONETIC_FAMILY_NAME, contact.phoneticFamilyName);
-                ops.add(op.build());
-            }
+    /**
+     * Builds the assertions that the raw contacts still have the given versions, any change to a raw
+     * contact or to one of its data rows bumps its version
+     */
+    private static List<ContentProviderOperation> getAssertVersionOperations(Map<String, Long> versions) {
+        List<ContentProviderOperation> ops = new ArrayList<>();
+        for (Map.Entry<String, Long> version : versions.entrySet()) {
+            ops.add(ContentProviderOperation.newAssertQuery(ContactsContract.RawContacts.CONTENT_URI)
+                    .withSelection(ContactsContract.RawContacts._ID + "=? AND " + ContactsContract.RawContacts.VERSION + "=?",
+                            new String[]{version.getKey(), String.valueOf(version.getValue())})
+                    .withExpectedCount(1)
+                    .build());
+        }
+        return ops;
+    }
 
-            if (organizationId == null) {
-                Log.e(this.getClass().getSimpleName(), "Inserting organization name");
-                // insert
-                if (!StringUtils.isNullOrEmpty(contact.company) || !StringUtils.isNullOrEmpty(contact.department) || !StringUtils.isNullOrEmpty(contact.jobTitle)) {
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Organization.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
-                } else {
-                    op = null;
-                }
+    /**
+     * Appends the operations turning the stored contact into the given one
+     */
+    private void addUpdateContactOperations(Contact contact, StoredContact stored, ArrayList<ContentProviderOperation> ops) {
+        ContentProviderOperation.Builder op;
+        String rawContactId = stored.rawContactId;
+        String structureNameId = stored.structureNameId;
+        String organizationId = stored.organizationId;
+        String nicknameId = stored.nicknameId;
+        String sipId = stored.sipId;
+        String noteId = stored.noteId;
+        String birthdayId = stored.birthdayId;
+        Map<String, String> existingLabelIdMap = stored.existingLabelIdMap;
+        Contact currentContact = stored.contact;
+
+        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
+        if (structureNameId == null) {
+            // insert
+            op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI);
+            op.withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
+            op.withValue(ContactsContract.Data.MIMETYPE, ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE);
+        } else {
+            // update
+            if (equalsStructureName(contact, currentContact)) {
+                op = null;
             } else {
-                Log.e(this.getClass().getSimpleName(), "Updating organization id :" + organizationId);
-                // update
-                if (equalsOrganization(contact, currentContact)) {
-                    op = null;
-                } else {
-                    op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
-                    String[] queryArg = new String[]{organizationId, ContactsContract.CommonDataKinds.Organization.CONTENT_ITEM_TYPE};
-                    op.withSelection(queryCommon, queryArg);
-                }
-            }
 
-            if (op != null) {
-                op.withValue(Organization.TYPE, Organization.TYPE_WORK)
-                        .withValue(Organization.COMPANY, contact.company)
-                        .withValue(Organization.DEPARTMENT, contact.department)
-                        .withValue(Organization.TITLE, contact.jobTitle);
-                ops.add(op.build());
+                String queryStructureName = ContactsContract.Data.CONTACT_ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
+                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
+                String[] queryArg = new String[]{stored.contactId, ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE};
+                op.withSelection(queryStructureName, queryArg);
             }
+        }
+
+        if (op != null) {
+            // Update data (name)
+            op.withValue(StructuredName.GIVEN_NAME, contact.givenName)
+                    .withValue(StructuredName.MIDDLE_NAME, contact.middleName)
+                    .withValue(StructuredName.FAMILY_NAME, contact.familyName)
+                    .withValue(StructuredName.PREFIX, contact.prefix)
+                    .withValue(StructuredName.SUFFIX, contact.suffix)
+                    .withValue(StructuredName.PHONETIC_GIVEN_NAME, contact.phoneticGivenName)
+                    .withValue(StructuredName.PHONETIC_MIDDLE_NAME, contact.phoneticMiddleName)
+                    .withValue(StructuredName.PHONETIC_FAMILY_NAME, contact.phoneticFamilyName);
+            ops.add(op.build());
+        }
 
-            if (nicknameId == null) {
-                Log.e(this.getClass().getSimpleName(), "Inserting nickname");
-                // insert
+        if (organizationId == null) {
+            // insert
+            if (!StringUtils.isNullOrEmpty(contact.company) || !StringUtils.isNullOrEmpty(contact.department) || !StringUtils.isNullOrEmpty(contact.jobTitle)) {
                 op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Nickname.CONTENT_ITEM_TYPE)
+                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Organization.CONTENT_ITEM_TYPE)
                         .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
             } else {
-                Log.e(this.getClass().getSimpleName(), "Updating nickname id :" + nicknameId);
-                // update
-                if (equalsStrings(contact.nickname, currentContact.nickname)) {
-                    op = null;
-                } else {
-                    op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
-                    String[] queryArg = new String[]{nicknameId, ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE};
-                    op.withSelection(queryCommon, queryArg);
-                }
+                op = null;
+            }
+        } else {
+            // update
+            if (equalsOrganization(contact, currentContact)) {
+                op = null;
+            } else {
+                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
+                String[] queryArg = new String[]{organizationId, ContactsContract.CommonDataKinds.Organization.CONTENT_ITEM_TYPE};
+                op.withSelection(queryCommon, queryArg);
             }
+        }
 
-            if (op != null) {
-                op.withValue(CommonDataKinds.Nickname.NAME, contact.nickname);
-                ops.add(op.build());
-            }
+        if (op != null) {
+            op.withValue(Organization.TYPE, Organization.TYPE_WORK)
+                    .withValue(Organization.COMPANY, contact.company)
+                    .withValue(Organization.DEPARTMENT, contact.department)
+                    .withValue(Organization.TITLE, contact.jobTitle);
+            ops.add(op.build());
+        }
 
-            if (sipId == null) {
-                Log.e(this.getClass().getSimpleName(), "Inserting sip id");
-                // insert
-                if (!StringUtils.isNullOrEmpty(contact.sip)) {
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
-                } else {
-                    op = null;
-                }
+        if (nicknameId == null) {
+            // insert
+            op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                    .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Nickname.CONTENT_ITEM_TYPE)
+                    .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
+        } else {
+            // update
+            if (equalsStrings(contact.nickname, currentContact.nickname)) {
+                op = null;
             } else {
-                Log.e(this.getClass().getSimpleName(), "Updating sip id :" + sipId);
-                // update
-                if (equalsStrings(contact.sip, currentContact.sip)) {
-                    op = null;
-                } else {
-                    op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
-                    String[] queryArg = new String[]{sipId, ContactsContract.CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE};
-                    op.withSelection(queryCommon, queryArg);
-                }
-            }
-            if (op != null) {
-                op.withValue(CommonDataKinds.SipAddress.SIP_ADDRESS, contact.sip);
-                ops.add(op.build());
+                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
+                String[] queryArg = new String[]{nicknameId, ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE};
+                op.withSelection(queryCommon, queryArg);
             }
+        }
 
-            if (noteId == null) {
-                Log.e(this.getClass().getSimpleName(), "Inserting note id");
-                // insert
+        if (op != null) {
+            op.withValue(CommonDataKinds.Nickname.NAME, contact.nickname);
+            ops.add(op.build());
+        }
+
+        if (sipId == null) {
+            // insert
+            if (!StringUtils.isNullOrEmpty(contact.sip)) {
                 op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Note.CONTENT_ITEM_TYPE)
+                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE)
                         .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
             } else {
-                Log.e(this.getClass().getSimpleName(), "Updating note id :" + noteId);
-                // update
-                if (equalsStrings(contact.note, currentContact.note)) {
-                    op = null;
-                } else {
-                    op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
-                    String[] queryArg = new String[]{noteId, ContactsContract.CommonDataKinds.Note.CONTENT_ITEM_TYPE};
-                    op.withSelection(queryCommon, queryArg);
-                }
+                op = null;
             }
-
-            if (op != null) {
-                op.withValue(CommonDataKinds.Note.NOTE, contact.note);
-                ops.add(op.build());
+        } else {
+            // update
+            if (equalsStrings(contact.sip, currentContact.sip)) {
+                op = null;
+            } else {
+                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
+                String[] queryArg = new String[]{sipId, ContactsContract.CommonDataKinds.SipAddress.CONTENT_ITEM_TYPE};
+                op.withSelection(queryCommon, queryArg);
             }
+        }
+        if (op != null) {
+            op.withValue(CommonDataKinds.SipAddress.SIP_ADDRESS, contact.sip);
+            ops.add(op.build());
+        }
 
-            addEmailsUpdateOperations(rawContactId, currentContact.emails, contact.emails, ops);
-            addPhoneUpdateOperations(rawContactId, currentContact.phones, contact.phones, ops);
-            addPostalAddressUpdateOperations(rawContactId, currentContact.postalAddresses, contact.postalAddresses, ops);
-            addWebsiteUpdateOperations(rawContactId, currentContact.websites, contact.websites, ops);
-            addImUpdateOperations(rawContactId, currentContact.instantMessageAddresses, contact.instantMessageAddresses, ops);
-            addRelationUpdateOperations(rawContactId, currentContact.relations, contact.relations, ops);
-            addLabelUpdateOperations(rawContactId, existingLabelIdMap, currentContact.labels, contact.labels, ops);
-            addEventUpdateOperations(rawContactId, currentContact.dates, contact.dates, ops);
-            addBirthdayOperation(rawContactId, birthdayId, currentContact.birthday, contact.birthday, ops);
+        if (noteId == null) {
+            // insert
+            op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                    .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Note.CONTENT_ITEM_TYPE)
+                    .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
+        } else {
+            // update
+            if (equalsStrings(contact.note, currentContact.note)) {
+                op = null;
+            } else {
+                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI);
+                String[] queryArg = new String[]{noteId, ContactsContract.CommonDataKinds.Note.CONTENT_ITEM_TYPE};
+                op.withSelection(queryCommon, queryArg);
+            }
+        }
 
-            ContentProviderResult[] results = contentResolver.applyBatch(ContactsContract.AUTHORITY, ops);
-            return true;
-        } catch (Exception e) {
-            // Log exception
-            Log.e(this.getClass().getSimpleName(), "Exception encountered while updating contact: ");
-            e.printStackTrace();
-            return false;
+        if (op != null) {
+            op.withValue(CommonDataKinds.Note.NOTE, contact.note);
+            ops.add(op.build());
         }
+
+        addDataRowUpdateOperations(rawContactId, currentContact.emails, contact.emails, EMAIL_WRITER, ops);
+        addDataRowUpdateOperations(rawContactId, currentContact.phones, contact.phones, phoneWriter, ops);
+        addDataRowUpdateOperations(rawContactId, currentContact.postalAddresses, contact.postalAddresses, POSTAL_ADDRESS_WRITER, ops);
+        addDataRowUpdateOperations(rawContactId, currentContact.websites, contact.websites, WEBSITE_WRITER, ops);
+        addDataRowUpdateOperations(rawContactId, currentContact.instantMessageAddresses, contact.instantMessageAddresses, IM_WRITER, ops);
+        addDataRowUpdateOperations(rawContactId, currentContact.relations, contact.relations, RELATION_WRITER, ops);
+        addLabelUpdateOperations(rawContactId, existingLabelIdMap, currentContact.labels, contact.labels, ops);
+        addDataRowUpdateOperations(rawContactId, currentContact.dates, contact.dates, EVENT_WRITER, ops);
+        addBirthdayOperation(rawContactId, birthdayId, currentContact.birthday, contact.birthday, ops);
     }
 
     private boolean equalsStructureName(Contact contact, Contact currentContact) {
@@ -1679,480 +3828,166 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
         return true;
     }
 
-    private void addEmailsUpdateOperations(String rawContactId, ArrayList<Item> existingItemList, ArrayList<Item> newItemList,
-                                           ArrayList<ContentProviderOperation> ops) {
-        ContentProviderOperation.Builder op;
-        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-        List<String> existingIdList = new ArrayList<>();
-        for (Item item : existingItemList) {
-            existingIdList.add(item.identifier);
+    /**
+     * Writes the values of one multi valued field kind into data row operations
+     */
+    private abstract static class DataRowWriter<T> implements FieldDiff.Adapter<T> {
+        final String mimeType;
+
+        DataRowWriter(String mimeType) {
+            this.mimeType = mimeType;
         }
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (Item item : newItemList) {
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Email.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(CommonDataKinds.Email.ADDRESS, item.value)
-                        .withValue(Email.LABEL, item.label)
-                        .withValue(CommonDataKinds.Email.TYPE, Item.stringToEmailType(item.label));
-                ops.add(op.build());
-            }
-        } else {
-            for (Item item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Email.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(CommonDataKinds.Email.ADDRESS, item.value)
-                            .withValue(Email.LABEL, item.label)
-                            .withValue(CommonDataKinds.Email.TYPE, Item.stringToEmailType(item.label));
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (Item existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE};
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(CommonDataKinds.Email.ADDRESS, item.value)
-                                        .withValue(Email.LABEL, item.label)
-                                        .withValue(CommonDataKinds.Email.TYPE, Item.stringToEmailType(item.label));
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
 
-                }
-            }
+        abstract void putValues(ContentProviderOperation.Builder op, T item, boolean update);
 
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
-                    String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE};
-                    op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                            .withSelection(queryCommon, queryArg);
-                    ops.add(op.build());
-                }
-            }
+        @Override
+        public boolean isDeletable(T existing) {
+            return true;
         }
     }
 
-    private void addPhoneUpdateOperations(String rawContactId, List<Item> existingItemList, ArrayList<Item> newItemList,
-                                          ArrayList<ContentProviderOperation> ops) {
-        ContentProviderOperation.Builder op;
-        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-        List<String> existingIdList = new ArrayList<>();
-        for (Item item : existingItemList) {
-            existingIdList.add(item.identifier);
-        }
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (Item item : newItemList) {
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Phone.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(CommonDataKinds.Phone.NUMBER, item.value)
-                        .withValue(CommonDataKinds.Phone.LABEL, item.label)
-                        .withValue(CommonDataKinds.Phone.TYPE, Item.stringToPhoneType(item.label));
-                ops.add(op.build());
-            }
-        } else {
-            for (Item item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Phone.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(CommonDataKinds.Phone.NUMBER, item.value)
-                            .withValue(CommonDataKinds.Phone.LABEL, item.label)
-                            .withValue(CommonDataKinds.Phone.TYPE, Item.stringToPhoneType(item.label));
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (Item existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE};
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(CommonDataKinds.Phone.NUMBER, item.value)
-                                        .withValue(CommonDataKinds.Phone.LABEL, item.label)
-                                        .withValue(Phone.NORMALIZED_NUMBER, item.value)
-                                        .withValue(CommonDataKinds.Phone.TYPE, Item.stringToPhoneType(item.label));
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
-                }
-            }
-
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
-                    for (Item existingItem : existingItemList) {
-                        if (existingItem.identifier.equals(id) && StringUtils.validAccountType(existingItem.accountType)) {
-
-                            String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE};
-                            op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                                    .withSelection(queryCommon, queryArg);
-                            ops.add(op.build());
-                            break;
-                        }
-                    }
+    private abstract static class ItemRowWriter extends DataRowWriter<Item> {
 
-                }
-            }
+        ItemRowWriter(String mimeType) {
+            super(mimeType);
         }
-    }
 
-    private void addPostalAddressUpdateOperations(String rawContactId, List<PostalAddress> existingItemList, ArrayList<PostalAddress> newItemList,
-                                                  ArrayList<ContentProviderOperation> ops) {
-        ContentProviderOperation.Builder op;
-        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-        List<String> existingIdList = new ArrayList<>();
-        for (PostalAddress item : existingItemList) {
-            existingIdList.add(item.identifier);
+        @Override
+        public String getIdentifier(Item item) {
+            return item.identifier;
         }
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (PostalAddress item : newItemList) {
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(StructuredPostal.LABEL, item.label)
-                        .withValue(StructuredPostal.TYPE, PostalAddress.stringToPostalAddressType(item.label))
-                        .withValue(StructuredPostal.STREET, item.street)
-                        .withValue(StructuredPostal.NEIGHBORHOOD, item.locality)
-                        .withValue(StructuredPostal.CITY, item.city)
-                        .withValue(StructuredPostal.REGION, item.region)
-                        .withValue(StructuredPostal.POSTCODE, item.postcode)
-                        .withValue(StructuredPostal.COUNTRY, item.country);
-                ops.add(op.build());
-            }
-        } else {
-            for (PostalAddress item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(StructuredPostal.LABEL, item.label)
-                            .withValue(StructuredPostal.TYPE, PostalAddress.stringToPostalAddressType(item.label))
-                            .withValue(StructuredPostal.STREET, item.street)
-                            .withValue(StructuredPostal.NEIGHBORHOOD, item.locality)
-                            .withValue(StructuredPostal.CITY, item.city)
-                            .withValue(StructuredPostal.REGION, item.region)
-                            .withValue(StructuredPostal.POSTCODE, item.postcode)
-                            .withValue(StructuredPostal.COUNTRY, item.country);
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (PostalAddress existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE};
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(StructuredPostal.LABEL, item.label)
-                                        .withValue(StructuredPostal.TYPE, PostalAddress.stringToPostalAddressType(item.label))
-                                        .withValue(StructuredPostal.STREET, item.street)
-                                        .withValue(StructuredPostal.NEIGHBORHOOD, item.locality)
-                                        .withValue(StructuredPostal.CITY, item.city)
-                                        .withValue(StructuredPostal.REGION, item.region)
-                                        .withValue(StructuredPostal.POSTCODE, item.postcode)
-                                        .withValue(StructuredPostal.COUNTRY, item.country);
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
-                }
-            }
 
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
-                    String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE};
-                    op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                            .withSelection(queryCommon, queryArg);
-                    ops.add(op.build());
-                }
-            }
+        @Override
+        public boolean equalValues(Item item, Item existing) {
+            return item.equalValues(existing);
         }
     }
 
-    private void addWebsiteUpdateOperations(String rawContactId, List<Item> existingItemList, ArrayList<Item> newItemList,
-                                            ArrayList<ContentProviderOperation> ops) {
-
-        Log.e(this.getClass().getSimpleName(), "addWebsiteUpdateOperations");
-
-        ContentProviderOperation.Builder op;
-        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-        List<String> existingIdList = new ArrayList<>();
-        for (Item item : existingItemList) {
-            existingIdList.add(item.identifier);
+    private static final ItemRowWriter EMAIL_WRITER = new ItemRowWriter(Email.CONTENT_ITEM_TYPE) {
+        @Override
+        void putValues(ContentProviderOperation.Builder op, Item item, boolean update) {
+            op.withValue(Email.ADDRESS, item.value)
+                    .withValue(Email.LABEL, item.label)
+                    .withValue(Email.TYPE, Item.stringToEmailType(item.label));
         }
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Website.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (Item item : newItemList) {
-
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Website.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(CommonDataKinds.Website.LABEL, item.label)
-                        .withValue(CommonDataKinds.Website.URL, item.value)
-                        .withValue(CommonDataKinds.Website.TYPE, Item.stringToWebsiteType(item.label));
-                ops.add(op.build());
-            }
-        } else {
-            for (Item item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
+    };
 
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Website.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(CommonDataKinds.Website.LABEL, item.label)
-                            .withValue(CommonDataKinds.Website.URL, item.value)
-                            .withValue(CommonDataKinds.Website.TYPE, Item.stringToWebsiteType(item.label));
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (Item existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.Website.CONTENT_ITEM_TYPE};
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(CommonDataKinds.Website.LABEL, item.label)
-                                        .withValue(CommonDataKinds.Website.URL, item.value)
-                                        .withValue(CommonDataKinds.Website.TYPE, Item.stringToWebsiteType(item.label));
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
-                }
+    private final ItemRowWriter phoneWriter = new ItemRowWriter(Phone.CONTENT_ITEM_TYPE) {
+        @Override
+        void putValues(ContentProviderOperation.Builder op, Item item, boolean update) {
+            op.withValue(Phone.NUMBER, item.value)
+                    .withValue(Phone.LABEL, item.label)
+                    .withValue(Phone.TYPE, Item.stringToPhoneType(item.label));
+            if (update) {
+                op.withValue(Phone.NORMALIZED_NUMBER, item.value);
             }
+        }
 
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
+        @Override
+        public boolean isDeletable(Item existing) {
+            // numbers of the accounts the policy denies, messaging apps by default, are not ours to remove
+            return accountPolicy.allowsType(existing.accountType);
+        }
+    };
 
-                    String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Website.CONTENT_ITEM_TYPE};
-                    op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                            .withSelection(queryCommon, queryArg);
-                    ops.add(op.build());
-                }
-            }
+    private static final DataRowWriter<PostalAddress> POSTAL_ADDRESS_WRITER = new DataRowWriter<PostalAddress>(StructuredPostal.CONTENT_ITEM_TYPE) {
+        @Override
+        public String getIdentifier(PostalAddress item) {
+            return item.identifier;
         }
-    }
 
-    private void addImUpdateOperations(String rawContactId, List<Item> existingItemList, ArrayList<Item> newItemList,
-                                       ArrayList<ContentProviderOperation> ops) {
-        ContentProviderOperation.Builder op;
-        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-        List<String> existingIdList = new ArrayList<>();
-        for (Item item : existingItemList) {
-            existingIdList.add(item.identifier);
+        @Override
+        public boolean equalValues(PostalAddress item, PostalAddress existing) {
+            return item.equalValues(existing);
         }
 
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (Item item : newItemList) {
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Im.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(CommonDataKinds.Im.DATA, item.value)
-                        .withValue(CommonDataKinds.Im.TYPE, Item.stringToInstantMessageAddressProtocol(item.label))
-                        .withValue(CommonDataKinds.Im.PROTOCOL, Item.stringToInstantMessageAddressProtocol(item.label));
+        @Override
+        void putValues(ContentProviderOperation.Builder op, PostalAddress item, boolean update) {
+            op.withValue(StructuredPostal.LABEL, item.label)
+                    .withValue(StructuredPostal.TYPE, PostalAddress.stringToPostalAddressType(item.label))
+                    .withValue(StructuredPostal.STREET, item.street)
+                    .withValue(StructuredPostal.NEIGHBORHOOD, item.locality)
+                    .withValue(StructuredPostal.CITY, item.city)
+                    .withValue(StructuredPostal.REGION, item.region)
+                    .withValue(StructuredPostal.POSTCODE, item.postcode)
+                    .withValue(StructuredPostal.COUNTRY, item.country);
+        }
+    };
 
-                if (Item.stringToInstantMessageAddressProtocol(item.label) == CommonDataKinds.Im.PROTOCOL_CUSTOM) {
-                    op.withValue(CommonDataKinds.Im.CUSTOM_PROTOCOL, item.label);
-                }
+    private static final ItemRowWriter WEBSITE_WRITER = new ItemRowWriter(CommonDataKinds.Website.CONTENT_ITEM_TYPE) {
+        @Override
+        void putValues(ContentProviderOperation.Builder op, Item item, boolean update) {
+            op.withValue(CommonDataKinds.Website.LABEL, item.label)
+                    .withValue(CommonDataKinds.Website.URL, item.value)
+                    .withValue(CommonDataKinds.Website.TYPE, Item.stringToWebsiteType(item.label));
+        }
+    };
 
-                ops.add(op.build());
+    private static final ItemRowWriter IM_WRITER = new ItemRowWriter(CommonDataKinds.Im.CONTENT_ITEM_TYPE) {
+        @Override
+        void putValues(ContentProviderOperation.Builder op, Item item, boolean update) {
+            int protocol = Item.stringToInstantMessageAddressProtocol(item.label);
+            op.withValue(CommonDataKinds.Im.DATA, item.value)
+                    .withValue(CommonDataKinds.Im.TYPE, protocol)
+                    .withValue(CommonDataKinds.Im.PROTOCOL, protocol);
+            if (protocol == CommonDataKinds.Im.PROTOCOL_CUSTOM) {
+                op.withValue(CommonDataKinds.Im.CUSTOM_PROTOCOL, item.label);
             }
-        } else {
-            for (Item item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Im.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(CommonDataKinds.Im.DATA, item.value)
-                            .withValue(CommonDataKinds.Im.TYPE, Item.stringToInstantMessageAddressProtocol(item.label))
-                            .withValue(CommonDataKinds.Im.PROTOCOL, Item.stringToInstantMessageAddressProtocol(item.label));
-
-                    if (Item.stringToInstantMessageAddressProtocol(item.label) == CommonDataKinds.Im.PROTOCOL_CUSTOM) {
-                        op.withValue(CommonDataKinds.Im.CUSTOM_PROTOCOL, item.label);
-                    }
+        }
+    };
 
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (Item existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE};
-
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(CommonDataKinds.Im.DATA, item.value)
-                                        .withValue(CommonDataKinds.Im.TYPE, Item.stringToInstantMessageAddressProtocol(item.label))
-                                        .withValue(CommonDataKinds.Im.PROTOCOL, Item.stringToInstantMessageAddressProtocol(item.label));
-
-                                if (Item.stringToInstantMessageAddressProtocol(item.label) == CommonDataKinds.Im.PROTOCOL_CUSTOM) {
-                                    op.withValue(CommonDataKinds.Im.CUSTOM_PROTOCOL, item.label);
-                                }
-
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
-                }
-            }
+    private static final ItemRowWriter RELATION_WRITER = new ItemRowWriter(CommonDataKinds.Relation.CONTENT_ITEM_TYPE) {
+        @Override
+        void putValues(ContentProviderOperation.Builder op, Item item, boolean update) {
+            op.withValue(CommonDataKinds.Relation.NAME, item.value)
+                    .withValue(CommonDataKinds.Relation.LABEL, item.label)
+                    .withValue(CommonDataKinds.Relation.TYPE, Item.stringToRelationType(item.label));
+        }
+    };
 
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
-                    String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE};
-                    op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                            .withSelection(queryCommon, queryArg);
-                    ops.add(op.build());
-                }
-            }
+    private static final ItemRowWriter EVENT_WRITER = new ItemRowWriter(CommonDataKinds.Event.CONTENT_ITEM_TYPE) {
+        @Override
+        void putValues(ContentProviderOperation.Builder op, Item item, boolean update) {
+            op.withValue(CommonDataKinds.Event.LABEL, item.label)
+                    .withValue(CommonDataKinds.Event.START_DATE, item.value)
+                    .withValue(CommonDataKinds.Event.TYPE, Item.stringToDatesType(item.label));
         }
-    }
+    };
 
-    private void addRelationUpdateOperations(String rawContactId, List<Item> existingItemList, ArrayList<Item> newItemList,
-                                             ArrayList<ContentProviderOperation> ops) {
+    /**
+     * Appends the inserts, updates and deletes turning the stored rows of one field kind into the new items
+     */
+    private <T> void addDataRowUpdateOperations(String rawContactId, List<T> existingItemList, List<T> newItemList,
+                                                DataRowWriter<T> writer, ArrayList<ContentProviderOperation> ops) {
+        FieldDiff<T> diff = FieldDiff.compute(existingItemList, newItemList, writer);
         ContentProviderOperation.Builder op;
         String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-        List<String> existingIdList = new ArrayList<>();
-        for (Item item : existingItemList) {
-            existingIdList.add(item.identifier);
-        }
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Relation.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (Item item : newItemList) {
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Relation.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(CommonDataKinds.Relation.NAME, item.value)
-                        .withValue(CommonDataKinds.Relation.LABEL, item.label)
-                        .withValue(CommonDataKinds.Relation.TYPE, Item.stringToRelationType(item.label));
-
-                ops.add(op.build());
-            }
-        } else {
-            for (Item item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Relation.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(CommonDataKinds.Relation.NAME, item.value)
-                            .withValue(CommonDataKinds.Relation.LABEL, item.label)
-                            .withValue(CommonDataKinds.Relation.TYPE, Item.stringToRelationType(item.label));
-
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (Item existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.Relation.CONTENT_ITEM_TYPE};
-
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(CommonDataKinds.Relation.NAME, item.value)
-                                        .withValue(CommonDataKinds.Relation.LABEL, item.label)
-                                        .withValue(CommonDataKinds.Relation.TYPE, Item.stringToRelationType(item.label));
-
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
-                }
-            }
 
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
-                    String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Relation.CONTENT_ITEM_TYPE};
-                    op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                            .withSelection(queryCommon, queryArg);
-                    ops.add(op.build());
-                }
-            }
+        for (T item : diff.inserts) {
+            op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                    .withValue(ContactsContract.Data.MIMETYPE, writer.mimeType)
+                    .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
+            writer.putValues(op, item, false);
+            ops.add(op.build());
+        }
+        for (T item : diff.updates) {
+            String[] queryArg = new String[]{writer.getIdentifier(item), writer.mimeType};
+            op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
+                    .withSelection(queryCommon, queryArg);
+            writer.putValues(op, item, true);
+            ops.add(op.build());
+        }
+        for (T existing : diff.deletes) {
+            String[] queryArg = new String[]{writer.getIdentifier(existing), writer.mimeType};
+            op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
+                    .withSelection(queryCommon, queryArg);
+            ops.add(op.build());
         }
     }
 
     private void addLabelUpdateOperations(String rawContactId, Map<String, String> existingIdMap, List<String> existingItemList,
                                           ArrayList<String> newItemList,
                                           ArrayList<ContentProviderOperation> ops) {
-
-        Log.e(this.getClass().getSimpleName(), "addLabelUpdateOperations");
-
         ContentProviderOperation.Builder op;
         String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
         if (existingItemList.size() > 0 && newItemList.size() == 0) {
@@ -2225,17 +4060,11 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
     }
 
     private void addBirthdayOperation(String rawContactId, String birthdayId, String existingBirthday, String newBirthday, ArrayList<ContentProviderOperation> ops) {
-
-        Log.e(this.getClass().getSimpleName(), "addBirthdayOperation");
-        Log.e(this.getClass().getSimpleName(), "existingBirthday : " + existingBirthday);
-        Log.e(this.getClass().getSimpleName(), "newBirthday : " + newBirthday);
-
         ContentProviderOperation.Builder op;
         String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
 
         //process birthday
         if (newBirthday == null && existingBirthday != null) {
-            Log.e(this.getClass().getSimpleName(), "delete birthday");
             //Delete birthday
 
             String[] queryArg = new String[]{birthdayId, ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE};
@@ -2245,7 +4074,6 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
         }
         if (newBirthday != null && existingBirthday == null) {
-            Log.e(this.getClass().getSimpleName(), "insert birthday");
             //Insert birthday
             op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
                     .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Event.CONTENT_ITEM_TYPE)
@@ -2255,7 +4083,6 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
 
             ops.add(op.build());
         } else if (newBirthday != null && existingBirthday != null && !existingBirthday.equals(newBirthday)) {
-            Log.e(this.getClass().getSimpleName(), "update birthday");
             //Update birthday if values are not same
             String[] queryArg = new String[]{birthdayId, ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE};
 
@@ -2266,83 +4093,4 @@ public class ContactsServicePlugin implements MethodCallHandler, FlutterPlugin,
             ops.add(op.build());
         }
     }
-
-    private void addEventUpdateOperations(String rawContactId, List<Item> existingItemList, List<Item> newItemList,
-                                          ArrayList<ContentProviderOperation> ops) {
-
-        Log.e(this.getClass().getSimpleName(), "addEventUpdateOperations");
-
-        ContentProviderOperation.Builder op;
-        String queryCommon = BaseColumns._ID + "=? AND " + ContactsContract.Data.MIMETYPE + "=?";
-
-        List<String> existingIdList = new ArrayList<>();
-        for (Item item : existingItemList) {
-            existingIdList.add(item.identifier);
-        }
-        if (existingIdList.size() > 0 && newItemList.size() == 0) {
-            // remove all current ids
-            for (String id : existingIdList) {
-                String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE};
-                op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                        .withSelection(queryCommon, queryArg);
-                ops.add(op.build());
-            }
-        } else if (newItemList.size() > 0 && existingIdList.size() == 0) {
-            // insert all incoming ids
-            for (Item item : newItemList) {
-                op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                        .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Event.CONTENT_ITEM_TYPE)
-                        .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                        .withValue(CommonDataKinds.Event.LABEL, item.label)
-                        .withValue(CommonDataKinds.Event.START_DATE, item.value)
-                        .withValue(CommonDataKinds.Event.TYPE, Item.stringToDatesType(item.label));
-
-                ops.add(op.build());
-            }
-        } else {
-            for (Item item : newItemList) {
-                if (item.identifier == null || item.identifier.isEmpty()) {
-                    // insert
-                    op = ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
-                            .withValue(ContactsContract.Data.MIMETYPE, CommonDataKinds.Event.CONTENT_ITEM_TYPE)
-                            .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
-                            .withValue(CommonDataKinds.Event.LABEL, item.label)
-                            .withValue(CommonDataKinds.Event.START_DATE, item.value)
-                            .withValue(CommonDataKinds.Event.TYPE, Item.stringToDatesType(item.label));
-
-                    ops.add(op.build());
-                } else if (existingIdList.contains(item.identifier)) {
-                    // found update this item
-                    for (Item existing : existingItemList) {
-                        if (item.identifier.equals(existing.identifier)) {
-                            if (!item.equalValues(existing)) {
-
-                                String[] queryArg = new String[]{item.identifier, ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE};
-
-                                op = ContentProviderOperation.newUpdate(ContactsContract.Data.CONTENT_URI)
-                                        .withSelection(queryCommon, queryArg)
-                                        .withValue(CommonDataKinds.Event.LABEL, item.label)
-                                        .withValue(CommonDataKinds.Event.START_DATE, item.value)
-                                        .withValue(CommonDataKinds.Event.TYPE, Item.stringToDatesType(item.label));
-
-                                ops.add(op.build());
-                            }
-                            existingIdList.remove(item.identifier);
-                        }
-                    }
-                }
-            }
-
-            if (existingIdList.size() > 0) {
-                // remove all ids
-                for (String id : existingIdList) {
-
-                    String[] queryArg = new String[]{id, ContactsContract.CommonDataKinds.Event.CONTENT_ITEM_TYPE};
-                    op = ContentProviderOperation.newDelete(ContactsContract.Data.CONTENT_URI)
-                            .withSelection(queryCommon, queryArg);
-                    ops.add(op.build());
-                }
-            }
-        }
-    }
 }
@@ -0,0 +1,25 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import android.database.Cursor;
+
+/***
+ * Reads the current row of a cursor for the model
+ ***/
+class CursorDataRow implements DataRow {
+
+    private final Cursor cursor;
+
+    CursorDataRow(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public String getString(String column) {
+        return cursor.getString(cursor.getColumnIndex(column));
+    }
+
+    @Override
+    public int getInt(String column) {
+        return cursor.getInt(cursor.getColumnIndex(column));
+    }
+}
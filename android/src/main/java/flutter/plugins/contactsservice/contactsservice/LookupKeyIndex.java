@@ -0,0 +1,161 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Build;
+import android.provider.ContactsContract;
+
+import java.util.HashMap;
+
+/***
+ * Contact id to lookup key of every contact, kept across calls. Changes to the provider mark it
+ * stale and the next read only queries the contacts updated or deleted since the last one, on
+ * API 18 and up. Older devices read the whole table again
+ ***/
+class LookupKeyIndex {
+
+    private final ContentObserver observer = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            stale = true;
+        }
+    };
+
+    private ContentResolver observedResolver;
+    private boolean closed;
+    private volatile boolean stale;
+    private LongStringMap lookupKeys;
+    // the highest update and delete timestamps read so far, where the next refresh starts
+    private long updatedSince;
+    private long deletedSince;
+
+    /**
+     * Brings the index up to date with the provider, in a single query the first time
+     *
+     * @throws SecurityException without the contacts permission
+     */
+    synchronized void update(ContentResolver contentResolver) {
+        if (!closed && observedResolver == null) {
+            contentResolver.registerContentObserver(ContactsContract.AUTHORITY_URI, true, observer);
+            observedResolver = contentResolver;
+        }
+        // once closed nothing marks the index stale anymore
+        if (lookupKeys == null || closed) {
+            load(contentResolver);
+        } else if (stale) {
+            refresh(contentResolver);
+        }
+    }
+
+    /**
+     * @return the packed contact ids and lookup keys, see {@link LongStringMap#toMap}, null before
+     * the first update
+     */
+    synchronized HashMap<String, Object> toMap() {
+        return lookupKeys != null ? lookupKeys.toMap() : null;
+    }
+
+    /**
+     * Makes the next update read the changes, for the writes of the plugin the observer only reports later
+     */
+    void markStale() {
+        stale = true;
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (observedResolver != null) {
+            observedResolver.unregisterContentObserver(observer);
+            observedResolver = null;
+        }
+        lookupKeys = null;
+    }
+
+    private void load(ContentResolver contentResolver) {
+        // cleared before the query, a change during it gets picked up by the next read
+        stale = false;
+        boolean timestamps = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+        Cursor cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, projection(timestamps), null, null, null);
+        LongStringMap loaded = new LongStringMap(cursor != null ? cursor.getCount() : 0);
+        long loadedSince = 0;
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    String lookupKey = cursor.getString(1);
+                    if (lookupKey != null) {
+                        loaded.put(cursor.getLong(0), lookupKey);
+                    }
+                    if (timestamps) {
+                        loadedSince = Math.max(loadedSince, cursor.getLong(2));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        lookupKeys = loaded;
+        updatedSince = loadedSince;
+        deletedSince = loadedSince;
+    }
+
+    private void refresh(ContentResolver contentResolver) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            load(contentResolver);
+            return;
+        }
+        stale = false;
+        readUpdated(contentResolver);
+        readDeleted(contentResolver);
+    }
+
+    // timestamps are inclusive, rows of the same millisecond as the last read are read again
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void readUpdated(ContentResolver contentResolver) {
+        Cursor cursor = contentResolver.query(ContactsContract.Contacts.CONTENT_URI, projection(true),
+                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + ">=?",
+                new String[]{String.valueOf(updatedSince)}, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String lookupKey = cursor.getString(1);
+                if (lookupKey != null) {
+                    lookupKeys.put(cursor.getLong(0), lookupKey);
+                }
+                updatedSince = Math.max(updatedSince, cursor.getLong(2));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void readDeleted(ContentResolver contentResolver) {
+        Cursor cursor = contentResolver.query(ContactsContract.DeletedContacts.CONTENT_URI, new String[]{
+                ContactsContract.DeletedContacts.CONTACT_ID, ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP
+        }, ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + ">=?", new String[]{String.valueOf(deletedSince)}, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                lookupKeys.remove(cursor.getLong(0));
+                deletedSince = Math.max(deletedSince, cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static String[] projection(boolean timestamps) {
+        if (!timestamps) {
+            return new String[]{ContactsContract.Contacts._ID, ContactsContract.Contacts.LOOKUP_KEY};
+        }
+        return new String[]{ContactsContract.Contacts._ID, ContactsContract.Contacts.LOOKUP_KEY,
+                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP};
+    }
+}
@@ -0,0 +1,52 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+/***
+ * Counts the rows read through the cursor and the time spent filling its window,
+ * which is when the provider actually runs the query
+ ***/
+class MeteredCursor extends CursorWrapper {
+
+    private final CallMetrics call;
+
+    MeteredCursor(Cursor cursor, CallMetrics call) {
+        super(cursor);
+        this.call = call;
+    }
+
+    @Override
+    public int getCount() {
+        long start = System.nanoTime();
+        int count = super.getCount();
+        call.addProviderTime(System.nanoTime() - start);
+        return count;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        long start = System.nanoTime();
+        return counted(super.moveToFirst(), start);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        long start = System.nanoTime();
+        return counted(super.moveToNext(), start);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        long start = System.nanoTime();
+        return counted(super.moveToPosition(position), start);
+    }
+
+    private boolean counted(boolean moved, long startNanos) {
+        call.addProviderTime(System.nanoTime() - startNanos);
+        if (moved) {
+            call.addRowScanned();
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,93 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+
+/***
+ * Writes the sections to the system trace, where Perfetto and systrace pick them up.
+ * Does nothing before Jelly Bean MR2
+ ***/
+class SystemTracer implements Tracer {
+
+    private static final String LOG_TAG = "flutter_contacts";
+    // Trace.TRACE_TAG_APP, the tag app sections are written with
+    private static final long TRACE_TAG_APP = 1L << 12;
+    // Trace section names are cut at 127 characters
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    static final SystemTracer INSTANCE = new SystemTracer();
+
+    // The async section methods are public since Q and hidden before, both are reached through
+    // reflection since the plugin compiles against an older SDK. Null when unavailable.
+    private final Method beginAsyncSection;
+    private final Method endAsyncSection;
+
+    private SystemTracer() {
+        Method begin = null;
+        Method end = null;
+        try {
+            if (Build.VERSION.SDK_INT >= 29) {
+                begin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                end = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                begin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                end = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+            }
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Async trace sections are unavailable: " + e);
+            begin = null;
+            end = null;
+        }
+        beginAsyncSection = begin;
+        endAsyncSection = end;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(truncate(name));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        invokeAsync(beginAsyncSection, name, cookie);
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        invokeAsync(endAsyncSection, name, cookie);
+    }
+
+    private static void invokeAsync(Method method, String name, int cookie) {
+        if (method == null) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT < 29) {
+                method.invoke(null, TRACE_TAG_APP, truncate(name), cookie);
+            } else {
+                method.invoke(null, truncate(name), cookie);
+            }
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Exception encountered while writing an async trace section: " + e);
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() <= MAX_SECTION_NAME_LENGTH ? name : name.substring(0, MAX_SECTION_NAME_LENGTH);
+    }
+}
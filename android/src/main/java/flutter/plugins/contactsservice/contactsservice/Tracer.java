@@ -0,0 +1,16 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+/***
+ * Receives the trace sections of the plugin. Synchronous sections nest on the thread
+ * which opened them, async sections span the whole method channel call
+ ***/
+interface Tracer {
+
+    void beginSection(String name);
+
+    void endSection();
+
+    void beginAsyncSection(String name, int cookie);
+
+    void endAsyncSection(String name, int cookie);
+}
@@ -0,0 +1,103 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static org.junit.Assume.assumeTrue;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * End to end timings of the provider facing code against {@link FakeContactsProvider}. Skipped
+ * unless run with {@code ./gradlew test -Pbenchmark}, the numbers are printed to the test output.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ContactsProviderBenchmark {
+
+  private static final int[] SIZES = {1000, 10000};
+  private static final int ITERATIONS = 5;
+
+  private ContentResolver resolver;
+
+  @Before
+  public void setUp() {
+    assumeTrue(Boolean.getBoolean("benchmark"));
+    resolver = RuntimeEnvironment.application.getContentResolver();
+  }
+
+  @Test
+  public void readContacts() {
+    for (int size : SIZES) {
+      FakeContactsProvider provider =
+          Robolectric.setupContentProvider(FakeContactsProvider.class, ContactsContract.AUTHORITY);
+      final List<String> lookupKeys = provider.seed(size, 42);
+      final ContactsServicePlugin plugin = new ContactsServicePlugin(resolver);
+
+      measure(provider, "getCursorForContactIdentifiers", size, new Runnable() {
+        @Override
+        public void run() {
+          plugin.getCursorForContactIdentifiers(lookupKeys, false).close();
+        }
+      });
+      measure(provider, "getContactsFrom", size, new Runnable() {
+        @Override
+        public void run() {
+          Cursor cursor = plugin.getCursorForContactIdentifiers(lookupKeys, false);
+          plugin.getContactsFrom(cursor);
+          cursor.close();
+        }
+      });
+      measure(provider, "getContactsSummary", size, new Runnable() {
+        @Override
+        public void run() {
+          plugin.getContactsSummary(lookupKeys, true);
+        }
+      });
+    }
+  }
+
+  @Test
+  public void updateContact() {
+    for (int size : SIZES) {
+      FakeContactsProvider provider =
+          Robolectric.setupContentProvider(FakeContactsProvider.class, ContactsContract.AUTHORITY);
+      final List<String> lookupKeys = provider.seed(size, 42);
+      final ContactsServicePlugin plugin = new ContactsServicePlugin(resolver);
+      final Cursor cursor = plugin.getCursorForContactIdentifiers(lookupKeys.subList(0, 100), false);
+      final List<Contact> contacts = plugin.getContactsFrom(cursor);
+      cursor.close();
+
+      measure(provider, "updateContact x100", size, new Runnable() {
+        @Override
+        public void run() {
+          for (Contact contact : contacts) {
+            contact.note = contact.note == null ? "note" : null;
+            plugin.updateContact(contact, null);
+          }
+        }
+      });
+    }
+  }
+
+  private static void measure(FakeContactsProvider provider, String name, int size, Runnable run) {
+    // warm up
+    run.run();
+    provider.resetRoundTrips();
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      run.run();
+    }
+    double millis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    System.out.println(String.format(Locale.US, "%-32s %6d contacts %10.1f ms %8d round trips",
+        name, size, millis, provider.getRoundTrips() / ITERATIONS));
+  }
+}
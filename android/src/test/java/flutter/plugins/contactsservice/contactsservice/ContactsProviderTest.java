@@ -0,0 +1,478 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel.Result;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ContactsProviderTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private FakeContactsProvider provider;
+  private ContentResolver resolver;
+  private ContactsServicePlugin plugin;
+  private List<String> lookupKeys;
+
+  @Before
+  public void setUp() {
+    provider = Robolectric.setupContentProvider(FakeContactsProvider.class, ContactsContract.AUTHORITY);
+    resolver = RuntimeEnvironment.application.getContentResolver();
+    plugin = new ContactsServicePlugin(resolver);
+    lookupKeys = provider.seed(50, 42);
+  }
+
+  @Test
+  public void getContactsFrom_decodesEveryRequestedContact() {
+    List<Contact> contacts = plugin.getContactsFrom(plugin.getCursorForContactIdentifiers(lookupKeys, false));
+
+    assertThat(contacts).hasSize(50);
+    for (Contact contact : contacts) {
+      assertThat(contact.givenName).isNotEmpty();
+      assertThat(contact.displayName).isEqualTo(contact.givenName + " " + contact.familyName);
+      assertThat(contact.phones).isNotEmpty();
+      assertThat(contact.androidRawContactVersions).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void getCursorForContactIdentifiers_onlyRequestedContactsInNameOrder() {
+    List<String> requested = Arrays.asList(lookupKeys.get(3), lookupKeys.get(17), lookupKeys.get(42));
+
+    List<Contact> contacts = plugin.getContactsFrom(plugin.getCursorForContactIdentifiers(requested, true));
+
+    List<String> identifiers = new ArrayList<>();
+    List<String> displayNames = new ArrayList<>();
+    for (Contact contact : contacts) {
+      identifiers.add(contact.identifier);
+      displayNames.add(contact.displayName.toLowerCase());
+    }
+    assertThat(identifiers).containsExactlyElementsIn(requested);
+    assertThat(displayNames).isInOrder();
+  }
+
+  @Test
+  public void getContactsSummary_coversRequestedContacts() {
+    List<String> requested = lookupKeys.subList(0, 10);
+
+    List<String> identifiers = new ArrayList<>();
+    for (Contact contact : plugin.getContactsSummary(requested, false)) {
+      identifiers.add(contact.identifier);
+      assertThat(contact.displayName).isNotEmpty();
+    }
+
+    assertThat(identifiers).containsExactlyElementsIn(requested).inOrder();
+  }
+
+  @Test
+  public void getContactsSummary_oneNarrowQueryPerSummaryAndNames() {
+    provider.resetRoundTrips();
+
+    List<Contact> summaries = plugin.getContactsSummary(null, true, true);
+
+    assertThat(provider.getRoundTrips()).isEqualTo(2);
+    assertThat(summaries).hasSize(50);
+    List<String> displayNames = new ArrayList<>();
+    for (Contact contact : summaries) {
+      assertThat(contact.displayName).isEqualTo(contact.givenName + " " + contact.familyName);
+      displayNames.add(contact.displayName.toLowerCase());
+    }
+    assertThat(displayNames).isInOrder();
+  }
+
+  @Test
+  public void updateContact_rewritesOnlyChangedRows() {
+    Contact contact = read(lookupKeys.get(5));
+    contact.givenName = "Renamed";
+    contact.phones.get(0).value = "+1 555 999 0000";
+    contact.emails.add(new Item(null, "work", "renamed@example.com"));
+    int otherPhones = contact.phones.size() - 1;
+
+    assertThat(plugin.updateContact(contact, null)).isTrue();
+
+    Contact updated = read(lookupKeys.get(5));
+    assertThat(updated.givenName).isEqualTo("Renamed");
+    assertThat(updated.displayName).startsWith("Renamed ");
+    assertThat(updated.phones).hasSize(otherPhones + 1);
+    assertThat(values(updated.phones)).contains("+1 555 999 0000");
+    assertThat(values(updated.emails)).contains("renamed@example.com");
+    assertThat(read(lookupKeys.get(6)).givenName).isNotEqualTo("Renamed");
+  }
+
+  @Test
+  public void updateContact_failsWhenModifiedSinceRead() {
+    Contact baseline = read(lookupKeys.get(8));
+    Contact edited = read(lookupKeys.get(8));
+    edited.note = "edited";
+    // another app edits the contact in between
+    ContentValues values = new ContentValues();
+    values.put(ContactsContract.CommonDataKinds.Phone.NUMBER, "+1 555 111 2222");
+    resolver.update(ContactsContract.Data.CONTENT_URI, values, ContactsContract.Data._ID + "=?",
+        new String[]{baseline.phones.get(0).identifier});
+
+    assertThat(plugin.updateContact(edited, baseline)).isFalse();
+
+    assertThat(read(lookupKeys.get(8)).note).isNull();
+  }
+
+  @Test
+  public void loadCache_servesSummariesFromMemoryUntilAChange() {
+    List<String> requested = lookupKeys.subList(0, 10);
+    List<Contact> expected = plugin.getContactsSummary(requested, true);
+    plugin.loadCache(resolver);
+    provider.resetRoundTrips();
+
+    List<Contact> cached = plugin.getContactsSummary(requested, true);
+
+    assertThat(provider.getRoundTrips()).isEqualTo(0);
+    List<String> identifiers = new ArrayList<>();
+    List<String> displayNames = new ArrayList<>();
+    for (Contact contact : cached) {
+      identifiers.add(contact.identifier);
+      displayNames.add(contact.displayName.toLowerCase());
+    }
+    assertThat(identifiers).containsExactlyElementsIn(requested);
+    assertThat(displayNames).isInOrder();
+    assertThat(cached.get(0).displayName).isEqualTo(expected.get(0).displayName);
+
+    Contact contact = read(lookupKeys.get(0));
+    contact.givenName = "Renamed";
+    plugin.updateContact(contact, null);
+    provider.resetRoundTrips();
+
+    plugin.getContactsSummary(requested, true);
+    assertThat(provider.getRoundTrips()).isGreaterThan(0);
+  }
+
+  @Test
+  public void getContactCount_countsWithoutReadingContacts() {
+    provider.resetRoundTrips();
+
+    assertThat(plugin.getContactCount(null, null, false)).isEqualTo(50);
+    assertThat(provider.getRoundTrips()).isEqualTo(1);
+    assertThat(plugin.getContactCount(null, null, true)).isEqualTo(50);
+
+    Cursor expected = provider.getDatabase().rawQuery(
+        "SELECT COUNT(DISTINCT contact_id) FROM raw_contacts WHERE account_type = 'com.whatsapp'", null);
+    expected.moveToFirst();
+    assertThat(plugin.getContactCount("com.whatsapp", null, false)).isEqualTo(expected.getInt(0));
+    assertThat(plugin.getContactCount("com.whatsapp", "WhatsApp", true)).isEqualTo(expected.getInt(0));
+    expected.close();
+    assertThat(plugin.getContactCount("com.whatsapp", "nobody", false)).isEqualTo(0);
+  }
+
+  @Test
+  public void getContactCount_skipsRawContactsNotAggregatedYet() {
+    int before = plugin.getContactCount("com.whatsapp", null, false);
+    provider.getDatabase().execSQL("INSERT INTO raw_contacts (account_type) VALUES ('com.whatsapp')");
+    provider.getDatabase().execSQL("UPDATE raw_contacts SET contact_id = NULL WHERE _id = last_insert_rowid()");
+
+    assertThat(plugin.getContactCount("com.whatsapp", null, false)).isEqualTo(before);
+  }
+
+  @Test
+  public void onMethodCall_deleteContactSucceedsWhenAlreadyDeleted() throws InterruptedException {
+    HashMap<String, Object> contact = new HashMap<>();
+    contact.put("identifier", lookupKeys.get(4));
+    RecordingResult first = new RecordingResult();
+    RecordingResult second = new RecordingResult();
+
+    plugin.onMethodCall(new MethodCall("deleteContact", contact), first);
+    plugin.onMethodCall(new MethodCall("deleteContact", contact), second);
+    await(first, second);
+
+    assertThat(first.errorMessage).isNull();
+    assertThat(second.errorMessage).isNull();
+    assertThat(plugin.getContactCount(null, null, false)).isEqualTo(49);
+  }
+
+  @Test
+  public void getSectionIndex_followsTheListOrder() {
+    insertNamed("\u00c9mile Zola");
+    insertNamed("42 Taxi");
+    insertNamed("\u00c5sa Berg");
+    insertNamed("Zoe Park");
+
+    SectionIndex index = plugin.getSectionIndex();
+    List<Contact> listed = plugin.getContactsSummary(null, true);
+
+    int position = 0;
+    for (int section = 0; section < index.titles.length; section++) {
+      for (int i = 0; i < index.counts[section]; i++) {
+        assertThat(SectionIndex.title(listed.get(position++).displayName, Locale.getDefault()))
+            .isEqualTo(index.titles[section]);
+      }
+    }
+    assertThat(position).isEqualTo(54);
+    assertThat(index.titles[0]).isEqualTo("#");
+    assertThat(index.titles).asList().containsAtLeast("Z", "\u00c5", "\u00c9").inOrder();
+  }
+
+  @Test
+  public void getSectionIndex_coversEveryContact() {
+    SectionIndex index = plugin.getSectionIndex();
+
+    int total = 0;
+    for (int count : index.counts) {
+      total += count;
+    }
+    assertThat(total).isEqualTo(50);
+    assertThat(index.titles).asList().containsNoDuplicates();
+  }
+
+  @Test
+  public void writeContactsFrom_encodesEachContactOnce() {
+    ContactStreamWriter writer = new ContactStreamWriter();
+
+    plugin.writeContactsFrom(provider.query(ContactsContract.Data.CONTENT_URI, null, null, null,
+        ContactsContract.Data.CONTACT_ID), writer, false, false);
+
+    assertThat(writer.getCount()).isEqualTo(50);
+    assertThat(writer.size()).isGreaterThan(0);
+  }
+
+  @Test
+  public void contactWindows_coverTheRequestedContactsInOrder() {
+    long[] all = plugin.getContactWindowIds(null, false);
+    long[] requested = plugin.getContactWindowIds(lookupKeys.subList(0, 20), true);
+    ContactStreamWriter writer = new ContactStreamWriter();
+    plugin.writeContactWindow(Arrays.copyOfRange(requested, 0, 10), writer, false, false, true);
+
+    assertThat(all).asList().containsNoDuplicates();
+    assertThat(all).asList().hasSize(50);
+    assertThat(all).asList().isInStrictOrder();
+    assertThat(requested).hasLength(20);
+    assertThat(writer.getCount()).isEqualTo(10);
+  }
+
+  @Test
+  public void getContactWindowIds_resolvesMoreKeysThanSelectionArgs() {
+    List<String> keys = new ArrayList<>(lookupKeys);
+    keys.addAll(provider.seed(1000, 7));
+    provider.resetRoundTrips();
+
+    long[] byName = plugin.getContactWindowIds(keys, true);
+    int roundTrips = provider.getRoundTrips();
+
+    assertThat(byName).asList().containsNoDuplicates();
+    assertThat(byName).hasLength(1050);
+    // the lookup keys in chunks, then the contact ids in name order
+    assertThat(roundTrips).isEqualTo(4);
+  }
+
+  @Test
+  public void accountPolicy_restrictsReadsToTheAllowedAccount() {
+    plugin.setAccountPolicy(new AccountPolicy(Arrays.asList("com.whatsapp"), null, null, null, true));
+    List<Contact> contacts = plugin.getContactsFrom(plugin.getCursorForContactIdentifiers(lookupKeys, false));
+
+    assertThat(contacts).hasSize(plugin.getContactCount("com.whatsapp", null, false));
+    for (Contact contact : contacts) {
+      assertThat(contact.androidAccountType).isEqualTo("com.whatsapp");
+    }
+  }
+
+  @Test
+  public void accountPolicy_keepsDeniedAccountsOutOfExportAndFingerprints() throws Exception {
+    // the contacts whose raw contacts all belong to the denied account type
+    Set<String> denied = contactLookupKeys(ContactsContract.RawContacts.ACCOUNT_TYPE + " = ?");
+    denied.removeAll(contactLookupKeys(ContactsContract.RawContacts.ACCOUNT_TYPE + " IS NULL OR "
+        + ContactsContract.RawContacts.ACCOUNT_TYPE + " != ?"));
+    assertThat(denied).isNotEmpty();
+    plugin.setAccountPolicy(new AccountPolicy(null, Arrays.asList("vnd.sec.contact.phone"), null, null, true));
+
+    File file = folder.newFile("contacts.vcf");
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("path", file.getPath());
+    arguments.put("withPhotos", false);
+    RecordingResult exported = new RecordingResult();
+    RecordingResult fingerprinted = new RecordingResult();
+    plugin.onMethodCall(new MethodCall("exportVCard", arguments), exported);
+    plugin.onMethodCall(new MethodCall("getContactFingerprints", null), fingerprinted);
+    await(exported, fingerprinted);
+
+    String vCards = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    assertThat(exported.value).isEqualTo(50 - denied.size());
+    assertThat(vCards.split("BEGIN:VCARD", -1)).hasLength(50 - denied.size() + 1);
+    Map<?, ?> fingerprints = (Map<?, ?>) fingerprinted.value;
+    assertThat(fingerprints).hasSize(50 - denied.size());
+    assertThat(fingerprints.keySet()).containsNoneIn(denied);
+  }
+
+  @Test
+  public void lookupKeyIndex_refreshesOnlyTheChangedContacts() {
+    LookupKeyIndex index = new LookupKeyIndex();
+    index.update(resolver);
+    long[] ids = (long[]) index.toMap().get("ids");
+    assertThat(ids).hasLength(50);
+
+    resolver.delete(ContactsContract.Contacts.CONTENT_URI, ContactsContract.Contacts._ID + "=?",
+        new String[]{String.valueOf(ids[0])});
+    Uri inserted = resolver.insert(ContactsContract.RawContacts.CONTENT_URI, new ContentValues());
+    provider.resetRoundTrips();
+    index.update(resolver);
+
+    assertThat(provider.getRoundTrips()).isEqualTo(2);
+    Map<String, Object> packed = index.toMap();
+    assertThat((long[]) packed.get("ids")).asList().doesNotContain(ids[0]);
+    assertThat((List<?>) packed.get("lookupKeys")).contains("0r" + ContentUris.parseId(inserted));
+    assertThat((List<?>) packed.get("lookupKeys")).hasSize(50);
+    index.close();
+  }
+
+  @Test
+  public void onMethodCall_readAfterAWriteDoesNotJoinTheEarlierRead() throws InterruptedException {
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("withThumbnails", false);
+    arguments.put("photoHighResolution", false);
+    arguments.put("orderByGivenName", true);
+    HashMap<String, Object> added = new HashMap<>();
+    added.put("givenName", "Added");
+    RecordingResult before = new RecordingResult();
+    RecordingResult after = new RecordingResult();
+
+    plugin.onMethodCall(new MethodCall("getContactsSummary", arguments), before);
+    plugin.onMethodCall(new MethodCall("addContact", added), new RecordingResult());
+    plugin.onMethodCall(new MethodCall("getContactsSummary", arguments), after);
+    await(before, after);
+
+    assertThat(after.value).isNotSameInstanceAs(before.value);
+    assertThat((List<?>) after.value).hasSize(51);
+  }
+
+  @Test
+  public void tracer_sectionsAreBalancedAroundEachPhase() {
+    final List<String> events = new ArrayList<>();
+    plugin.setTracer(new Tracer() {
+      private final List<String> open = new ArrayList<>();
+
+      @Override
+      public void beginSection(String name) {
+        open.add(name);
+        events.add("begin " + name);
+      }
+
+      @Override
+      public void endSection() {
+        events.add("end " + open.remove(open.size() - 1));
+      }
+
+      @Override
+      public void beginAsyncSection(String name, int cookie) {
+      }
+
+      @Override
+      public void endAsyncSection(String name, int cookie) {
+      }
+    });
+    Contact contact = read(lookupKeys.get(2));
+    contact.note = "traced";
+    plugin.updateContact(contact, null);
+
+    assertThat(events).containsAtLeast("begin getCursorForContactIdentifiers", "end getCursorForContactIdentifiers",
+        "begin getContactsFrom", "end getContactsFrom", "begin diff", "end diff").inOrder();
+    assertThat(events.get(events.size() - 1)).startsWith("end applyBatch");
+  }
+
+  // Runs the background tasks and the main looper until every result is answered
+  private void insertNamed(String displayName) {
+    Uri rawContact = resolver.insert(ContactsContract.RawContacts.CONTENT_URI, new ContentValues());
+    ContentValues name = new ContentValues();
+    name.put(ContactsContract.Data.RAW_CONTACT_ID, ContentUris.parseId(rawContact));
+    name.put(ContactsContract.Data.MIMETYPE, ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE);
+    name.put(ContactsContract.CommonDataKinds.StructuredName.DISPLAY_NAME, displayName);
+    resolver.insert(ContactsContract.Data.CONTENT_URI, name);
+  }
+
+  private Set<String> contactLookupKeys(String rawContactSelection) {
+    Set<String> lookupKeys = new HashSet<>();
+    Cursor cursor = resolver.query(ContactsContract.RawContacts.CONTENT_URI,
+        new String[]{ContactsContract.RawContacts.CONTACT_ID}, rawContactSelection,
+        new String[]{"vnd.sec.contact.phone"}, null);
+    while (cursor.moveToNext()) {
+      // the seeded contacts are looked up by the id of their first raw contact
+      lookupKeys.add("0r" + cursor.getLong(0));
+    }
+    cursor.close();
+    return lookupKeys;
+  }
+
+  private static void await(RecordingResult... results) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    for (RecordingResult result : results) {
+      while (!result.answered) {
+        assertThat(System.currentTimeMillis()).isLessThan(deadline);
+        Robolectric.flushBackgroundThreadScheduler();
+        ShadowLooper.idleMainLooper();
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  private static class RecordingResult implements Result {
+    volatile boolean answered;
+    Object value;
+    String errorMessage;
+
+    @Override
+    public void success(Object value) {
+      this.value = value;
+      answered = true;
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      this.errorMessage = errorMessage;
+      answered = true;
+    }
+
+    @Override
+    public void notImplemented() {
+      answered = true;
+    }
+  }
+
+  private Contact read(String lookupKey) {
+    List<Contact> contacts = plugin.getContactsFrom(
+        plugin.getCursorForContactIdentifiers(Arrays.asList(lookupKey), false));
+    assertThat(contacts).hasSize(1);
+    return contacts.get(0);
+  }
+
+  private static List<String> values(List<Item> items) {
+    List<String> values = new ArrayList<>();
+    for (Item item : items) {
+      values.add(item.value);
+    }
+    return values;
+  }
+}
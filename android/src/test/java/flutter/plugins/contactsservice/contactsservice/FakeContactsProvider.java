@@ -0,0 +1,456 @@
+package flutter.plugins.contactsservice.contactsservice;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.provider.ContactsContract;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An in-memory ContactsContract provider with the contacts, raw_contacts, data and groups tables
+ * of the real one, for tests and benchmarks on a JVM. Register it with
+ * {@code Robolectric.setupContentProvider(FakeContactsProvider.class, ContactsContract.AUTHORITY)}.
+ *
+ * <p>Triggers keep what the real provider derives up to date: raw contact versions are bumped on
+ * any change to their data, every raw contact inserted without a contact id gets its own contact
+ * (lookup key {@code "0r" + raw contact id}), and the display name and has_phone_number of the
+ * contact follow its data rows, as does its last updated timestamp. Deletes are immediate rather
+ * than flagged, deleted contacts are listed in deleted_contacts.
+ */
+public class FakeContactsProvider extends ContentProvider {
+
+  static final String NAME = ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE;
+  static final String PHONE = ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE;
+  static final String EMAIL = ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE;
+  static final String ORGANIZATION = ContactsContract.CommonDataKinds.Organization.CONTENT_ITEM_TYPE;
+  static final String POSTAL = ContactsContract.CommonDataKinds.StructuredPostal.CONTENT_ITEM_TYPE;
+  static final String PHOTO = ContactsContract.CommonDataKinds.Photo.CONTENT_ITEM_TYPE;
+
+  // what the provider stamps contacts with, milliseconds since the epoch
+  private static final String NOW = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+  private static final String[] SCHEMA = {
+      "CREATE TABLE contacts (_id INTEGER PRIMARY KEY, lookup TEXT NOT NULL, name_raw_contact_id INTEGER,"
+          + " display_name TEXT, has_phone_number INTEGER NOT NULL DEFAULT 0, photo_id INTEGER,"
+          + " photo_uri TEXT, photo_thumb_uri TEXT, starred INTEGER NOT NULL DEFAULT 0,"
+          + " in_visible_group INTEGER NOT NULL DEFAULT 1,"
+          + " contact_last_updated_timestamp INTEGER NOT NULL DEFAULT (" + NOW + "))",
+      "CREATE TABLE deleted_contacts (contact_id INTEGER PRIMARY KEY, contact_deleted_timestamp INTEGER NOT NULL)",
+      "CREATE TABLE raw_contacts (_id INTEGER PRIMARY KEY AUTOINCREMENT, contact_id INTEGER,"
+          + " account_type TEXT, account_name TEXT, sourceid TEXT, version INTEGER NOT NULL DEFAULT 1,"
+          + " dirty INTEGER NOT NULL DEFAULT 0, deleted INTEGER NOT NULL DEFAULT 0)",
+      "CREATE TABLE data (_id INTEGER PRIMARY KEY AUTOINCREMENT, raw_contact_id INTEGER NOT NULL,"
+          + " mimetype TEXT NOT NULL, is_primary INTEGER NOT NULL DEFAULT 0,"
+          + " is_super_primary INTEGER NOT NULL DEFAULT 0, data_version INTEGER NOT NULL DEFAULT 0,"
+          + " data1 TEXT, data2 TEXT, data3 TEXT, data4 TEXT, data5 TEXT, data6 TEXT, data7 TEXT,"
+          + " data8 TEXT, data9 TEXT, data10 TEXT, data11 TEXT, data12 TEXT, data13 TEXT, data14 TEXT,"
+          + " data15 BLOB)",
+      "CREATE TABLE groups (_id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, notes TEXT, system_id TEXT,"
+          + " account_type TEXT, account_name TEXT, sourceid TEXT, group_visible INTEGER NOT NULL DEFAULT 1,"
+          + " should_sync INTEGER NOT NULL DEFAULT 1, deleted INTEGER NOT NULL DEFAULT 0)",
+      "CREATE INDEX data_raw_contact_id ON data (raw_contact_id)",
+      "CREATE INDEX raw_contacts_contact_id ON raw_contacts (contact_id)",
+      "CREATE INDEX contacts_lookup ON contacts (lookup)",
+
+      // what Data.CONTENT_URI serves: the data rows with their raw contact and contact columns
+      "CREATE VIEW view_data AS SELECT data.*, raw_contacts.contact_id AS contact_id,"
+          + " raw_contacts.account_type AS account_type, raw_contacts.account_name AS account_name,"
+          + " raw_contacts.version AS version, contacts.lookup AS lookup, contacts.display_name AS display_name,"
+          + " contacts.has_phone_number AS has_phone_number, contacts.photo_id AS photo_id,"
+          + " contacts.photo_uri AS photo_uri, contacts.photo_thumb_uri AS photo_thumb_uri,"
+          + " contacts.starred AS starred, contacts.in_visible_group AS in_visible_group"
+          + " FROM data JOIN raw_contacts ON data.raw_contact_id = raw_contacts._id"
+          + " JOIN contacts ON raw_contacts.contact_id = contacts._id",
+
+      "CREATE TRIGGER raw_contacts_inserted AFTER INSERT ON raw_contacts WHEN NEW.contact_id IS NULL BEGIN"
+          + " INSERT INTO contacts (_id, lookup, name_raw_contact_id) VALUES (NEW._id, '0r' || NEW._id, NEW._id);"
+          + " UPDATE raw_contacts SET contact_id = NEW._id WHERE _id = NEW._id;"
+          + " END",
+      "CREATE TRIGGER raw_contacts_deleted AFTER DELETE ON raw_contacts BEGIN"
+          + " DELETE FROM data WHERE raw_contact_id = OLD._id;"
+          + " DELETE FROM contacts WHERE _id = OLD.contact_id"
+          + " AND NOT EXISTS (SELECT 1 FROM raw_contacts WHERE contact_id = OLD.contact_id);"
+          + " END",
+      "CREATE TRIGGER contacts_deleted AFTER DELETE ON contacts BEGIN"
+          + " DELETE FROM raw_contacts WHERE contact_id = OLD._id;"
+          + " INSERT OR REPLACE INTO deleted_contacts VALUES (OLD._id, " + NOW + ");"
+          + " END",
+      "CREATE TRIGGER data_inserted AFTER INSERT ON data BEGIN"
+          + " UPDATE raw_contacts SET version = version + 1, dirty = 1 WHERE _id = NEW.raw_contact_id;"
+          + touchContact("NEW.raw_contact_id")
+          + " END",
+      "CREATE TRIGGER data_updated AFTER UPDATE ON data BEGIN"
+          + " UPDATE raw_contacts SET version = version + 1, dirty = 1 WHERE _id = NEW.raw_contact_id;"
+          + touchContact("NEW.raw_contact_id")
+          + " END",
+      "CREATE TRIGGER data_deleted AFTER DELETE ON data BEGIN"
+          + " UPDATE raw_contacts SET version = version + 1, dirty = 1 WHERE _id = OLD.raw_contact_id;"
+          + touchContact("OLD.raw_contact_id")
+          + " END",
+      "CREATE TRIGGER name_inserted AFTER INSERT ON data WHEN NEW.mimetype = '" + NAME + "' BEGIN"
+          + updateDisplayName()
+          + " END",
+      "CREATE TRIGGER name_updated AFTER UPDATE ON data WHEN NEW.mimetype = '" + NAME + "' BEGIN"
+          + updateDisplayName()
+          + " END",
+      "CREATE TRIGGER phone_inserted AFTER INSERT ON data WHEN NEW.mimetype = '" + PHONE + "' BEGIN"
+          + " UPDATE contacts SET has_phone_number = 1"
+          + " WHERE _id = (SELECT contact_id FROM raw_contacts WHERE _id = NEW.raw_contact_id);"
+          + " END",
+      "CREATE TRIGGER phone_deleted AFTER DELETE ON data WHEN OLD.mimetype = '" + PHONE + "' BEGIN"
+          + " UPDATE contacts SET has_phone_number = EXISTS (SELECT 1 FROM data"
+          + " JOIN raw_contacts ON data.raw_contact_id = raw_contacts._id"
+          + " WHERE raw_contacts.contact_id = contacts._id AND data.mimetype = '" + PHONE + "')"
+          + " WHERE _id = (SELECT contact_id FROM raw_contacts WHERE _id = OLD.raw_contact_id);"
+          + " END",
+  };
+
+  private static final int CONTACTS = 1;
+  private static final int CONTACTS_ID = 2;
+  private static final int CONTACTS_ID_PHOTO = 3;
+  private static final int CONTACTS_LOOKUP = 4;
+  private static final int CONTACTS_LOOKUP_ID = 5;
+  private static final int RAW_CONTACTS = 6;
+  private static final int RAW_CONTACTS_ID = 7;
+  private static final int DATA = 8;
+  private static final int DATA_ID = 9;
+  private static final int GROUPS = 10;
+  private static final int GROUPS_ID = 11;
+  private static final int PHONE_LOOKUP = 12;
+  private static final int DELETED_CONTACTS = 13;
+
+  private static final UriMatcher MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+  static {
+    String authority = ContactsContract.AUTHORITY;
+    MATCHER.addURI(authority, "contacts", CONTACTS);
+    MATCHER.addURI(authority, "contacts/#", CONTACTS_ID);
+    MATCHER.addURI(authority, "contacts/#/photo", CONTACTS_ID_PHOTO);
+    MATCHER.addURI(authority, "contacts/lookup/*", CONTACTS_LOOKUP);
+    MATCHER.addURI(authority, "contacts/lookup/*/#", CONTACTS_LOOKUP_ID);
+    MATCHER.addURI(authority, "raw_contacts", RAW_CONTACTS);
+    MATCHER.addURI(authority, "raw_contacts/#", RAW_CONTACTS_ID);
+    MATCHER.addURI(authority, "data", DATA);
+    MATCHER.addURI(authority, "data/#", DATA_ID);
+    MATCHER.addURI(authority, "groups", GROUPS);
+    MATCHER.addURI(authority, "groups/#", GROUPS_ID);
+    MATCHER.addURI(authority, "phone_lookup/*", PHONE_LOOKUP);
+    MATCHER.addURI(authority, "deleted_contacts", DELETED_CONTACTS);
+  }
+
+  private static final String[] GIVEN_NAMES = {"Jane", "John", "Ana", "Li", "Mohammed", "Olga", "Kenji", "Pierre"};
+  private static final String[] FAMILY_NAMES = {"Doe", "Smith", "Garcia", "Wang", "Khan", "Ivanova", "Sato", "Dubois"};
+  private static final String[] ACCOUNT_TYPES = {"com.google", "com.google", "vnd.sec.contact.phone", null};
+
+  private SQLiteDatabase db;
+  private int roundTrips;
+
+  @Override
+  public boolean onCreate() {
+    // no name, the database lives in memory and goes away with the provider
+    db = new SQLiteOpenHelper(getContext(), null, null, 1) {
+      @Override
+      public void onCreate(SQLiteDatabase db) {
+        for (String statement : SCHEMA) {
+          db.execSQL(statement);
+        }
+      }
+
+      @Override
+      public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+      }
+    }.getWritableDatabase();
+    return true;
+  }
+
+  private static String touchContact(String rawContactId) {
+    return " UPDATE contacts SET contact_last_updated_timestamp = " + NOW
+        + " WHERE _id = (SELECT contact_id FROM raw_contacts WHERE _id = " + rawContactId + ");";
+  }
+
+  /**
+   * Keeps the display name of the contact in line with its structured name, composed from the
+   * name parts when the row has no display name, as the real provider does
+   */
+  private static String updateDisplayName() {
+    return " UPDATE contacts SET display_name = COALESCE(NULLIF(NEW.data1, ''), NULLIF(TRIM("
+        + "COALESCE(NEW.data4 || ' ', '') || COALESCE(NEW.data2 || ' ', '') || COALESCE(NEW.data5 || ' ', '')"
+        + " || COALESCE(NEW.data3 || ' ', '') || COALESCE(NEW.data6, '')), ''))"
+        + " WHERE _id = (SELECT contact_id FROM raw_contacts WHERE _id = NEW.raw_contact_id)"
+        + " AND name_raw_contact_id = NEW.raw_contact_id;";
+  }
+
+  /**
+   * Inserts {@code count} synthetic contacts in one transaction: a structured name, one to three
+   * phones, up to two emails, and now and then an organization, an address or a second raw
+   * contact from a messaging app aggregated into the same contact
+   *
+   * @return the lookup keys of the contacts, in insertion order
+   */
+  public List<String> seed(int count, long randomSeed) {
+    Random random = new Random(randomSeed);
+    List<String> lookupKeys = new ArrayList<>(count);
+    SQLiteStatement rawContact = db.compileStatement(
+        "INSERT INTO raw_contacts (account_type, account_name) VALUES (?, ?)");
+    SQLiteStatement linkedRawContact = db.compileStatement(
+        "INSERT INTO raw_contacts (contact_id, account_type, account_name) VALUES (?, ?, ?)");
+    SQLiteStatement data = db.compileStatement(
+        "INSERT INTO data (raw_contact_id, mimetype, data1, data2, data3, data4, data5) VALUES (?, ?, ?, ?, ?, ?, ?)");
+    db.beginTransaction();
+    try {
+      for (int i = 0; i < count; i++) {
+        bind(rawContact, ACCOUNT_TYPES[random.nextInt(ACCOUNT_TYPES.length)], "user@example.com");
+        long rawContactId = rawContact.executeInsert();
+        lookupKeys.add("0r" + rawContactId);
+
+        String givenName = GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+        String familyName = FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)] + i;
+        bind(data, String.valueOf(rawContactId), NAME, givenName + " " + familyName, givenName, familyName, null, null);
+        data.executeInsert();
+        int phones = 1 + random.nextInt(3);
+        for (int p = 0; p < phones; p++) {
+          String number = "+1 555 " + (100 + random.nextInt(900)) + " " + (1000 + random.nextInt(9000));
+          bind(data, String.valueOf(rawContactId), PHONE, number, String.valueOf(1 + random.nextInt(3)), null,
+              number.replace(" ", ""), null);
+          data.executeInsert();
+        }
+        int emails = random.nextInt(3);
+        for (int e = 0; e < emails; e++) {
+          bind(data, String.valueOf(rawContactId), EMAIL, givenName.toLowerCase() + i + "." + e + "@example.com",
+              String.valueOf(1 + random.nextInt(2)), null, null, null);
+          data.executeInsert();
+        }
+        if (random.nextInt(4) == 0) {
+          bind(data, String.valueOf(rawContactId), ORGANIZATION, "Company " + random.nextInt(100), "1", null,
+              "Engineer", null);
+          data.executeInsert();
+        }
+        if (random.nextInt(5) == 0) {
+          bind(data, String.valueOf(rawContactId), POSTAL, null, "1", null, random.nextInt(200) + " Main St",
+              null);
+          data.executeInsert();
+        }
+        if (random.nextInt(10) == 0) {
+          bind(linkedRawContact, String.valueOf(rawContactId), "com.whatsapp", "WhatsApp");
+          long whatsAppId = linkedRawContact.executeInsert();
+          bind(data, String.valueOf(whatsAppId), PHONE, "+1 555 000 " + (1000 + i % 9000), "2", null, null, null);
+          data.executeInsert();
+        }
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    return lookupKeys;
+  }
+
+  private static void bind(SQLiteStatement statement, String... values) {
+    statement.clearBindings();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        statement.bindNull(i + 1);
+      } else {
+        statement.bindString(i + 1, values[i]);
+      }
+    }
+  }
+
+  /**
+   * @return the number of calls to the provider (queries, writes and batches) since the last reset
+   */
+  public int getRoundTrips() {
+    return roundTrips;
+  }
+
+  public void resetRoundTrips() {
+    roundTrips = 0;
+  }
+
+  public SQLiteDatabase getDatabase() {
+    return db;
+  }
+
+  @Override
+  public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+    roundTrips++;
+    switch (MATCHER.match(uri)) {
+      case CONTACTS:
+        if (projection != null && projection.length == 1 && BaseColumns._COUNT.equals(projection[0])) {
+          // the real provider maps the lone _count column to COUNT(*)
+          projection = new String[]{"COUNT(*) AS " + BaseColumns._COUNT};
+        }
+        return db.query("contacts", projection, selection, selectionArgs, null, null, sortOrder);
+      case CONTACTS_ID:
+        return db.query("contacts", projection, and(selection, "_id = " + ContentUris.parseId(uri)), selectionArgs,
+            null, null, sortOrder);
+      case CONTACTS_LOOKUP:
+      case CONTACTS_LOOKUP_ID:
+        return queryLookup(uri, projection);
+      case CONTACTS_ID_PHOTO:
+        return db.query("view_data", new String[]{"data15"},
+            "contact_id = ? AND mimetype = ?", new String[]{uri.getPathSegments().get(1), PHOTO}, null, null, null);
+      case RAW_CONTACTS:
+        return db.query("raw_contacts", projection, selection, selectionArgs, null, null, sortOrder);
+      case RAW_CONTACTS_ID:
+        return db.query("raw_contacts", projection, and(selection, "_id = " + ContentUris.parseId(uri)),
+            selectionArgs, null, null, sortOrder);
+      case DATA:
+        return db.query("view_data", projection, selection, selectionArgs, null, null, sortOrder);
+      case DATA_ID:
+        return db.query("view_data", projection, and(selection, "_id = " + ContentUris.parseId(uri)), selectionArgs,
+            null, null, sortOrder);
+      case GROUPS:
+        return db.query("groups", projection, selection, selectionArgs, null, null, sortOrder);
+      case GROUPS_ID:
+        return db.query("groups", projection, and(selection, "_id = " + ContentUris.parseId(uri)), selectionArgs,
+            null, null, sortOrder);
+      case DELETED_CONTACTS:
+        return db.query("deleted_contacts", projection, selection, selectionArgs, null, null, sortOrder);
+      case PHONE_LOOKUP:
+        // numbers compared on their digits only, the real provider is smarter about country codes
+        return db.rawQuery("SELECT DISTINCT contact_id AS _id, lookup, display_name FROM view_data"
+                + " WHERE mimetype = ? AND " + digits("data1") + " = " + digits("?"),
+            new String[]{PHONE, uri.getLastPathSegment()});
+      default:
+        throw new IllegalArgumentException("Unsupported uri " + uri);
+    }
+  }
+
+  /**
+   * Finds the contact by lookup key, then by the contact id of the lookup uri when the key is stale
+   */
+  private Cursor queryLookup(Uri uri, String[] projection) {
+    List<String> segments = uri.getPathSegments();
+    Cursor cursor = db.query("contacts", projection, "lookup = ?", new String[]{segments.get(2)}, null, null, null);
+    if (cursor.getCount() == 0 && segments.size() > 3) {
+      cursor.close();
+      cursor = db.query("contacts", projection, "_id = ?", new String[]{segments.get(3)}, null, null, null);
+    }
+    return cursor;
+  }
+
+  private static String digits(String column) {
+    String expression = column;
+    for (String separator : new String[]{" ", "-", "(", ")", "+", "."}) {
+      expression = "REPLACE(" + expression + ", '" + separator + "', '')";
+    }
+    return expression;
+  }
+
+  private static String and(String selection, String condition) {
+    return selection == null || selection.isEmpty() ? condition : "(" + selection + ") AND " + condition;
+  }
+
+  @Override
+  public Uri insert(Uri uri, ContentValues values) {
+    roundTrips++;
+    switch (MATCHER.match(uri)) {
+      case RAW_CONTACTS:
+        return notifyChange(ContentUris.withAppendedId(ContactsContract.RawContacts.CONTENT_URI,
+            db.insertOrThrow("raw_contacts", null, values)));
+      case DATA:
+        return notifyChange(ContentUris.withAppendedId(ContactsContract.Data.CONTENT_URI,
+            db.insertOrThrow("data", null, values)));
+      case GROUPS:
+        return notifyChange(ContentUris.withAppendedId(ContactsContract.Groups.CONTENT_URI,
+            db.insertOrThrow("groups", null, values)));
+      default:
+        throw new IllegalArgumentException("Unsupported uri " + uri);
+    }
+  }
+
+  @Override
+  public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    roundTrips++;
+    int count = db.update(table(uri), values, idSelection(uri, selection), selectionArgs);
+    notifyChange(uri);
+    return count;
+  }
+
+  @Override
+  public int delete(Uri uri, String selection, String[] selectionArgs) {
+    roundTrips++;
+    int count = db.delete(table(uri), idSelection(uri, selection), selectionArgs);
+    notifyChange(uri);
+    return count;
+  }
+
+  // like the real provider, every change is notified on the authority uri
+  private Uri notifyChange(Uri uri) {
+    getContext().getContentResolver().notifyChange(ContactsContract.AUTHORITY_URI, null);
+    return uri;
+  }
+
+  private static String table(Uri uri) {
+    switch (MATCHER.match(uri)) {
+      case CONTACTS:
+      case CONTACTS_ID:
+        return "contacts";
+      case RAW_CONTACTS:
+      case RAW_CONTACTS_ID:
+        return "raw_contacts";
+      case DATA:
+      case DATA_ID:
+        return "data";
+      case GROUPS:
+      case GROUPS_ID:
+        return "groups";
+      default:
+        throw new IllegalArgumentException("Unsupported uri " + uri);
+    }
+  }
+
+  private static String idSelection(Uri uri, String selection) {
+    switch (MATCHER.match(uri)) {
+      case CONTACTS_ID:
+      case RAW_CONTACTS_ID:
+      case GROUPS_ID:
+        return and(selection, "_id = " + ContentUris.parseId(uri));
+      case DATA:
+        // data rows may be selected on the contact columns, such as contact_id, as with the real provider
+        return selection == null ? null : "_id IN (SELECT _id FROM view_data WHERE " + selection + ")";
+      case DATA_ID:
+        return selection == null ? "_id = " + ContentUris.parseId(uri)
+            : "_id IN (SELECT _id FROM view_data WHERE (" + selection + ") AND _id = " + ContentUris.parseId(uri) + ")";
+      default:
+        return selection;
+    }
+  }
+
+  /**
+   * Applies the whole batch in one transaction, a failed assertion rolls all of it back
+   */
+  @Override
+  public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+      throws OperationApplicationException {
+    roundTrips++;
+    int before = roundTrips;
+    db.beginTransaction();
+    try {
+      ContentProviderResult[] results = super.applyBatch(operations);
+      db.setTransactionSuccessful();
+      return results;
+    } finally {
+      db.endTransaction();
+      // the operations of a batch are a single call from the caller's point of view
+      roundTrips = before;
+    }
+  }
+
+  @Override
+  public String getType(Uri uri) {
+    return null;
+  }
+}
@@ -2,6 +2,7 @@ import 'dart:async';
 import 'dart:typed_data';
 
 import 'package:collection/collection.dart';
+import 'package:flutter/foundation.dart' show ReadBuffer, TargetPlatform, defaultTargetPlatform;
 import 'package:flutter/services.dart';
 import 'package:quiver/core.dart';
 
@@ -9,38 +10,65 @@ export 'share.dart';
 
 class ContactsService {
   static const MethodChannel _channel = MethodChannel('github.com/clovisnicolas/flutter_contacts');
+  static const EventChannel _progressChannel = EventChannel('github.com/clovisnicolas/flutter_contacts/progress');
+
+  /// Progress of the long running methods such as [importVCard] and [exportVCard], as maps holding
+  /// the `method` name and the `count` of contacts processed so far. Only
+  /// implemented on Android.
+  static Stream<Map> get progress => _progressChannel.receiveBroadcastStream().map((event) => event as Map);
 
   /// Fetches all contacts, or when specified, the contacts with a name
-  /// matching [query]
+  /// matching [query]. When given, [sortOrder] sorts them for the user's
+  /// locale instead of [orderByGivenName], only on Android.
+  ///
+  /// With [boundedMemory], Android reads the contacts in windows of 200
+  /// contacts, one call each, for very large address books on low memory
+  /// devices. The platform side then holds the contact ids plus a single
+  /// window of encoded contacts at a time, the returned contacts themselves
+  /// still take memory in proportion to the address book. [sortOrder] is
+  /// ignored then.
   static Future<Iterable<Contact>> getContacts(
       {String query,
       bool withThumbnails = true,
       bool photoHighResolution = true,
       bool orderByGivenName = true,
+      ContactSortOrder sortOrder,
+      bool boundedMemory = false,
       bool iOSLocalizedLabels = true}) async {
+    if (boundedMemory && defaultTargetPlatform == TargetPlatform.android) {
+      // the query is the lookup key of a contact on Android
+      return _getContactsInWindows(query, withThumbnails, photoHighResolution, orderByGivenName);
+    }
     Iterable contacts = await _channel.invokeMethod('getContacts', <String, dynamic>{
       'query': query,
       'withThumbnails': withThumbnails,
       'photoHighResolution': photoHighResolution,
       'orderByGivenName': orderByGivenName,
+      'sortOrder': _sortOrderToString(sortOrder),
       'iOSLocalizedLabels': iOSLocalizedLabels,
     });
     return contacts.map((m) => Contact.fromMap(m));
   }
 
   /// Fetches all contacts with names fields for list screen, or when specified, the contacts with a name
-  /// matching [query]
+  /// matching [query]. One summary per contact with its display name and
+  /// [Contact.photoThumbnailUri], the other name fields are only read with
+  /// [withNames] on Android.
   static Future<Iterable<Contact>> getContactsSummary(
       {String query,
       bool withThumbnails = true,
       bool photoHighResolution = false,
       bool orderByGivenName = true,
+      ContactSortOrder sortOrder,
+      bool withNames = false,
       bool iOSLocalizedLabels = true}) async {
     Iterable contacts = await _channel.invokeMethod('getContactsSummary', <String, dynamic>{
       'query': query,
       'withThumbnails': withThumbnails,
       'photoHighResolution': photoHighResolution,
       'orderByGivenName': orderByGivenName,
+      'sortOrder': _sortOrderToString(sortOrder),
+      'withNames': withNames,
       'iOSLocalizedLabels': iOSLocalizedLabels,
     });
     return contacts.map((m) => Contact.fromSummaryMap(m));
@@ -53,12 +81,16 @@ class ContactsService {
       bool withThumbnails = true,
       bool photoHighResolution = false,
       bool orderByGivenName = true,
+      ContactSortOrder sortOrder,
+      bool withNames = false,
       bool iOSLocalizedLabels = true}) async {
     Iterable contacts = await _channel.invokeMethod('getContactsSummary', <String, dynamic>{
       'identifiers': identifiers.join('|'),
       'withThumbnails': withThumbnails,
       'photoHighResolution': photoHighResolution,
       'orderByGivenName': orderByGivenName,
+      'sortOrder': _sortOrderToString(sortOrder),
+      'withNames': withNames,
       'iOSLocalizedLabels': iOSLocalizedLabels,
     });
     return contacts.map((m) => Contact.fromSummaryMap(m));
@@ -93,17 +125,56 @@ class ContactsService {
       bool withThumbnails = true,
       bool photoHighResolution = false,
       bool orderByGivenName = true,
+      ContactSortOrder sortOrder,
+      bool boundedMemory = false,
       bool iOSLocalizedLabels = true}) async {
+    if (boundedMemory && defaultTargetPlatform == TargetPlatform.android) {
+      return _getContactsInWindows(identifiers.join('|'), withThumbnails, photoHighResolution, orderByGivenName);
+    }
     Iterable contacts = await _channel.invokeMethod('getContactsByIdentifiers', <String, dynamic>{
       'identifiers': identifiers.join('|'),
       'withThumbnails': withThumbnails,
       'photoHighResolution': photoHighResolution,
       'orderByGivenName': orderByGivenName,
+      'sortOrder': _sortOrderToString(sortOrder),
       'iOSLocalizedLabels': iOSLocalizedLabels,
     });
     return contacts.map((m) => Contact.fromMap(m));
   }
 
+  /// The number of contacts read by each call of a bounded memory read
+  static const int _windowSize = 200;
+
+  /// Reads the ids of the contacts, all of them without [identifiers], then
+  /// the contacts a window at a time. Each window comes as the bytes of the
+  /// contact maps encoded one after the other.
+  static Future<Iterable<Contact>> _getContactsInWindows(
+      String identifiers, bool withThumbnails, bool photoHighResolution, bool orderByGivenName) async {
+    Int64List contactIds = await _channel.invokeMethod('getContactWindowIds', <String, dynamic>{
+      'identifiers': identifiers,
+      'orderByGivenName': orderByGivenName,
+    });
+    final contacts = List<Contact>();
+    if (contactIds == null) {
+      return contacts;
+    }
+    const codec = StandardMessageCodec();
+    for (var start = 0; start < contactIds.length; start += _windowSize) {
+      final end = start + _windowSize < contactIds.length ? start + _windowSize : contactIds.length;
+      Uint8List window = await _channel.invokeMethod('getContactWindow', <String, dynamic>{
+        'contactIds': contactIds.sublist(start, end),
+        'withThumbnails': withThumbnails,
+        'photoHighResolution': photoHighResolution,
+        'orderByGivenName': orderByGivenName,
+      });
+      final buffer = ReadBuffer(ByteData.view(window.buffer, window.offsetInBytes, window.lengthInBytes));
+      while (buffer.hasRemaining) {
+        contacts.add(Contact.fromMap(codec.readValue(buffer)));
+      }
+    }
+    return contacts;
+  }
+
   /// Fetches all contacts, or when specified, the contacts with the phone
   /// matching [phone]
   static Future<Iterable<Contact>> getContactsForPhone(String phone,
@@ -156,20 +227,214 @@ class ContactsService {
     return "";
   }
 
-  /// Deletes the [contact] if it has a valid identifier
+  /// Adds all [contacts] to the device contact list in as few transactions as possible
+  /// and returns their identifiers, in the same order. Only implemented on Android.
+  ///
+  /// Large lists are committed in several transactions. When one fails the earlier ones
+  /// stay committed: the [PlatformException] details hold the number of contacts
+  /// already added under `addedCount`, the first ones of [contacts], and their
+  /// identifiers in order under `added`, so a retry can skip them instead of adding
+  /// them twice. `added` is missing when the identifiers could not be read back.
+  static Future<List<String>> addContacts(Iterable<Contact> contacts) async {
+    Iterable identifiers = await _channel.invokeMethod('addContacts', contacts.map((c) => Contact._toMap(c)).toList());
+    return identifiers?.map((item) => item as String)?.toList() ?? List<String>();
+  }
+
+  /// Imports the vCard 2.1, 3.0 or 4.0 file at [path], streaming it so files of
+  /// any size can be imported, and returns the number of contacts added. The
+  /// [progress] stream reports the contacts imported so far. Only implemented on Android.
+  static Future<int> importVCard(String path) =>
+      _channel.invokeMethod('importVCard', <String, dynamic>{'path': path});
+
+  /// Writes the contacts with the given [identifiers], or all contacts, as a
+  /// vCard 3.0 file at [path] and returns the number of contacts written. The
+  /// contacts are streamed to the file so any number of them can be exported,
+  /// [withPhotos] embeds their full size photos. Only implemented on Android.
+  static Future<int> exportVCard(String path, {List<String> identifiers, bool withPhotos = false}) =>
+      _channel.invokeMethod('exportVCard', <String, dynamic>{
+        'path': path,
+        'identifiers': identifiers?.join('|'),
+        'withPhotos': withPhotos,
+      });
+
+  /// Groups the contacts which are likely the same person, because they share
+  /// a phone number, an email address or a name. Only implemented on Android.
+  static Future<List<DuplicateCluster>> findDuplicates() async {
+    Iterable clusters = await _channel.invokeMethod('findDuplicates');
+    return clusters?.map((m) => DuplicateCluster.fromMap(m))?.toList() ?? List<DuplicateCluster>();
+  }
+
+  /// Returns a 64 bit fingerprint of every contact by identifier. A fingerprint
+  /// only changes when the contact's fields do (photos aside), so comparing them
+  /// with a previous call tells which contacts to fetch again. Only implemented on Android.
+  static Future<Map<String, int>> getContactFingerprints() async {
+    Map fingerprints = await _channel.invokeMethod('getContactFingerprints');
+    return fingerprints?.map((k, v) => MapEntry(k as String, v as int)) ?? Map<String, int>();
+  }
+
+  /// Returns the identifiers of the contacts having a phone number whose
+  /// SHA-256 hash, of [salt] followed by the number in its E.164 form, is one of
+  /// [packedHashes], 32 bytes each one after the other. The numbers are hashed
+  /// and looked up natively, in parallel. A number the contacts provider did not
+  /// normalize is converted to E.164 using the device's country, and dropped when
+  /// it cannot be converted, which before Android 5.0 is always the case. Only
+  /// implemented on Android.
+  static Future<List<String>> matchPhoneHashes(Uint8List packedHashes, {String salt}) async {
+    Iterable identifiers = await _channel.invokeMethod('matchPhoneHashes', <String, dynamic>{
+      'hashes': packedHashes,
+      'salt': salt,
+    });
+    return identifiers?.map((item) => item as String)?.toList() ?? List<String>();
+  }
+
+  /// Returns the number of contacts without fetching them, only those with a
+  /// raw contact of the given account when [accountType] or [accountName] is
+  /// given, and only those with a phone number when [hasPhoneNumber] is true.
+  /// Only implemented on Android.
+  static Future<int> getContactCount({String accountType, String accountName, bool hasPhoneNumber = false}) async {
+    int count = await _channel.invokeMethod('getContactCount', <String, dynamic>{
+      'accountType': accountType,
+      'accountName': accountName,
+      'hasPhoneNumber': hasPhoneNumber,
+    });
+    return count ?? 0;
+  }
+
+  /// Returns the sections of the contacts in the order [getContacts] and
+  /// [getContactsSummary] list them by display name, each with its title and
+  /// number of contacts, for fast scrollers. Names starting with a digit or a
+  /// symbol are under `#`, accented letters get their own sections after Z and
+  /// a title can come back when the names it covers are apart in the list.
+  /// Only implemented on Android.
+  static Future<List<ContactSection>> getSectionIndex() async {
+    Map index = await _channel.invokeMethod('getSectionIndex');
+    if (index == null) {
+      return List<ContactSection>();
+    }
+    List titles = index['titles'];
+    List counts = index['counts'];
+    return List<ContactSection>.generate(titles.length, (i) => ContactSection(titles[i] as String, counts[i] as int));
+  }
+
+  /// Returns what the calls made so far cost, by method name: the number of
+  /// calls, the rows scanned, contacts decoded, payload bytes and provider
+  /// round trips, along with histograms of the queue wait, provider,
+  /// serialization and total times in microseconds. Calls answered by an
+  /// identical read already running only count in `coalesced`, with the time
+  /// they waited in the `coalescedWait` histogram. Only implemented on Android.
+  static Future<Map<String, dynamic>> getMetrics() async {
+    Map metrics = await _channel.invokeMethod('getMetrics');
+    return metrics?.map((k, v) => MapEntry(k as String, v)) ?? Map<String, dynamic>();
+  }
+
+  /// Clears the metrics returned by [getMetrics]. Only implemented on Android.
+  static Future resetMetrics() => _channel.invokeMethod('resetMetrics');
+
+  /// Sets the accounts the raw contacts read and updated may belong to.
+  /// Account types and names in the allow lists match exactly, the denied
+  /// account types match any type containing them. Reads of the data rows are
+  /// filtered by the provider unless [filterReads] is false, updates always
+  /// leave the other raw contacts alone. The filtered reads are those of
+  /// [getContacts], [getContactsByIdentifiers], [getContactsForPhone],
+  /// [exportVCard], [getContactFingerprints], [findDuplicates],
+  /// [matchPhoneHashes] and [getContactCount]. The calls
+  /// listing the aggregated contacts, [getContactsSummary],
+  /// [getContactsSummaryByIdentifiers], [getIdentifiers], [getSectionIndex],
+  /// [getContactsLookupKeys] and [getContactLookupKeyTable], are not filtered,
+  /// the names of summaries only come from the allowed accounts. Calling it
+  /// without arguments restores the default, which only keeps updates away
+  /// from messaging apps. Only implemented on Android.
+  static Future setAccountPolicy(
+      {List<String> allowedAccountTypes,
+      List<String> deniedAccountTypes,
+      List<String> allowedAccountNames,
+      List<String> deniedAccountNames,
+      bool filterReads = true}) {
+    if (allowedAccountTypes == null &&
+        deniedAccountTypes == null &&
+        allowedAccountNames == null &&
+        deniedAccountNames == null) {
+      return _channel.invokeMethod('setAccountPolicy');
+    }
+    return _channel.invokeMethod('setAccountPolicy', <String, dynamic>{
+      'allowedAccountTypes': allowedAccountTypes,
+      'deniedAccountTypes': deniedAccountTypes,
+      'allowedAccountNames': allowedAccountNames,
+      'deniedAccountNames': deniedAccountNames,
+      'filterReads': filterReads,
+    });
+  }
+
+  /// Deletes the [contact] if it has a valid identifier, a contact already
+  /// deleted is not an error
   static Future deleteContact(Contact contact) => _channel.invokeMethod('deleteContact', Contact._toMap(contact));
 
   /// Deletes the contacts with specified identifiers if they have valid identifiers
-  static Future deleteContactsByIdentifiers(List<String> identifiers) =>
-      _channel.invokeMethod('deleteContactsByIdentifiers', <String, dynamic>{'identifiers': identifiers.join('|')});
+  /// and returns the identifiers which did not match any contact. These are only
+  /// reported on Android.
+  static Future<List<String>> deleteContactsByIdentifiers(List<String> identifiers) async {
+    Iterable notFound =
+        await _channel.invokeMethod('deleteContactsByIdentifiers', <String, dynamic>{'identifiers': identifiers.join('|')});
+    return notFound?.map((item) => item as String)?.toList() ?? List<String>();
+  }
 
   /// Updates the [contact] if it has a valid identifier
-  static Future updateContact(Contact contact) => _channel.invokeMethod('updateContact', Contact._toMap(contact));
+  ///
+  /// On Android the update fails if the contact was modified since it was read,
+  /// re-read it to update it again. Passing the contact as it was read as [baseline]
+  /// saves reading the stored contact before updating it.
+  static Future updateContact(Contact contact, {Contact baseline}) =>
+      _channel.invokeMethod('updateContact', _toUpdateMap(contact, baseline));
+
+  /// Updates all [contacts] and returns the identifiers of the contacts which could not
+  /// be found. [baselines], when given, holds the contact as it was read for each of the
+  /// [contacts], see [updateContact]. Only implemented on Android.
+  ///
+  /// Large lists are committed in several transactions, each holding whole contacts.
+  /// When one fails, for instance because a contact was modified since it was read, the
+  /// earlier ones stay committed: the [PlatformException] details list the identifiers
+  /// of the contacts updated or left unchanged under `updated`, of the ones not written
+  /// under `failed` and of the ones not found under `notFound`. Re-read the failed
+  /// contacts before updating them again.
+  static Future<List<String>> updateContacts(Iterable<Contact> contacts, {Iterable<Contact> baselines}) async {
+    final contactList = contacts.toList();
+    final baselineList = baselines?.toList();
+    final maps = [];
+    for (var i = 0; i < contactList.length; i++) {
+      maps.add(_toUpdateMap(contactList[i], baselineList != null && i < baselineList.length ? baselineList[i] : null));
+    }
+    Iterable notFound = await _channel.invokeMethod('updateContacts', maps);
+    return notFound?.map((item) => item as String)?.toList() ?? List<String>();
+  }
+
+  static Map _toUpdateMap(Contact contact, Contact baseline) {
+    final map = Contact._toMap(contact);
+    if (baseline != null) {
+      map["baseline"] = Contact._toMap(baseline);
+    }
+    return map;
+  }
 
   /// Fetches hashmap of all contact id and its lookupkey
   /// matching [query]
   static Future<Map> getContactsLookupKeys() async {
-    return await _channel.invokeMethod('getContactsLookupKeys');
+    final table = await getContactLookupKeyTable();
+    final map = Map<String, String>();
+    for (int i = 0; i < table.ids.length; i++) {
+      map[table.ids[i].toString()] = table.lookupKeys[i];
+    }
+    return map;
+  }
+
+  /// Fetches the contact ids and lookup keys of all contacts as they are sent
+  /// by the platform, without building a map. Later calls only read the
+  /// contacts changed in between. Only implemented on Android.
+  static Future<ContactLookupKeys> getContactLookupKeyTable() async {
+    Map table = await _channel.invokeMethod('getContactsLookupKeys');
+    if (table == null) {
+      return ContactLookupKeys(Int64List(0), List<String>());
+    }
+    return ContactLookupKeys(table['ids'] as Int64List, (table['lookupKeys'] as List).cast<String>());
   }
 
   static Future<Contact> openContactForm({bool iOSLocalizedLabels = true}) async {
@@ -223,8 +488,75 @@ class ContactsService {
       throw FormOperationException(errorCode: FormOperationErrorCode.FORM_OPERATION_UNKNOWN_ERROR);
     }
   }
+
+  static String _sortOrderToString(ContactSortOrder sortOrder) {
+    switch (sortOrder) {
+      case ContactSortOrder.givenName:
+        return 'givenName';
+      case ContactSortOrder.familyName:
+        return 'familyName';
+      case ContactSortOrder.displayName:
+        return 'displayName';
+      case ContactSortOrder.phonetic:
+        return 'phonetic';
+    }
+    return null;
+  }
 }
 
+/// Contacts found by [ContactsService.findDuplicates] to be the same person
+class DuplicateCluster {
+  DuplicateCluster.fromMap(Map m)
+      : identifiers = (m["identifiers"] as Iterable).cast<String>().toList(),
+        reasons = (m["reasons"] as Iterable).cast<String>().toList();
+
+  /// The identifiers of the duplicate contacts
+  final List<String> identifiers;
+
+  /// What the contacts have in common: `phone`, `email`, `name` or `phoneticName`
+  final List<String> reasons;
+}
+
+/// A section of the contact list, as returned by [ContactsService.getSectionIndex]
+class ContactSection {
+  ContactSection(this.title, this.count);
+
+  /// The letter the names of the section start with, `#` for the others
+  final String title;
+
+  /// The number of contacts in the section
+  final int count;
+}
+
+/// Contact ids in ascending order and the lookup key of each at the same index
+class ContactLookupKeys {
+  ContactLookupKeys(this.ids, this.lookupKeys);
+
+  final Int64List ids;
+  final List<String> lookupKeys;
+
+  /// The lookup key of the contact, null when unknown
+  String lookupKey(int id) {
+    int low = 0;
+    int high = ids.length - 1;
+    while (low <= high) {
+      final middle = (low + high) >> 1;
+      if (ids[middle] < id) {
+        low = middle + 1;
+      } else if (ids[middle] > id) {
+        high = middle - 1;
+      } else {
+        return lookupKeys[middle];
+      }
+    }
+    return null;
+  }
+}
+
+/// How contacts are sorted, with the collation rules of the user's locale.
+/// Contacts missing the names of the sort order sort on their display name.
+enum ContactSortOrder { givenName, familyName, displayName, phonetic }
+
 class FormOperationException implements Exception {
   final FormOperationErrorCode errorCode;
 
@@ -275,6 +607,11 @@ class Contact {
   String androidAccountTypeRaw, androidAccountName;
   AndroidAccountType androidAccountType;
 
+  /// Version of each raw contact of this contact when it was read, used by
+  /// [ContactsService.updateContact] to detect concurrent modifications. Only
+  /// set on Android.
+  Map<String, int> androidRawContactVersions;
+
   Iterable<Item> emails = [];
   Iterable<Item> phones = [];
   Iterable<PostalAddress> postalAddresses = [];
@@ -286,6 +623,10 @@ class Contact {
   Iterable<String> labels = [];
 
   Uint8List avatar;
+
+  /// Content uri of the contact's thumbnail, only set on summaries. Only
+  /// implemented on Android.
+  String photoThumbnailUri;
   DateTime birthday;
   String birthDayString;
 
@@ -302,6 +643,7 @@ class Contact {
     familyName = m["familyName"];
     prefix = m["prefix"];
     suffix = m["suffix"];
+    photoThumbnailUri = m["photoThumbnailUri"];
     try {
       avatar = m["avatar"];
     } catch (e) {
@@ -343,6 +685,7 @@ class Contact {
     websites = (m["websites"] as Iterable)?.map((m) => Item.fromMap(m));
     socialProfiles = (m["socialProfiles"] as Iterable)?.map((m) => SocialProfile.fromMap(m));
     labels = m["labels"]?.cast<String>();
+    androidRawContactVersions = (m["androidRawContactVersions"] as Map)?.cast<String, int>();
     try {
       avatar = m["avatar"];
     } catch (e) {
@@ -472,6 +815,7 @@ class Contact {
         "socialProfiles": socialProfiles,
         "websites": websites,
         "labels": contact.labels,
+        "androidRawContactVersions": contact.androidRawContactVersions,
       };
       return map;
     }
@@ -1,6 +1,7 @@
 import 'dart:typed_data';
 
 import 'package:contacts_service/contacts_service.dart';
+import 'package:flutter/foundation.dart' show WriteBuffer;
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 
@@ -44,6 +45,51 @@ void main() {
           'birthday': '1994-02-01'
         },
       ];
+    } else if (methodCall.method == 'findDuplicates') {
+      return [
+        {
+          'identifiers': ['id1', 'id2'],
+          'reasons': ['phone']
+        },
+      ];
+    } else if (methodCall.method == 'getContactFingerprints') {
+      return {'id1': 42, 'id2': -7};
+    } else if (methodCall.method == 'matchPhoneHashes') {
+      return ['id1'];
+    } else if (methodCall.method == 'getMetrics') {
+      return {
+        'getContacts': {'calls': 2, 'providerRoundTrips': 2}
+      };
+    } else if (methodCall.method == 'getContactsSummary') {
+      return [
+        {
+          'identifier': 'id1',
+          'displayName': 'Given Family',
+          'givenName': 'Given',
+          'photoThumbnailUri': 'content://com.android.contacts/contacts/1/photo'
+        },
+      ];
+    } else if (methodCall.method == 'getContactsLookupKeys') {
+      return {
+        'ids': Int64List.fromList([3, 8]),
+        'lookupKeys': ['0r3', '0r8'],
+      };
+    } else if (methodCall.method == 'getContactWindowIds') {
+      return Int64List.fromList(List<int>.generate(250, (i) => i));
+    } else if (methodCall.method == 'getContactWindow') {
+      final buffer = WriteBuffer();
+      for (final id in methodCall.arguments['contactIds'] as Int64List) {
+        const StandardMessageCodec().writeValue(buffer, {'identifier': 'id$id', 'givenName': 'given$id'});
+      }
+      final bytes = buffer.done();
+      return bytes.buffer.asUint8List(bytes.offsetInBytes, bytes.lengthInBytes);
+    } else if (methodCall.method == 'getContactCount') {
+      return 1234;
+    } else if (methodCall.method == 'getSectionIndex') {
+      return {
+        'titles': ['A', '#'],
+        'counts': [3, 1],
+      };
     } else if (methodCall.method == 'getAvatar') {
       return Uint8List.fromList([0, 1, 2, 3]);
     }
@@ -107,6 +153,156 @@ void main() {
     expectMethodCall(log, 'addContact');
   });
 
+  test('should add contacts', () async {
+    await ContactsService.addContacts([
+      Contact(givenName: 'givenName1'),
+      Contact(givenName: 'givenName2', phones: [Item(label: 'label')]),
+    ]);
+    expectMethodCall(log, 'addContacts');
+  });
+
+  test('should import vCard', () async {
+    await ContactsService.importVCard('/path/to/contacts.vcf');
+
+    expect(log, <Matcher>[
+      isMethodCall('importVCard', arguments: <String, dynamic>{'path': '/path/to/contacts.vcf'})
+    ]);
+  });
+
+  test('should export vCard', () async {
+    await ContactsService.exportVCard('/path/to/contacts.vcf', identifiers: ['id1', 'id2']);
+
+    expect(log, <Matcher>[
+      isMethodCall('exportVCard', arguments: <String, dynamic>{
+        'path': '/path/to/contacts.vcf',
+        'identifiers': 'id1|id2',
+        'withPhotos': false,
+      })
+    ]);
+  });
+
+  test('should find duplicates', () async {
+    final clusters = await ContactsService.findDuplicates();
+
+    expect(clusters.length, 1);
+    expect(clusters[0].identifiers, ['id1', 'id2']);
+    expect(clusters[0].reasons, ['phone']);
+  });
+
+  test('should get contact fingerprints', () async {
+    final fingerprints = await ContactsService.getContactFingerprints();
+
+    expect(fingerprints, {'id1': 42, 'id2': -7});
+  });
+
+  test('should match phone hashes', () async {
+    final hashes = Uint8List(64);
+    final identifiers = await ContactsService.matchPhoneHashes(hashes, salt: 'salt');
+
+    expect(identifiers, ['id1']);
+    expect(log, <Matcher>[
+      isMethodCall('matchPhoneHashes', arguments: <String, dynamic>{
+        'hashes': hashes,
+        'salt': 'salt',
+      })
+    ]);
+  });
+
+  test('should get metrics', () async {
+    final metrics = await ContactsService.getMetrics();
+
+    expect(metrics['getContacts']['calls'], 2);
+    expect(metrics['getContacts']['providerRoundTrips'], 2);
+    expect(log, <Matcher>[isMethodCall('getMetrics', arguments: null)]);
+  });
+
+  test('should reset metrics', () async {
+    await ContactsService.resetMetrics();
+
+    expect(log, <Matcher>[isMethodCall('resetMetrics', arguments: null)]);
+  });
+
+  test('should get contacts in the given sort order', () async {
+    await ContactsService.getContacts(withThumbnails: false, sortOrder: ContactSortOrder.familyName);
+
+    expect(log, <Matcher>[
+      isMethodCall('getContacts', arguments: <String, dynamic>{
+        'query': null,
+        'withThumbnails': false,
+        'photoHighResolution': true,
+        'orderByGivenName': true,
+        'sortOrder': 'familyName',
+        'iOSLocalizedLabels': true,
+      })
+    ]);
+  });
+
+  test('should get contact count', () async {
+    final count = await ContactsService.getContactCount(accountType: 'com.google', hasPhoneNumber: true);
+
+    expect(count, 1234);
+    expect(log, <Matcher>[
+      isMethodCall('getContactCount', arguments: <String, dynamic>{
+        'accountType': 'com.google',
+        'accountName': null,
+        'hasPhoneNumber': true,
+      })
+    ]);
+  });
+
+  test('should get section index', () async {
+    final sections = await ContactsService.getSectionIndex();
+
+    expect(sections.map((section) => section.title), ['A', '#']);
+    expect(sections.map((section) => section.count), [3, 1]);
+    expect(log, <Matcher>[isMethodCall('getSectionIndex', arguments: null)]);
+  });
+
+  test('should get contacts summary', () async {
+    final contacts = await ContactsService.getContactsSummary(withNames: true);
+
+    expect(contacts.single.givenName, 'Given');
+    expect(contacts.single.photoThumbnailUri, 'content://com.android.contacts/contacts/1/photo');
+    expect(log.single.arguments['withNames'], true);
+  });
+
+  test('should get lookup keys', () async {
+    final table = await ContactsService.getContactLookupKeyTable();
+    final map = await ContactsService.getContactsLookupKeys();
+
+    expect(table.lookupKey(8), '0r8');
+    expect(table.lookupKey(5), isNull);
+    expect(map, {'3': '0r3', '8': '0r8'});
+  });
+
+  test('should set account policy', () async {
+    await ContactsService.setAccountPolicy(allowedAccountTypes: ['com.google']);
+    await ContactsService.setAccountPolicy();
+
+    expect(log, <Matcher>[
+      isMethodCall('setAccountPolicy', arguments: <String, dynamic>{
+        'allowedAccountTypes': ['com.google'],
+        'deniedAccountTypes': null,
+        'allowedAccountNames': null,
+        'deniedAccountNames': null,
+        'filterReads': true,
+      }),
+      isMethodCall('setAccountPolicy', arguments: null),
+    ]);
+  });
+
+  test('should read contacts a window at a time', () async {
+    final contacts = await ContactsService.getContactsByIdentifiers(identifiers: ['id1', 'id2'], boundedMemory: true);
+
+    expect(contacts.length, 250);
+    expect(contacts.first.givenName, 'given0');
+    expect(contacts.last.givenName, 'given249');
+    expect(log.map((call) => call.method), ['getContactWindowIds', 'getContactWindow', 'getContactWindow']);
+    expect(log.first.arguments, {'identifiers': 'id1|id2', 'orderByGivenName': true});
+    expect((log[1].arguments['contactIds'] as Int64List).length, 200);
+    expect((log[2].arguments['contactIds'] as Int64List).length, 50);
+  });
+
   test('should delete contact', () async {
     await ContactsService.deleteContact(Contact(
       givenName: 'givenName',
@@ -117,6 +313,14 @@ void main() {
     expectMethodCall(log, 'deleteContact');
   });
 
+  test('should delete contacts by identifiers', () async {
+    final notFound = await ContactsService.deleteContactsByIdentifiers(['id1', 'id2']);
+
+    expect(log.single.method, 'deleteContactsByIdentifiers');
+    expect(log.single.arguments, {'identifiers': 'id1|id2'});
+    expect(notFound, isEmpty);
+  });
+
   test('should provide initials for contact', () {
     Contact contact1 = Contact(
         givenName: "givenName", familyName: "familyName");
@@ -140,6 +344,28 @@ void main() {
     expectMethodCall(log, 'updateContact');
   });
 
+  test('should update contact against its baseline', () async {
+    final baseline = Contact(identifier: 'id', givenName: 'givenName')
+      ..androidRawContactVersions = {'1': 3};
+    final contact = Contact(identifier: 'id', givenName: 'newGivenName')
+      ..androidRawContactVersions = {'1': 3};
+
+    await ContactsService.updateContact(contact, baseline: baseline);
+
+    expect(log.single.method, 'updateContact');
+    expect(log.single.arguments['givenName'], 'newGivenName');
+    expect(log.single.arguments['androidRawContactVersions'], {'1': 3});
+    expect(log.single.arguments['baseline']['givenName'], 'givenName');
+  });
+
+  test('should update contacts', () async {
+    await ContactsService.updateContacts([
+      Contact(identifier: 'id1', givenName: 'givenName1'),
+      Contact(identifier: 'id2', givenName: 'givenName2'),
+    ]);
+    expectMethodCall(log, 'updateContacts');
+  });
+
 
   test('should show contacts are equal', () {
     Contact contact1 =